@@ -0,0 +1,27 @@
+-- Compares the lookup of a file in the 'generated' view of a digital object as performed by
+-- DigitalObjectPersistenceHelper.getGeneratedFileInfo() with the node and attribute queries
+-- needed to load the entire view. This script is not part of the database initialization.
+--
+-- Usage: psql -U postgres -d datamanager -v oid="'<digitalObjectIdentifier>'" -v file="'<sha1(identifier)>.zip'" -f generated_file_lookup_benchmark.sql
+
+\timing on
+
+-- nodes and attributes of the current version of the view (file tree load)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT n.* FROM dataorganizationnode r
+JOIN dataorganizationnode n ON n.digit_obj_id=r.digit_obj_id AND n.viewname=r.viewname AND n.stepnoarrived>=r.stepnoarrived AND n.stepnoleaved<=r.stepnoleaved
+WHERE r.digit_obj_id=:oid AND r.viewname='generated' AND r.nodedepth=0
+AND r.idversion=(SELECT MAX(v.idversion) FROM dataorganizationnode v WHERE v.digit_obj_id=:oid AND v.viewname='generated' AND v.nodedepth=0)
+ORDER BY n.stepnoarrived ASC;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.* FROM attribute a WHERE a.digit_obj_id=:oid AND a.viewname='generated';
+
+-- direct lookup of the file node and its size
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT n.value, a.attr_value FROM dataorganizationnode r
+JOIN dataorganizationnode n ON n.digit_obj_id=r.digit_obj_id AND n.viewname=r.viewname AND n.stepnoarrived>r.stepnoarrived AND n.stepnoleaved<r.stepnoleaved
+LEFT OUTER JOIN attribute a ON a.digit_obj_id=n.digit_obj_id AND a.viewname=n.viewname AND a.stepnoarrived=n.stepnoarrived AND a.attr_key='size'
+WHERE r.digit_obj_id=:oid AND r.viewname='generated' AND r.nodedepth=0
+AND r.idversion=(SELECT MAX(v.idversion) FROM dataorganizationnode v WHERE v.digit_obj_id=:oid AND v.viewname='generated' AND v.nodedepth=0)
+AND n.name=:file ORDER BY n.stepnoarrived ASC LIMIT 1;
@@ -55,6 +55,7 @@ INSERT INTO metadataschema VALUES (nextval('metadataschema_id_seq'), 'http://ipe
 INSERT INTO stagingaccesspointconfiguration VALUES (nextval('stagingaccesspointconfiguration_id_seq'), NULL, TRUE, NULL, FALSE, NULL, 'edu.kit.dama.staging.ap.impl.BasicStagingAccessPoint', '/var/lib/tomcat7/webapps/webdav/', 'WebDav', 'http://localhost:8889/webdav/', FALSE, '0000-0000-0000-0000');
 INSERT INTO stagingprocessor VALUES (nextval('stagingprocessor_id_seq'), TRUE, 'ZIP data content of a digital object.', FALSE, NULL, 'edu.kit.dama.ui.repo.staging.DataZipCreator', 'Data ZIP Creator',NULL, 'SERVER_SIDE_ONLY', '0000-0000-0000-0001');
 INSERT INTO stagingprocessor VALUES (nextval('stagingprocessor_id_seq'), TRUE, 'Assign open access permissions to object after ingest.', FALSE, NULL, 'edu.kit.dama.ui.repo.staging.ChangePermissionProcessor', 'Permission Changer',NULL, 'SERVER_SIDE_ONLY', '0000-0000-0000-0002');
+INSERT INTO stagingprocessor VALUES (nextval('stagingprocessor_id_seq'), TRUE, 'Create a preview thumbnail of the data of a digital object.', FALSE, NULL, 'edu.kit.dama.ui.repo.staging.ThumbnailCreator', 'Thumbnail Creator',NULL, 'SERVER_SIDE_ONLY', '0000-0000-0000-0003');
 
 -- Insert DigitalObjectType for favored entries
 INSERT INTO digitalobjecttype VALUES (nextval('digitalobjecttype_id_seq'), 'Digital Object Type that can be assigned to identify favored objects for better searchability.', 'favorite', 'http://kitdatamanager.net/types', 1);
\ No newline at end of file
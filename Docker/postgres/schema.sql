@@ -1531,6 +1531,20 @@ ALTER TABLE ONLY dataorganizationnode
     ADD CONSTRAINT dataorganizationnode_pkey PRIMARY KEY (stepnoarrived, viewname, digit_obj_id);
 
 
+--
+-- Name: dataorganizationnode_name_idx; Type: INDEX; Schema: public; Owner: postgres; Tablespace: 
+--
+
+CREATE INDEX dataorganizationnode_name_idx ON dataorganizationnode USING btree (digit_obj_id, viewname, name);
+
+
+--
+-- Name: attribute_node_idx; Type: INDEX; Schema: public; Owner: postgres; Tablespace: 
+--
+
+CREATE INDEX attribute_node_idx ON attribute USING btree (digit_obj_id, viewname, stepnoarrived);
+
+
 --
 -- TOC entry 1986 (class 2606 OID 108175)
 -- Dependencies: 1614 1614
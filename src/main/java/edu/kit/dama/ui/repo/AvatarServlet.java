@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo;
+
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinServletService;
+import edu.kit.dama.ui.repo.components.ColorGenerator;
+import edu.kit.dama.ui.repo.components.TextImage;
+import edu.kit.dama.ui.repo.components.TextImageCache;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet delivering text images at
+ * /img/avatar/&lt;letter&gt;-&lt;color&gt;-&lt;size&gt;.&lt;format&gt;, e.g.
+ * /img/avatar/A-e57373-40.png. As the image is entirely determined by its
+ * URL, it is sent with a long-lived, immutable Cache-Control header and an
+ * ETag derived from the URL. Thus, browsers can reuse an image across pages
+ * and sessions and revalidation requests are answered without rendering.
+ * Rendered PNG images are cached by
+ * {@link edu.kit.dama.ui.repo.components.TextImageCache}. Only the colors of
+ * {@link ColorGenerator#MATERIAL} and the sizes used by the UI are accepted,
+ * so requests cannot fill the cache with arbitrary images.
+ *
+ * @author mf6319
+ */
+@WebServlet(value = "/img/avatar/*", asyncSupported = true)
+public class AvatarServlet extends HttpServlet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AvatarServlet.class);
+
+    public static final String AVATAR_PATH = "/img/avatar/";
+
+    /**
+     * Image sizes in pixels used by the UI, all other sizes are rejected.
+     */
+    private static final List<Integer> SIZES = Arrays.asList(TextImageCache.ENTRY_IMAGE_SIZE);
+    /**
+     * Images never change for a given URL, so they can be cached for one
+     * year.
+     */
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /**
+     * Get the URL of the provided text image. This method has to be called
+     * within a Vaadin request or within UI.access() in order to determine the
+     * context path.
+     *
+     * @param pImage The text image.
+     * @param pFormat The image format.
+     *
+     * @return The image URL relative to the server root.
+     */
+    public static String getAvatarUrl(TextImage pImage, TextImage.Format pFormat) {
+        //VaadinServlet.getCurrent() is only set while handling a request, the service is also available within UI.access()
+        String contextPath = ((VaadinServletService) VaadinService.getCurrent()).getServlet().getServletContext().getContextPath();
+        try {
+            return contextPath + AVATAR_PATH + URLEncoder.encode(pImage.getLetter(), "UTF-8").replace("+", "%20") + "-"
+                    + String.format("%06x", pImage.getColor() & 0xFFFFFF) + "-" + pImage.getSize() + "." + pFormat.getExtension();
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException("Failed to encode letter " + pImage.getLetter(), ex);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, false);
+    }
+
+    /**
+     * Serve the requested image.
+     *
+     * @param pRequest The request.
+     * @param pResponse The response.
+     * @param pContent FALSE if only the headers should be sent (HEAD request).
+     *
+     * @throws IOException If sending the response fails.
+     */
+    private void serve(HttpServletRequest pRequest, HttpServletResponse pResponse, boolean pContent) throws IOException {
+        String path = (pRequest.getPathInfo() != null) ? pRequest.getPathInfo().substring(1) : "";
+        TextImage.Format format = TextImage.getConfiguredFormat();
+        int dot = path.lastIndexOf('.');
+        if (dot > 0) {
+            format = getFormat(path.substring(dot + 1));
+            path = path.substring(0, dot);
+        }
+        //parse from the end as the letter itself may be a dash
+        int sizeSeparator = path.lastIndexOf('-');
+        int colorSeparator = (sizeSeparator > 0) ? path.lastIndexOf('-', sizeSeparator - 1) : -1;
+        if (format == null || colorSeparator < 0) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String letter = path.substring(0, colorSeparator);
+        int color;
+        int size;
+        try {
+            color = Integer.parseInt(path.substring(colorSeparator + 1, sizeSeparator), 16);
+            size = Integer.parseInt(path.substring(sizeSeparator + 1));
+        } catch (NumberFormatException ex) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (letter.codePointCount(0, letter.length()) > 1 || !isSupportedColor(color) || !SIZES.contains(size)) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        //the ETag only depends on the normalized parameters, so no rendering is needed to check it
+        String eTag = "\"" + Integer.toHexString(letter.isEmpty() ? 0 : letter.codePointAt(0)) + "-" + Integer.toHexString(color) + "-" + size + "-" + format.getExtension() + "\"";
+        pResponse.setHeader("ETag", eTag);
+        pResponse.setHeader("Cache-Control", CACHE_CONTROL);
+        String ifNoneMatch = pRequest.getHeader("If-None-Match");
+        if (ifNoneMatch != null && ("*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(eTag))) {
+            pResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = TextImage.from(letter).withColor(color).withSize(size).getBytes(format);
+        } catch (IOException ex) {
+            LOGGER.error("Failed to create text image " + path + ".", ex);
+            pResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        pResponse.setContentType(format.getMimeType());
+        pResponse.setContentLength(bytes.length);
+        if (pContent) {
+            pResponse.getOutputStream().write(bytes);
+        }
+    }
+
+    /**
+     * Check whether the provided color is one of the colors of
+     * {@link ColorGenerator#MATERIAL}, which are used for all text images.
+     *
+     * @param pColor The RGB color without alpha channel.
+     *
+     * @return TRUE if the color is supported.
+     */
+    private boolean isSupportedColor(int pColor) {
+        for (int color : ColorGenerator.MATERIAL.getColors()) {
+            if ((color & 0xFFFFFF) == pColor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the format for the provided file extension.
+     *
+     * @param pExtension The file extension.
+     *
+     * @return The format or null if the extension is not supported.
+     */
+    private TextImage.Format getFormat(String pExtension) {
+        for (TextImage.Format format : TextImage.Format.values()) {
+            if (format.getExtension().equalsIgnoreCase(pExtension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
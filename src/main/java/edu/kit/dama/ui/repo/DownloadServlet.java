@@ -0,0 +1,351 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo;
+
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinServletService;
+import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.dataorganization.entity.core.IFileNode;
+import edu.kit.dama.ui.repo.util.DataZipInfo;
+import edu.kit.dama.ui.repo.util.DigitalObjectPersistenceHelper;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet delivering the zipped data archive of a digital object at
+ * /download/&lt;digitalObjectIdentifier&gt;. In contrast to a Vaadin
+ * StreamResource, the archive is not copied through the Vaadin request
+ * handler. If the container supports sendfile (e.g. Tomcat with NIO
+ * connector), the file is handed over to the container, which sends it without
+ * copying it to the heap. Otherwise, it is written to the servlet output
+ * stream via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * As the output stream is no socket channel, this is a regular buffered copy.
+ *
+ * The servlet supports single byte ranges (Range/If-Range), so interrupted
+ * downloads can be resumed, and conditional requests via ETag and
+ * Last-Modified. Access is checked with the authorization context of the user
+ * logged in to the repository UI in the same HTTP session (see
+ * {@link MyVaadinUI#USER_ID_SESSION_KEY}) or with the dummy context of the UI
+ * if nobody is logged in. The object has to be readable with this context
+ * and the archive node is obtained from its data organization with the same
+ * context, so that the cached archive info of the UI, which is obtained with
+ * the system context, is never used to authorize a download.
+ *
+ * @author mf6319
+ */
+@WebServlet(value = "/download/*", asyncSupported = true)
+public class DownloadServlet extends HttpServlet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadServlet.class);
+
+    public static final String DOWNLOAD_PATH = "/download/";
+
+    //attributes used by Tomcat for sendfile support
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Get the download URL of the archive of the object with the provided
+     * identifier. This method has to be called within a Vaadin request or
+     * within UI.access() in order to determine the context path.
+     *
+     * @param pIdentifier The digital object identifier.
+     *
+     * @return The download URL relative to the server root.
+     */
+    public static String getDownloadUrl(String pIdentifier) {
+        //VaadinServlet.getCurrent() is only set while handling a request, the service is also available within UI.access()
+        String contextPath = ((VaadinServletService) VaadinService.getCurrent()).getServlet().getServletContext().getContextPath();
+        try {
+            return contextPath + DOWNLOAD_PATH + URLEncoder.encode(pIdentifier, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException("Failed to encode identifier " + pIdentifier, ex);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, false);
+    }
+
+    /**
+     * Serve the archive of the requested object.
+     *
+     * @param pRequest The request.
+     * @param pResponse The response.
+     * @param pContent FALSE if only the headers should be sent (HEAD request).
+     *
+     * @throws IOException If sending the response fails.
+     */
+    private void serve(HttpServletRequest pRequest, HttpServletResponse pResponse, boolean pContent) throws IOException {
+        String identifier = (pRequest.getPathInfo() != null) ? pRequest.getPathInfo().substring(1) : "";
+        if (identifier.isEmpty()) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File file;
+        try {
+            file = getArchive(identifier, getAuthorizationContext(pRequest));
+        } catch (UnauthorizedAccessAttemptException ex) {
+            LOGGER.warn("Unauthorized download request for object " + identifier + ".", ex);
+            pResponse.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        if (file == null || !file.isFile()) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND, "No data available, yet.");
+            return;
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+        pResponse.setHeader("ETag", eTag);
+        pResponse.setDateHeader("Last-Modified", lastModified);
+        pResponse.setHeader("Accept-Ranges", "bytes");
+
+        if (isNotModified(pRequest, eTag, lastModified)) {
+            pResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = pRequest.getHeader("Range");
+        if (range != null && isRangeApplicable(pRequest, eTag, lastModified)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                pResponse.setHeader("Content-Range", "bytes */" + length);
+                pResponse.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                pResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                pResponse.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        pResponse.setContentType("application/zip");
+        pResponse.setHeader("Content-Disposition", "attachment; filename=\"" + identifier.replace("\"", "") + ".zip\"");
+        pResponse.setHeader("Content-Length", Long.toString(count));
+        if (!pContent || count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(pRequest.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            //let the container send the file without copying it to the heap
+            pRequest.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getCanonicalPath());
+            pRequest.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            pRequest.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+            return;
+        }
+
+        //transferTo() wraps the output stream and copies the file through a buffer
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            WritableByteChannel out = Channels.newChannel(pResponse.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = channel.transferTo(position, end + 1 - position, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        } catch (IOException ex) {
+            //most likely the client has aborted the download
+            LOGGER.debug("Failed to send data archive " + file + ".", ex);
+        }
+    }
+
+    /**
+     * Get the authorization context of the user logged in to the repository
+     * UI in the session of the provided request.
+     *
+     * @param pRequest The request.
+     *
+     * @return The authorization context.
+     */
+    static IAuthorizationContext getAuthorizationContext(HttpServletRequest pRequest) {
+        HttpSession session = pRequest.getSession(false);
+        Object userId = (session != null) ? session.getAttribute(MyVaadinUI.USER_ID_SESSION_KEY) : null;
+        return MyVaadinUI.createAuthorizationContext((userId instanceof String) ? (String) userId : null);
+    }
+
+    /**
+     * Get the archive of the object with the provided identifier.
+     *
+     * @param pIdentifier The digital object identifier.
+     * @param pContext The context used to access the object and its data
+     * organization.
+     *
+     * @return The archive file or null if the object or its archive does not
+     * exist.
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not allowed to
+     * access the object or its data.
+     */
+    private File getArchive(String pIdentifier, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        DigitalObject object = DigitalObjectPersistenceHelper.getDigitalObjectByIdentifier(pIdentifier, pContext);
+        if (object == null) {
+            return null;
+        }
+        //load the node with pContext, the archive info cached by the UI is obtained with the system context
+        IFileNode node = DigitalObjectPersistenceHelper.getDataZipFileNode(object, pContext);
+        if (node == null) {
+            return null;
+        }
+        try {
+            return DataZipInfo.fromFileNode(node).getFile();
+        } catch (MalformedURLException | URISyntaxException ex) {
+            LOGGER.error("Invalid URL of data archive of object " + pIdentifier + ".", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Check the conditional headers If-None-Match and If-Modified-Since.
+     *
+     * @param pRequest The request.
+     * @param pETag The current ETag.
+     * @param pLastModified The last modification of the file.
+     *
+     * @return TRUE if the client has the current version.
+     */
+    private boolean isNotModified(HttpServletRequest pRequest, String pETag, long pLastModified) {
+        String ifNoneMatch = pRequest.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return "*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(pETag);
+        }
+        long ifModifiedSince = getDateHeader(pRequest, "If-Modified-Since");
+        //HTTP dates have a precision of one second
+        return ifModifiedSince >= 0 && pLastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Check the If-Range header. A range is only applicable if there is no
+     * If-Range header or if it matches the current version.
+     *
+     * @param pRequest The request.
+     * @param pETag The current ETag.
+     * @param pLastModified The last modification of the file.
+     *
+     * @return TRUE if the Range header should be considered.
+     */
+    private boolean isRangeApplicable(HttpServletRequest pRequest, String pETag, long pLastModified) {
+        String ifRange = pRequest.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            return pETag.equals(ifRange.trim());
+        }
+        long ifRangeDate = getDateHeader(pRequest, "If-Range");
+        return ifRangeDate >= 0 && pLastModified / 1000 == ifRangeDate / 1000;
+    }
+
+    /**
+     * Parse the provided Range header. Only single byte ranges are supported,
+     * other ranges are ignored and the entire file is sent.
+     *
+     * @param pRange The value of the Range header.
+     * @param pLength The file length.
+     *
+     * @return An array with first and last byte of the range, an empty array
+     * if the range should be ignored or null if the range cannot be satisfied.
+     */
+    private long[] parseRange(String pRange, long pLength) {
+        String range = pRange.trim();
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[0];
+        }
+        range = range.substring("bytes=".length()).trim();
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = range.substring(0, dash).trim();
+            String last = range.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                //suffix range, i.e. the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, pLength - suffix);
+                end = pLength - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = (last.isEmpty()) ? pLength - 1 : Math.min(Long.parseLong(last), pLength - 1);
+            }
+            if (start >= pLength || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException ex) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * Get a date header without failing on invalid values.
+     *
+     * @param pRequest The request.
+     * @param pName The header name.
+     *
+     * @return The date in milliseconds or -1 if the header is missing or
+     * invalid.
+     */
+    private long getDateHeader(HttpServletRequest pRequest, String pName) {
+        try {
+            return pRequest.getDateHeader(pName);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
+}
@@ -17,17 +17,23 @@ package edu.kit.dama.ui.repo;
 
 import edu.kit.dama.ui.repo.components.EntryRenderPanel;
 import edu.kit.dama.ui.repo.components.PaginationPanel;
+import edu.kit.dama.ui.repo.components.ResultTablePanel;
+import edu.kit.dama.ui.repo.components.ResultView;
 import com.vaadin.annotations.PreserveOnRefresh;
+import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
 import javax.servlet.annotation.WebServlet;
 
 import com.vaadin.annotations.VaadinServletConfiguration;
+import com.vaadin.event.FieldEvents;
 import com.vaadin.event.ShortcutAction.KeyCode;
 import com.vaadin.server.Page;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinServlet;
+import com.vaadin.shared.communication.PushMode;
 import com.vaadin.shared.ui.label.ContentMode;
+import com.vaadin.ui.AbstractTextField;
 import com.vaadin.ui.Alignment;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.GridLayout;
@@ -60,8 +66,6 @@ import edu.kit.dama.mdm.admin.util.ServiceAccessUtil;
 import edu.kit.dama.mdm.base.DigitalObject;
 import edu.kit.dama.mdm.base.DigitalObjectType;
 import edu.kit.dama.mdm.base.UserData;
-import edu.kit.dama.mdm.content.search.impl.BaseSearchTerm;
-import edu.kit.dama.mdm.content.search.impl.FulltextElasticSearchProvider;
 import edu.kit.dama.mdm.core.IMetaDataManager;
 import edu.kit.dama.mdm.core.MetaDataManagement;
 import edu.kit.dama.mdm.tools.DigitalObjectTypeQueryHelper;
@@ -69,18 +73,20 @@ import edu.kit.dama.ui.admin.AdminUIMainView;
 import edu.kit.dama.ui.commons.util.UIUtils7;
 import edu.kit.dama.util.Constants;
 import edu.kit.dama.ui.repo.util.DigitalObjectPersistenceHelper;
+import edu.kit.dama.ui.repo.util.DigitalObjectTypeRegistry;
 import edu.kit.dama.ui.repo.util.ElasticsearchHelper;
 import edu.kit.dama.util.DataManagerSettings;
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import javax.persistence.EntityManager;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Theme("mytheme")
 @SuppressWarnings("serial")
 @PreserveOnRefresh
+@Push(PushMode.AUTOMATIC)
 public class MyVaadinUI extends UI {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MyVaadinUI.class);
@@ -88,19 +94,29 @@ public class MyVaadinUI extends UI {
     public static final String MAIN_LOGIN_TOKEN_KEY = "mainLogin";
     public static final String SEARCH_PATH = "/search";
     public static final String REFERENCE_PATH = "/reference";
+    //HTTP session attribute holding the id of the logged in user, which is used by servlets outside of the UI
+    public static final String USER_ID_SESSION_KEY = "repository.userId";
 
     //GUEST user and USERS group
-    private final UserId GUEST_USER = new UserId("GUEST");
-    private final GroupId USERS_GROUP = new GroupId(Constants.USERS_GROUP_ID);
+    private static final UserId GUEST_USER = new UserId("GUEST");
+    private static final GroupId USERS_GROUP = new GroupId(Constants.USERS_GROUP_ID);
 
     //favorite object type
     public static final String FAVORITE_TYPE_IDENTIFIER = "favorite";
     public static final String FAVORITE_TYPE_DOMAIN = "http://kitdatamanager.net/types";
     public static final int FAVORITE_TYPE_VERSION = 1;
 
+    //result view, either 'pagination' (default) or 'table'
+    public static final String RESULT_VIEW_ID = "repository.resultView";
+
     //special search queries
     public static final String FAVORITE_SEARCH_TERM = "FAVORITES";
 
+    //search suggestions are requested after the user stopped typing for SUGGESTION_DELAY ms
+    private static final int SUGGESTION_DELAY = 300;
+    private static final int MIN_SUGGESTION_PREFIX_LENGTH = 3;
+    private static final int MAX_SUGGESTIONS = 5;
+
     //UI components
     private TextField email;
     private PasswordField password;
@@ -108,10 +124,10 @@ public class MyVaadinUI extends UI {
     private UserData loggedInUser = UserData.NO_USER;
     private GridLayout searchLayout;
     private VerticalLayout mainLayout;
-    private FulltextElasticSearchProvider searchProvider = null;
     private HorizontalLayout memberLayout;
     private TextField searchField;
-    private PaginationPanel paginationPanel;
+    private HorizontalLayout suggestionLayout;
+    private ResultView resultView;
     private final NativeButton adminButton = new NativeButton("Administration");
     private final NativeButton loginButton = new NativeButton("Login");
     private final NativeButton logoutButton = new NativeButton("Logout");
@@ -139,9 +155,26 @@ public class MyVaadinUI extends UI {
             return getDummyContext();
         }
         //return valid context
+        return createAuthorizationContext(loggedInUser.getDistinguishedName());
+    }
+
+    /**
+     * Create the authorization context for the user with the provided id,
+     * which consists of the user, the group USERS and the maximum role the
+     * user can have in the group. If pUserId is null or if the maximum role
+     * cannot be obtained, {@link #getDummyContext()} is returned.
+     *
+     * @param pUserId The user id (distinguished name) or null.
+     *
+     * @return The Authorization context.
+     */
+    public static IAuthorizationContext createAuthorizationContext(String pUserId) {
+        if (pUserId == null) {
+            return getDummyContext();
+        }
         try {
-            IRoleRestriction maxRole = GroupServiceLocal.getSingleton().getMaximumRole(USERS_GROUP, new UserId(loggedInUser.getDistinguishedName()), AuthorizationContext.factorySystemContext());
-            return new AuthorizationContext(new UserId(loggedInUser.getDistinguishedName()), USERS_GROUP, (Role) maxRole);
+            IRoleRestriction maxRole = GroupServiceLocal.getSingleton().getMaximumRole(USERS_GROUP, new UserId(pUserId), AuthorizationContext.factorySystemContext());
+            return new AuthorizationContext(new UserId(pUserId), USERS_GROUP, (Role) maxRole);
         } catch (EntityNotFoundException | UnauthorizedAccessAttemptException ex) {
             LOGGER.error("Failed to get authorization context. Returning dummy context.", ex);
             return getDummyContext();
@@ -214,6 +247,8 @@ public class MyVaadinUI extends UI {
      * view.
      */
     private void refreshMainLayout() {
+        //publish the logged in user to the HTTP session, e.g. for the DownloadServlet
+        getSession().getSession().setAttribute(USER_ID_SESSION_KEY, (isUserLoggedIn()) ? loggedInUser.getDistinguishedName() : null);
         if (isUserLoggedIn()) {
             //if user is now logged in, show the logout button
             memberLayout.replaceComponent(loginButton, logoutButton);
@@ -224,33 +259,47 @@ public class MyVaadinUI extends UI {
             password.setValue("");
         }
         //remove all entries in order to avoid permission issues on logout/user change
-        paginationPanel.setAllEntries(new LinkedList<DigitalObjectId>());
+        resultView.setAllEntries(new LinkedList<DigitalObjectId>());
+    }
+
+    /**
+     * Get the favorite object type from the {@link DigitalObjectTypeRegistry}.
+     * The type is created on startup by {@link #createFavoriteType()}.
+     *
+     * @return The favorite object type or null if it does not exist.
+     *
+     * @throws IllegalStateException If the type could not be obtained.
+     */
+    public static DigitalObjectType getFavoriteType() {
+        return DigitalObjectTypeRegistry.getSingleton().getType(FAVORITE_TYPE_IDENTIFIER, FAVORITE_TYPE_DOMAIN, FAVORITE_TYPE_VERSION);
+    }
+
+    /**
+     * Create the favorite object type if it does not exist, yet. This method
+     * is called once on startup by the {@link RepositoryContextListener}.
+     *
+     * @return The existing or created favorite object type.
+     *
+     * @throws IllegalStateException If the type could neither be obtained nor
+     * created.
+     */
+    public static DigitalObjectType createFavoriteType() {
+        return DigitalObjectTypeRegistry.getSingleton().getOrCreateType(FAVORITE_TYPE_IDENTIFIER, FAVORITE_TYPE_DOMAIN, FAVORITE_TYPE_VERSION,
+                "Digital Object Type that can be assigned to identify favorized objects for better searchability.");
     }
 
     /**
      * Check relevant data needed for the simple repository. This includes e.g.
-     * the favorite object type.
+     * the favorite object type, which is served from memory after it was
+     * obtained once.
      */
     private void checkData() {
-        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
-        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
-
         try {
-            DigitalObjectType favoriteType = mdm.findSingleResult("SELECT t FROM DigitalObjectType t WHERE t.identifier='" + MyVaadinUI.FAVORITE_TYPE_IDENTIFIER + "' AND t.typeDomain='" + MyVaadinUI.FAVORITE_TYPE_DOMAIN + "'", DigitalObjectType.class);
-
-            if (favoriteType == null) {
-                LOGGER.debug("'Favorite' object type does not exist. Creating it.");
-                DigitalObjectType type = new DigitalObjectType();
-                type.setIdentifier(FAVORITE_TYPE_IDENTIFIER);
-                type.setTypeDomain(FAVORITE_TYPE_DOMAIN);
-                type.setVersion(1);
-                type.setDescription("Digital Object Type that can be assigned to identify favorized objects for better searchability.");
-                mdm.save(type);
+            if (getFavoriteType() == null) {
+                LOGGER.error("The 'favorite' object type does not exist. It is created on next startup.");
             }
-        } catch (Exception e) {
-            LOGGER.error("Failed to change 'favorite' status of digital object.", e);
-        } finally {
-            mdm.close();
+        } catch (IllegalStateException ex) {
+            LOGGER.error("Failed to obtain 'favorite' object type.", ex);
         }
         boolean guestExists = false;
         try {
@@ -261,7 +310,7 @@ public class MyVaadinUI extends UI {
             //guest user not exists
         }
         if (!guestExists) {
-            mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+            IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
             mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
             try {
                 LOGGER.debug("GUEST user not exists. Registering new user.");
@@ -344,6 +393,8 @@ public class MyVaadinUI extends UI {
 
             @Override
             public void buttonClick(Button.ClickEvent event) {
+                //object types may be changed in the administration UI
+                DigitalObjectTypeRegistry.getSingleton().refresh();
                 Page.getCurrent().open(DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.GENERAL_BASE_URL_ID, "http://localhost:8889/BaReDemo") + "/admin", "_blank");
             }
         });
@@ -352,15 +403,28 @@ public class MyVaadinUI extends UI {
         searchField.setWidth("920px");
         searchField.setHeight("60px");
         searchField.addStyleName("searchField");
+        //send text changes not before the user paused typing in order to debounce suggestion requests
+        searchField.setTextChangeEventMode(AbstractTextField.TextChangeEventMode.LAZY);
+        searchField.setTextChangeTimeout(SUGGESTION_DELAY);
+        searchField.addTextChangeListener(new FieldEvents.TextChangeListener() {
+
+            @Override
+            public void textChange(FieldEvents.TextChangeEvent event) {
+                updateSuggestions(event.getText());
+            }
+        });
+        suggestionLayout = new HorizontalLayout();
+        suggestionLayout.setSpacing(true);
+        suggestionLayout.setVisible(false);
 
-        paginationPanel = new PaginationPanel(this);
-        paginationPanel.setSizeFull();
-        paginationPanel.setAllEntries(new LinkedList<DigitalObjectId>());
+        if ("table".equals(DataManagerSettings.getSingleton().getStringProperty(RESULT_VIEW_ID, "pagination"))) {
+            resultView = new ResultTablePanel(this);
+        } else {
+            resultView = new PaginationPanel(this);
+        }
+        resultView.setSizeFull();
+        resultView.setAllEntries(new LinkedList<DigitalObjectId>());
 
-        searchProvider = new FulltextElasticSearchProvider(DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_CLUSTER_ID, "KITDataManager"),
-                DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_HOST_ID, "localhost"),
-                DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_INDEX_ID, ElasticsearchHelper.ELASTICSEARCH_TYPE),
-                ElasticsearchHelper.ELASTICSEARCH_TYPE);
         NativeButton goButton = new NativeButton();
         goButton.setIcon(new ThemeResource("img/24x24/search.png"));
         goButton.setWidth("60px");
@@ -402,14 +466,16 @@ public class MyVaadinUI extends UI {
 
         Label spacer = new Label("<hr/>", ContentMode.HTML);
         spacer.setHeight("20px");
+        VerticalLayout spacerLayout = new VerticalLayout(suggestionLayout, spacer);
+        spacerLayout.setWidth("100%");
 
         searchLayout = new UIUtils7.GridLayoutBuilder(3, 4).addComponent(searchField, Alignment.TOP_LEFT, 0, 0, 2, 1).addComponent(goButton, Alignment.TOP_RIGHT, 2, 0, 1, 1).
-                fillRow(spacer, 0, 1, 1).
-                addComponent(paginationPanel, Alignment.MIDDLE_CENTER, 0, 2, 3, 2).getLayout();
+                fillRow(spacerLayout, 0, 1, 1).
+                addComponent(resultView, Alignment.MIDDLE_CENTER, 0, 2, 3, 2).getLayout();
         searchLayout.addStyleName("paper");
         searchLayout.setSpacing(true);
         searchLayout.setMargin(true);
-        paginationPanel.setWidth("980px");
+        resultView.setWidth("980px");
         //wrapper
         Label icon8Link = new Label("<a href=\"http://icons8.com\">Icons by icon8.com</a>", ContentMode.HTML);
         mainLayout = new VerticalLayout(memberLayout, searchLayout, icon8Link);
@@ -434,10 +500,43 @@ public class MyVaadinUI extends UI {
         }
     }
 
+    /**
+     * Update the search suggestions below the search field. Suggestions are
+     * shown for titles and creators starting with the provided text if the
+     * text has at least MIN_SUGGESTION_PREFIX_LENGTH characters. Clicking a
+     * suggestion performs a phrase search for the suggested value.
+     *
+     * @param pText The current text of the search field.
+     */
+    private void updateSuggestions(String pText) {
+        suggestionLayout.removeAllComponents();
+        List<String> suggestions = new LinkedList<>();
+        //no suggestions for short or special queries or if the search for the current text was already performed
+        if (pText != null && pText.trim().length() >= MIN_SUGGESTION_PREFIX_LENGTH && !FAVORITE_SEARCH_TERM.equals(pText) && !pText.equals(searchField.getValue())) {
+            suggestions = ElasticsearchHelper.suggest(pText, MAX_SUGGESTIONS);
+        }
+        for (final String suggestion : suggestions) {
+            NativeButton suggestionButton = new NativeButton(StringUtils.abbreviate(suggestion, 40));
+            suggestionButton.setStyleName(BaseTheme.BUTTON_LINK);
+            suggestionButton.setDescription(suggestion);
+            suggestionButton.addClickListener(new Button.ClickListener() {
+
+                @Override
+                public void buttonClick(Button.ClickEvent event) {
+                    searchField.setValue("\"" + suggestion.replace("\"", "\\\"") + "\"");
+                    doSearch();
+                }
+            });
+            suggestionLayout.addComponent(suggestionButton);
+        }
+        suggestionLayout.setVisible(!suggestions.isEmpty());
+    }
+
     /**
      * Perform the search and set the results in the pagination view.
      */
     private void doSearch() {
+        suggestionLayout.setVisible(false);
         String value = searchField.getValue();
         if (value != null && !value.isEmpty()) {
             //check for specific search of pending ingests. 
@@ -446,11 +545,9 @@ public class MyVaadinUI extends UI {
             switch (value) {
                 case FAVORITE_SEARCH_TERM:
                     //search only for favorites
-                    IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
-                    mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
                     List<DigitalObjectId> ids = new LinkedList<>();
                     try {
-                        DigitalObjectType favoriteType = mdm.findSingleResult("SELECT t FROM DigitalObjectType t WHERE t.identifier='" + MyVaadinUI.FAVORITE_TYPE_IDENTIFIER + "' AND t.typeDomain='" + MyVaadinUI.FAVORITE_TYPE_DOMAIN + "'", DigitalObjectType.class);
+                        DigitalObjectType favoriteType = getFavoriteType();
 
                         if (favoriteType != null) {
                             List<DigitalObject> favorites = DigitalObjectTypeQueryHelper.getDigitalObjectsByDigitalObjectType(favoriteType, AuthorizationContext.factorySystemContext());
@@ -459,18 +556,13 @@ public class MyVaadinUI extends UI {
                             }
                         }
                     } catch (Exception e) {
-                        LOGGER.error("Failed to change 'favorite' status of digital object.", e);
-                    } finally {
-                        mdm.close();
+                        LOGGER.error("Failed to obtain favorite objects.", e);
                     }
-                    paginationPanel.setAllEntries(ids);
+                    resultView.setAllEntries(ids);
                     break;
                 default:
-                    //perform fulltext search in _all field of documents indexed by elasticsearch.
-                    BaseSearchTerm term = searchProvider.getSearchTerms().get(0);
-                    term.setValue(value);
-                    searchProvider.performSearch(Arrays.asList(term), AuthorizationContext.factorySystemContext());
-                    paginationPanel.setAllEntries(searchProvider.getResults());
+                    //perform fulltext search in _all field of documents indexed by elasticsearch. Only the current page is obtained.
+                    resultView.setQuery(value);
                     break;
             }
         } else {
@@ -489,7 +581,7 @@ public class MyVaadinUI extends UI {
      *
      * @return A dummy authorization context.
      */
-    private IAuthorizationContext getDummyContext() {
+    public static IAuthorizationContext getDummyContext() {
         IAuthorizationContext ctx = AuthorizationContext.factorySystemContext();
         ctx.setUserId(GUEST_USER);
         ctx.setGroupId(USERS_GROUP);
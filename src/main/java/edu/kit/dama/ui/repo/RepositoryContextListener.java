@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo;
+
+import edu.kit.dama.ui.repo.components.TextImageCache;
+import edu.kit.dama.ui.repo.util.ElasticsearchHelper;
+import edu.kit.dama.ui.repo.util.IncrementalIndexer;
+import edu.kit.dama.ui.repo.util.IndexingQueue;
+import edu.kit.dama.ui.repo.util.PrefetchExecutor;
+import edu.kit.dama.ui.repo.util.ReindexJob;
+import edu.kit.dama.util.DataManagerSettings;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener taking care of application-scoped resources of the repository,
+ * e.g. the indexing queue and the search back end, which have to
+ * be released as soon as the application is undeployed. Furthermore, an
+ * interrupted reindex job is resumed on startup and a full reindex can be
+ * triggered on startup by setting 'elasticsearch.reindex.onStartup' to true.
+ * If enabled, the incremental indexer is started and the placeholder images
+ * are precomputed, too.
+ *
+ * @author mf6319
+ */
+@WebListener
+public class RepositoryContextListener implements ServletContextListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryContextListener.class);
+
+    public static final String REINDEX_ON_STARTUP_ID = "elasticsearch.reindex.onStartup";
+    /**
+     * Max. time in milliseconds to wait for the reindex job to pause on
+     * shutdown.
+     */
+    private static final long REINDEX_STOP_TIMEOUT = 60000;
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        LOGGER.debug("Repository context initialized.");
+        //open the search back end, so that a misconfigured back end fails the deployment
+        ElasticsearchHelper.getBackend();
+        //create missing object types and fill the type registry, object types are not created anywhere else
+        try {
+            MyVaadinUI.createFavoriteType();
+        } catch (IllegalStateException ex) {
+            LOGGER.error("Failed to create 'favorite' object type on startup. Favorites are not available until the next startup.", ex);
+        }
+        ReindexJob reindexJob = ReindexJob.getSingleton();
+        if (reindexJob.hasUnfinishedRun()) {
+            LOGGER.info("Found checkpoint of an unfinished reindex job. Resuming job.");
+            reindexJob.start();
+        } else if (DataManagerSettings.getSingleton().getBooleanProperty(REINDEX_ON_STARTUP_ID, false)) {
+            LOGGER.info("Reindex on startup is enabled. Starting reindex job.");
+            reindexJob.restart();
+        }
+        if (IncrementalIndexer.isEnabled()) {
+            IncrementalIndexer.getSingleton().start();
+        }
+        if (TextImageCache.isPrecomputeEnabled()) {
+            Thread precompute = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    TextImageCache.getSingleton().precompute(TextImageCache.ENTRY_IMAGE_SIZE);
+                }
+            }, "TextImagePrecompute");
+            precompute.setDaemon(true);
+            precompute.start();
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        LOGGER.info("Repository context destroyed. Releasing shared resources.");
+        //stop reindexing after the current chunk and send pending index operations before the back end is closed
+        try {
+            if (!ReindexJob.getSingleton().pauseAndAwait(REINDEX_STOP_TIMEOUT)) {
+                LOGGER.warn("Reindex job did not stop in time. Resume the job from its checkpoint after restart.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        IncrementalIndexer.getSingleton().stop();
+        PrefetchExecutor.shutdown();
+        IndexingQueue.getSingleton().shutdown();
+        ElasticsearchHelper.close();
+    }
+}
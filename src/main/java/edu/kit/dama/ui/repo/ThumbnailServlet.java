@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo;
+
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinServletService;
+import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.ui.repo.util.DigitalObjectPersistenceHelper;
+import edu.kit.dama.ui.repo.util.ThumbnailCache;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.zip.CRC32;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet delivering the preview thumbnail of a digital object created by the
+ * ThumbnailCreator staging processor at
+ * /img/thumb/&lt;digitalObjectIdentifier&gt;.png. In contrast to a Vaadin
+ * StreamResource, the URL does not depend on the UI session, so the browser
+ * can cache the thumbnail across pages and sessions. As thumbnails are access
+ * restricted, they are cached privately for one hour and are revalidated
+ * afterwards using an ETag derived from the content. The thumbnail itself is
+ * obtained from the {@link ThumbnailCache}.
+ *
+ * Access is checked for each request in the same way as by the
+ * {@link DownloadServlet}, i.e. the object has to be readable with the
+ * context of the user logged in to the repository UI and the data
+ * organization of the object has to be accessible with the same context.
+ *
+ * @author mf6319
+ */
+@WebServlet(value = "/img/thumb/*", asyncSupported = true)
+public class ThumbnailServlet extends HttpServlet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailServlet.class);
+
+    public static final String THUMBNAIL_PATH = "/img/thumb/";
+
+    private static final String EXTENSION = ".png";
+    private static final String CACHE_CONTROL = "private, max-age=3600";
+
+    /**
+     * Get the URL of the thumbnail of the object with the provided
+     * identifier. This method has to be called within a Vaadin request or
+     * within UI.access() in order to determine the context path.
+     *
+     * @param pIdentifier The digital object identifier.
+     *
+     * @return The thumbnail URL relative to the server root.
+     */
+    public static String getThumbnailUrl(String pIdentifier) {
+        //VaadinServlet.getCurrent() is only set while handling a request, the service is also available within UI.access()
+        String contextPath = ((VaadinServletService) VaadinService.getCurrent()).getServlet().getServletContext().getContextPath();
+        try {
+            return contextPath + THUMBNAIL_PATH + URLEncoder.encode(pIdentifier, "UTF-8").replace("+", "%20") + EXTENSION;
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException("Failed to encode identifier " + pIdentifier, ex);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, false);
+    }
+
+    /**
+     * Serve the thumbnail of the requested object.
+     *
+     * @param pRequest The request.
+     * @param pResponse The response.
+     * @param pContent FALSE if only the headers should be sent (HEAD request).
+     *
+     * @throws IOException If sending the response fails.
+     */
+    private void serve(HttpServletRequest pRequest, HttpServletResponse pResponse, boolean pContent) throws IOException {
+        String identifier = (pRequest.getPathInfo() != null) ? pRequest.getPathInfo().substring(1) : "";
+        if (identifier.endsWith(EXTENSION)) {
+            identifier = identifier.substring(0, identifier.length() - EXTENSION.length());
+        }
+        if (identifier.isEmpty()) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        byte[] thumbnail;
+        try {
+            thumbnail = getThumbnail(identifier, DownloadServlet.getAuthorizationContext(pRequest));
+        } catch (UnauthorizedAccessAttemptException ex) {
+            LOGGER.warn("Unauthorized thumbnail request for object " + identifier + ".", ex);
+            pResponse.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        if (thumbnail == null) {
+            pResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(thumbnail);
+        String eTag = "\"" + Long.toHexString(checksum.getValue()) + "-" + Integer.toHexString(thumbnail.length) + "\"";
+        pResponse.setHeader("ETag", eTag);
+        pResponse.setHeader("Cache-Control", CACHE_CONTROL);
+        String ifNoneMatch = pRequest.getHeader("If-None-Match");
+        if (ifNoneMatch != null && ("*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(eTag))) {
+            pResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        pResponse.setContentType("image/png");
+        pResponse.setContentLength(thumbnail.length);
+        if (pContent) {
+            pResponse.getOutputStream().write(thumbnail);
+        }
+    }
+
+    /**
+     * Get the thumbnail of the object with the provided identifier.
+     *
+     * @param pIdentifier The digital object identifier.
+     * @param pContext The context used to access the object and its data
+     * organization.
+     *
+     * @return The PNG encoded thumbnail or null if the object or its
+     * thumbnail does not exist.
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not allowed to
+     * access the object or its data.
+     */
+    private byte[] getThumbnail(String pIdentifier, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        DigitalObject object = DigitalObjectPersistenceHelper.getDigitalObjectByIdentifier(pIdentifier, pContext);
+        if (object == null) {
+            return null;
+        }
+        //the cache is shared by all users, so access is checked before it is used
+        DigitalObjectPersistenceHelper.checkDataAccess(object, pContext);
+        return ThumbnailCache.getSingleton().getThumbnail(object, pContext);
+    }
+}
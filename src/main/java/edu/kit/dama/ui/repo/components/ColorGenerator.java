@@ -16,6 +16,7 @@
 package edu.kit.dama.ui.repo.components;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -93,6 +94,15 @@ public class ColorGenerator {
         mRandom = new Random(System.currentTimeMillis());
     }
 
+    /**
+     * Get the list of supported colors.
+     *
+     * @return The unmodifiable list of colors.
+     */
+    public List<Integer> getColors() {
+        return Collections.unmodifiableList(mColors);
+    }
+
     /**
      * Get a random color from the list of supported colors.
      *
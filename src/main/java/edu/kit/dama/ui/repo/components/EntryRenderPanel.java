@@ -15,10 +15,9 @@
  */
 package edu.kit.dama.ui.repo.components;
 
+import com.vaadin.server.ExternalResource;
 import com.vaadin.server.FileDownloader;
 import com.vaadin.server.Page;
-import com.vaadin.server.StreamResource;
-import com.vaadin.server.StreamResource.StreamSource;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.shared.ui.label.ContentMode;
 import com.vaadin.ui.AbstractOrderedLayout;
@@ -42,35 +41,46 @@ import edu.kit.dama.authorization.entities.impl.AuthorizationContext;
 import edu.kit.dama.authorization.exceptions.EntityNotFoundException;
 import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
 import edu.kit.dama.authorization.services.administration.ResourceServiceLocal;
+import edu.kit.dama.commons.types.DigitalObjectId;
 import edu.kit.dama.mdm.base.DigitalObject;
 import edu.kit.dama.mdm.base.DigitalObjectType;
 import edu.kit.dama.mdm.base.Investigation;
 import edu.kit.dama.mdm.core.IMetaDataManager;
 import edu.kit.dama.mdm.core.MetaDataManagement;
-import edu.kit.dama.mdm.dataorganization.entity.core.IAttribute;
-import edu.kit.dama.mdm.dataorganization.entity.core.IFileNode;
 import edu.kit.dama.ui.commons.util.UIUtils7;
+import edu.kit.dama.ui.repo.AvatarServlet;
+import edu.kit.dama.ui.repo.DownloadServlet;
 import edu.kit.dama.ui.repo.MyVaadinUI;
+import edu.kit.dama.ui.repo.ThumbnailServlet;
+import edu.kit.dama.ui.repo.util.DataZipInfo;
+import edu.kit.dama.ui.repo.util.DataZipInfoCache;
 import edu.kit.dama.ui.repo.util.DigitalObjectPersistenceHelper;
+import edu.kit.dama.ui.repo.util.DigitalObjectSummary;
 import edu.kit.dama.ui.repo.util.DigitalObjectTypeHelper;
 import edu.kit.dama.ui.repo.util.ElasticsearchHelper;
-import java.io.ByteArrayInputStream;
+import edu.kit.dama.ui.repo.util.ThumbnailCache;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Render panel for a single entry in the {@link PaginationPanel}. The panel
+ * Render panel for a single entry in a {@link ResultView}. The panel
  * contains everything to visualize a digital object and to modify its content.
+ * If the panel is created from a {@link DigitalObjectSummary}, the displayed
+ * values are taken from the summary and the digital object entity is loaded
+ * not before the user edits, shares or (un)stars the object.
+ *
+ * The component tree of a panel is built only once. Afterwards, the panel can
+ * be bound to another object or summary via
+ * {@link #bind(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.authorization.entities.IAuthorizationContext)}
+ * or
+ * {@link #bind(edu.kit.dama.ui.repo.util.DigitalObjectSummary, edu.kit.dama.authorization.entities.IAuthorizationContext)},
+ * which allows to reuse panels, e.g. when switching between result pages.
  *
  * @author mf6319
  */
@@ -81,7 +91,11 @@ public class EntryRenderPanel extends CustomComponent {
     public final static String ERROR_PLACEHOLDER = "error";
 
     private AbstractOrderedLayout mainLayout;
-    private final PaginationPanel parent;
+    private HorizontalLayout errorLayout;
+    private Label warnLabel;
+    private Button cleanupButton;
+    private FileDownloader downloader;
+    private final ResultView parent;
     private GridLayout dcLayout;
     private HorizontalLayout miscActionLayout;
     private HorizontalLayout editActionLayout;
@@ -101,6 +115,12 @@ public class EntryRenderPanel extends CustomComponent {
     private Image typeImage;
     private boolean editMode = false;
     private DigitalObject object;
+    //the summary used for rendering as long as the object entity is not loaded
+    private DigitalObjectSummary summary = null;
+    private boolean objectLoaded = true;
+    private IAuthorizationContext context;
+    //states provided by the parent, e.g. if they were prefetched, which are used once instead of querying them
+    private EntryState knownState = null;
 
     /**
      * Default constructor.
@@ -109,11 +129,109 @@ public class EntryRenderPanel extends CustomComponent {
      * @param pObject The entry to render.
      * @param pContext The authorization context obtained from the main app.
      */
-    public EntryRenderPanel(PaginationPanel pParent, DigitalObject pObject, IAuthorizationContext pContext) {
+    public EntryRenderPanel(ResultView pParent, DigitalObject pObject, IAuthorizationContext pContext) {
+        this(pParent, pObject, pContext, null);
+    }
+
+    /**
+     * Constructor using already known states, e.g. if they were prefetched.
+     *
+     * @param pParent The parent component.
+     * @param pObject The entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     * @param pState The known states of the object or null.
+     */
+    public EntryRenderPanel(ResultView pParent, DigitalObject pObject, IAuthorizationContext pContext, EntryState pState) {
+        parent = pParent;
+        buildMainLayout();
+        bind(pObject, pContext, pState);
+    }
+
+    /**
+     * Constructor for the summary mode. The panel is rendered using the values
+     * of the provided summary, which does not require any database access.
+     *
+     * @param pParent The parent component.
+     * @param pSummary The summary of the entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     */
+    public EntryRenderPanel(ResultView pParent, DigitalObjectSummary pSummary, IAuthorizationContext pContext) {
+        this(pParent, pSummary, pContext, null);
+    }
+
+    /**
+     * Constructor for the summary mode using already known states, e.g. if
+     * they were prefetched.
+     *
+     * @param pParent The parent component.
+     * @param pSummary The summary of the entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     * @param pState The known states of the object or null.
+     */
+    public EntryRenderPanel(ResultView pParent, DigitalObjectSummary pSummary, IAuthorizationContext pContext, EntryState pState) {
         parent = pParent;
+        buildMainLayout();
+        bind(pSummary, pContext, pState);
+    }
+
+    /**
+     * Bind this panel to the provided object. All values and the state of all
+     * actions are updated, the component tree is reused.
+     *
+     * @param pObject The entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     */
+    public final void bind(DigitalObject pObject, IAuthorizationContext pContext) {
+        bind(pObject, pContext, null);
+    }
+
+    /**
+     * Bind this panel to the provided object using already known states. All
+     * states which are not known are obtained as usual.
+     *
+     * @param pObject The entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     * @param pState The known states of the object or null.
+     */
+    public final void bind(DigitalObject pObject, IAuthorizationContext pContext, EntryState pState) {
         object = pObject;
-        buildMainLayout(pContext);
-        setCompositionRoot(mainLayout);
+        summary = null;
+        objectLoaded = true;
+        context = pContext;
+        knownState = pState;
+        update();
+    }
+
+    /**
+     * Bind this panel to the provided summary. All values and the state of all
+     * actions are updated, the component tree is reused. The object entity is
+     * loaded not before it is needed.
+     *
+     * @param pSummary The summary of the entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     */
+    public final void bind(DigitalObjectSummary pSummary, IAuthorizationContext pContext) {
+        bind(pSummary, pContext, null);
+    }
+
+    /**
+     * Bind this panel to the provided summary using already known states. All
+     * states which are not known are obtained as usual.
+     *
+     * @param pSummary The summary of the entry to render.
+     * @param pContext The authorization context obtained from the main app.
+     * @param pState The known states of the object or null.
+     */
+    public final void bind(DigitalObjectSummary pSummary, IAuthorizationContext pContext, EntryState pState) {
+        summary = pSummary;
+        objectLoaded = false;
+        //transient object carrying only the identifier, which is sufficient for authorization and data access
+        object = new DigitalObject();
+        object.setDigitalObjectId(new DigitalObjectId(pSummary.getDigitalObjectIdentifier()));
+        object.setLabel(pSummary.getTitle());
+        context = pContext;
+        knownState = pState;
+        update();
     }
 
     @Override
@@ -122,41 +240,30 @@ public class EntryRenderPanel extends CustomComponent {
     }
 
     /**
-     * Build the main layout of the representation of one digital object.
-     *
-     * @param pContext The authorization context used to decide whether special
-     * administrative features are available or not.
+     * Build the main layout of the representation of one digital object and
+     * the layout shown if the object could not be obtained. All values are
+     * set later in {@link #update()}.
      */
-    private void buildMainLayout(IAuthorizationContext pContext) {
-        //check if the object could be obtained or not, e.g. due to missing permissions. If not, show an error message.
-        if (ERROR_PLACEHOLDER.equals(object.getLabel())) {
-            Label warnLabel = new Label("<h3>Failed to obtain entry with identifier '" + object.getDigitalObjectIdentifier() + "' from database.</h3>", ContentMode.HTML);
-            final Button cleanup = new Button("Cleanup");
-            cleanup.setDescription("Click to remove object from search index.");
-            cleanup.addClickListener(new Button.ClickListener() {
-
-                @Override
-                public void buttonClick(Button.ClickEvent event) {
-                    cleanup.setEnabled(false);
-                    new Notification("Information",
-                            "Cleanup not implemented, yet.", Notification.Type.TRAY_NOTIFICATION).show(Page.getCurrent());
-                }
-            });
-            if (pContext.getRoleRestriction().atLeast(Role.ADMINISTRATOR)) {
-                //show cleanup button
-                mainLayout = new HorizontalLayout(warnLabel, cleanup);
-            } else {
-                //no cleanup available
-                mainLayout = new HorizontalLayout(warnLabel);
+    private void buildMainLayout() {
+        //layout shown if the object could not be obtained, e.g. due to missing permissions
+        warnLabel = new Label("", ContentMode.HTML);
+        cleanupButton = new Button("Cleanup");
+        cleanupButton.setDescription("Click to remove object from search index.");
+        cleanupButton.addClickListener(new Button.ClickListener() {
+
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                cleanupButton.setEnabled(false);
+                new Notification("Information",
+                        "Cleanup not implemented, yet.", Notification.Type.TRAY_NOTIFICATION).show(Page.getCurrent());
             }
-            mainLayout.setSizeFull();
-            return;
-        }
+        });
+        errorLayout = new HorizontalLayout(warnLabel, cleanupButton);
+        errorLayout.setSizeFull();
 
         //initialize image field
         typeImage = new Image();
         typeImage.setSizeFull();
-        setImage(object);
 
         //initialize title label/field
         titleField = UIUtils7.factoryTextField(null, "dc:title");
@@ -166,29 +273,16 @@ public class EntryRenderPanel extends CustomComponent {
         titleLabel.addStyleName("basic_title");
 
         //initialize creator label
-        if (object.getUploader() != null) {
-            creatorLabel = new Label(StringUtils.abbreviate(object.getUploader().getFullname(), 100));
-            creatorLabel.setEnabled(true);
-        } else {
-            creatorLabel = new Label("dc:creator");
-            creatorLabel.setEnabled(false);
-        }
+        creatorLabel = new Label("dc:creator");
         creatorLabel.setWidth("100%");
         creatorLabel.addStyleName("basic_left");
 
         //initialize creation label
-        if (object.getStartDate() != null) {
-            creationLabel = new Label(new SimpleDateFormat().format(object.getStartDate()));
-            creationLabel.setEnabled(true);
-        } else {
-            creationLabel = new Label("dc:date");
-            creationLabel.setEnabled(false);
-        }
-
+        creationLabel = new Label("dc:date");
         creationLabel.setWidth("100%");
 
         //initialize identifier label
-        objectIdLabel = new Label(StringUtils.abbreviate(object.getDigitalObjectIdentifier(), 100));
+        objectIdLabel = new Label();
         objectIdLabel.setWidth("100%");
         //initialize description label/area
         descriptionLabel = new Label("dc:description");
@@ -204,101 +298,71 @@ public class EntryRenderPanel extends CustomComponent {
         downloadButton.setDescription("Download the data of this digital object.");
         downloadButton.setWidth("100%");
 
+        //the click listeners are only called if the according button is enabled, which depends on the role (see update())
         shareButton = new NativeButton("Share");
         shareButton.setIcon(new ThemeResource("img/16x16/share.png"));
         shareButton.setStyleName(BaseTheme.BUTTON_LINK);
-        shareButton.setDescription("Share this digital object.");
-        Role eligibleRole = Role.GUEST;
-        if (parent.getParentUI().isUserLoggedIn()) {
-            //obtain role only if a user is logged in and we are not in ingest mode.
-            //Otherwise, the dummy context of MyVaadinUI would be used and will cause unwanted access.
-            try {
-                //Determine eligible role of currently logged in user
-                eligibleRole = ResourceServiceLocal.getSingleton().getGrantRole(object.getSecurableResourceId(), parent.getParentUI().getAuthorizationContext().getUserId(), AuthorizationContext.factorySystemContext());
-            } catch (EntityNotFoundException | UnauthorizedAccessAttemptException ex) {
-                LOGGER.warn("Failed to determine eligable role for context " + parent.getParentUI().getAuthorizationContext() + ". Continue with GUEST permissions.", ex);
-            }
-        }
+        shareButton.addClickListener(new Button.ClickListener() {
 
-        //Update share button depending on role. Only possessing the role MANAGER (being the owner) entitles to share an object. 
-        if (eligibleRole.atLeast(Role.MANAGER)) {
-            shareButton.setEnabled(true);
-            shareButton.addClickListener(new Button.ClickListener() {
-
-                @Override
-                public void buttonClick(Button.ClickEvent event) {
-                    if (parent != null) {
-                        parent.showSharingPopup(object);
-                    }
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                if (parent != null && loadObject()) {
+                    parent.showSharingPopup(object);
                 }
-            });
-        } else {
-            shareButton.setEnabled(false);
-            shareButton.setDescription("Only the object owner is allowed to change sharing information.");
-        }
+            }
+        });
 
         editButton = new NativeButton("Edit Metadata");
         editButton.setIcon(new ThemeResource("img/16x16/edit.png"));
         editButton.setStyleName(BaseTheme.BUTTON_LINK);
-        editButton.setDescription("Edit this digital object's metadata.");
+        editButton.addClickListener(new Button.ClickListener() {
 
-        //Update edit button depending on role. If the object is shared with or owned by the logged in user, editing will be allowed.
-        if (eligibleRole.atLeast(Role.MEMBER)) {
-            editButton.setEnabled(true);
-            editButton.addClickListener(new Button.ClickListener() {
-
-                @Override
-                public void buttonClick(Button.ClickEvent event) {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                if (loadObject()) {
+                    //reset to show the current values of the entity
+                    reset();
                     switchEditMode();
                 }
-            });
-        } else {
-            editButton.setEnabled(false);
-            editButton.setDescription("Only the object owner and users the object is shared with are allowed to change metadata information.");
-        }
+            }
+        });
 
         starButton = new NativeButton("Favorite");
         starButton.setImmediate(true);
         starButton.setIcon(new ThemeResource("img/16x16/unstarred.png"));
         starButton.setStyleName(BaseTheme.BUTTON_LINK);
-        starButton.setDescription("Add/remove digital object to/from favorites.");
-
-        //Update star button depending on role. If the object is shared with or owned by the logged in user, "star'ing" will be allowed.
-        if (eligibleRole.atLeast(Role.MEMBER)) {
-            starButton.setEnabled(true);
-            starButton.addClickListener(new Button.ClickListener() {
+        starButton.addClickListener(new Button.ClickListener() {
 
-                @Override
-                public void buttonClick(Button.ClickEvent event) {
-                    IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
-                    mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
-
-                    try {
-                        DigitalObjectType favoriteType = mdm.findSingleResult("SELECT t FROM DigitalObjectType t WHERE t.identifier='" + MyVaadinUI.FAVORITE_TYPE_IDENTIFIER + "' AND t.typeDomain='" + MyVaadinUI.FAVORITE_TYPE_DOMAIN + "'", DigitalObjectType.class);
-                        if (DigitalObjectTypeHelper.isTypeAssignedToObject(object, favoriteType, AuthorizationContext.factorySystemContext())) {
-                            //remove favorite status
-                            DigitalObjectTypeHelper.removeTypeFromObject(object, favoriteType, AuthorizationContext.factorySystemContext());
-                            starButton.setIcon(new ThemeResource("img/16x16/unstarred.png"));
-                            new Notification("Information",
-                                    "Successfully removed favorite tag from object " + object.getDigitalObjectIdentifier() + ".", Notification.Type.TRAY_NOTIFICATION).show(Page.getCurrent());
-                        } else {
-                            //assign favorite status
-                            DigitalObjectTypeHelper.assignTypeToObject(object, favoriteType, AuthorizationContext.factorySystemContext());
-                            starButton.setIcon(new ThemeResource("img/16x16/starred.png"));
-                            new Notification("Information",
-                                    "Successfully added favorite tag to object " + object.getDigitalObjectIdentifier() + ".", Notification.Type.TRAY_NOTIFICATION).show(Page.getCurrent());
-                        }
-                    } catch (Exception e) {
-                        LOGGER.error("Failed to change 'favorite' status of digital object.", e);
-                        new Notification("Warning",
-                                "Failed to update favorite status.", Notification.Type.WARNING_MESSAGE).show(Page.getCurrent());
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                if (!loadObject()) {
+                    return;
+                }
+                try {
+                    DigitalObjectType favoriteType = MyVaadinUI.getFavoriteType();
+                    if (favoriteType == null) {
+                        throw new IllegalStateException("The 'favorite' object type does not exist.");
                     }
+                    if (DigitalObjectTypeHelper.isTypeAssignedToObject(object, favoriteType, AuthorizationContext.factorySystemContext())) {
+                        //remove favorite status
+                        DigitalObjectTypeHelper.removeTypeFromObject(object, favoriteType, AuthorizationContext.factorySystemContext());
+                        starButton.setIcon(new ThemeResource("img/16x16/unstarred.png"));
+                        new Notification("Information",
+                                "Successfully removed favorite tag from object " + object.getDigitalObjectIdentifier() + ".", Notification.Type.TRAY_NOTIFICATION).show(Page.getCurrent());
+                    } else {
+                        //assign favorite status
+                        DigitalObjectTypeHelper.assignTypeToObject(object, favoriteType, AuthorizationContext.factorySystemContext());
+                        starButton.setIcon(new ThemeResource("img/16x16/starred.png"));
+                        new Notification("Information",
+                                "Successfully added favorite tag to object " + object.getDigitalObjectIdentifier() + ".", Notification.Type.TRAY_NOTIFICATION).show(Page.getCurrent());
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Failed to change 'favorite' status of digital object.", e);
+                    new Notification("Warning",
+                            "Failed to update favorite status.", Notification.Type.WARNING_MESSAGE).show(Page.getCurrent());
                 }
-            });
-        } else {
-            starButton.setEnabled(false);
-            starButton.setDescription("Only the object owner and users the object is shared with are allowed to change the favorite state.");
-        }
+            }
+        });
 
         dcLayout = new UIUtils7.GridLayoutBuilder(3, 5)
                 .addComponent(titleLabel, 0, 0, 2, 1).addComponent(creationLabel, 2, 0, 1, 1)
@@ -440,111 +504,192 @@ public class EntryRenderPanel extends CustomComponent {
         mainLayout.addStyleName("basic");
         mainLayout.setWidth("100%");
         mainLayout.setHeight("185px");
+        LOGGER.debug("Layout successfully build up.");
+    }
+
+    /**
+     * Update all values and actions after the panel was bound to another
+     * object or summary.
+     */
+    private void update() {
+        //use the known states once, later updates obtain them again
+        EntryState state = (knownState != null) ? knownState : new EntryState();
+        knownState = null;
+        if (editMode) {
+            switchEditMode();
+        }
+        //check if the object could be obtained or not, e.g. due to missing permissions. If not, show an error message.
+        if (ERROR_PLACEHOLDER.equals(object.getLabel())) {
+            warnLabel.setValue("<h3>Failed to obtain entry with identifier '" + object.getDigitalObjectIdentifier() + "' from database.</h3>");
+            cleanupButton.setEnabled(true);
+            //cleanup is only available for administrators
+            cleanupButton.setVisible(context.getRoleRestriction().atLeast(Role.ADMINISTRATOR));
+            setCompositionRoot(errorLayout);
+            return;
+        }
+
+        setImage(object, state.getThumbnail());
+
+        String creator = (objectLoaded) ? ((object.getUploader() != null) ? object.getUploader().getFullname() : null) : summary.getCreator();
+        if (creator != null) {
+            creatorLabel.setValue(StringUtils.abbreviate(creator, 100));
+            creatorLabel.setEnabled(true);
+        } else {
+            creatorLabel.setValue("dc:creator");
+            creatorLabel.setEnabled(false);
+        }
+
+        Date creationDate = (objectLoaded) ? object.getStartDate() : summary.getDate();
+        if (creationDate != null) {
+            creationLabel.setValue(new SimpleDateFormat().format(creationDate));
+            creationLabel.setEnabled(true);
+        } else {
+            creationLabel.setValue("dc:date");
+            creationLabel.setEnabled(false);
+        }
+
+        objectIdLabel.setValue(StringUtils.abbreviate(object.getDigitalObjectIdentifier(), 100));
+
+        Role eligibleRole = state.getRole();
+        if (eligibleRole == null) {
+            eligibleRole = Role.GUEST;
+            if (parent.getParentUI().isUserLoggedIn()) {
+                //obtain role only if a user is logged in and we are not in ingest mode.
+                //Otherwise, the dummy context of MyVaadinUI would be used and will cause unwanted access.
+                try {
+                    //Determine eligible role of currently logged in user
+                    eligibleRole = ResourceServiceLocal.getSingleton().getGrantRole(object.getSecurableResourceId(), context.getUserId(), AuthorizationContext.factorySystemContext());
+                } catch (EntityNotFoundException | UnauthorizedAccessAttemptException ex) {
+                    LOGGER.warn("Failed to determine eligable role for context " + context + ". Continue with GUEST permissions.", ex);
+                }
+            }
+        }
+
+        //Update share button depending on role. Only possessing the role MANAGER (being the owner) entitles to share an object. 
+        shareButton.setEnabled(eligibleRole.atLeast(Role.MANAGER));
+        shareButton.setDescription((shareButton.isEnabled()) ? "Share this digital object." : "Only the object owner is allowed to change sharing information.");
+        //Update edit and star button depending on role. If the object is shared with or owned by the logged in user, editing and "star'ing" will be allowed.
+        editButton.setEnabled(eligibleRole.atLeast(Role.MEMBER));
+        editButton.setDescription((editButton.isEnabled()) ? "Edit this digital object's metadata." : "Only the object owner and users the object is shared with are allowed to change metadata information.");
+        starButton.setEnabled(eligibleRole.atLeast(Role.MEMBER));
+        starButton.setDescription((starButton.isEnabled()) ? "Add/remove digital object to/from favorites." : "Only the object owner and users the object is shared with are allowed to change the favorite state.");
+
         //do reset to load title and description
         reset();
-        LOGGER.debug("Layout successfully build up.");
+        setCompositionRoot(mainLayout);
     }
 
     /**
-     * Reset a single entry, e.g. to reload its state from the database.
+     * Load the digital object entity if the panel was created from a summary.
+     * If loading fails, a notification is shown.
+     *
+     * @return TRUE if the entity is available.
      */
-    private void reset() {
-        titleField.setValue(object.getLabel());
-        titleField.setDescription(object.getLabel());
+    private boolean loadObject() {
+        if (objectLoaded) {
+            return true;
+        }
+        DigitalObject loaded = null;
+        try {
+            loaded = DigitalObjectPersistenceHelper.getDigitalObjectByIdentifier(object.getDigitalObjectIdentifier(), context);
+        } catch (UnauthorizedAccessAttemptException ex) {
+            LOGGER.warn("Failed to get object by id '" + object.getDigitalObjectIdentifier() + "'.", ex);
+        }
+        if (loaded == null) {
+            new Notification("Warning",
+                    "Failed to obtain entry with identifier '" + object.getDigitalObjectIdentifier() + "' from database.", Notification.Type.WARNING_MESSAGE).show(Page.getCurrent());
+            return false;
+        }
+        object = loaded;
+        objectLoaded = true;
+        return true;
+    }
 
-        if (object.getLabel() != null) {
-            titleLabel.setValue(StringUtils.abbreviate(object.getLabel(), 100));
-            titleLabel.setDescription(object.getLabel());
+    /**
+     * Reset a single entry, e.g. to reload its state from the database. As
+     * long as the entity is not loaded, the values of the summary are used.
+     */
+    private void reset() {
+        String title = (objectLoaded) ? object.getLabel() : summary.getTitle();
+        titleField.setValue(title);
+        titleField.setDescription(title);
+
+        if (title != null) {
+            titleLabel.setValue(StringUtils.abbreviate(title, 100));
+            titleLabel.setDescription(title);
+            titleLabel.setEnabled(true);
         } else {
             titleLabel.setValue("dc:title");
             titleLabel.setEnabled(false);
         }
 
-        if (object.getInvestigation() != null) {
-            descriptionArea.setValue(object.getInvestigation().getDescription());
-            descriptionLabel.setValue(StringUtils.abbreviate(object.getInvestigation().getDescription(), 250));
-            descriptionLabel.setDescription(object.getInvestigation().getDescription());
+        String description = (objectLoaded) ? ((object.getInvestigation() != null) ? object.getInvestigation().getDescription() : null) : summary.getDescription();
+        boolean haveDescription = (objectLoaded) ? object.getInvestigation() != null : description != null;
+        if (haveDescription) {
+            descriptionArea.setValue(description);
+            descriptionLabel.setValue(StringUtils.abbreviate(description, 250));
+            descriptionLabel.setDescription(description);
             descriptionLabel.setEnabled(true);
         } else {
             descriptionLabel.setValue("dc:description");
             descriptionLabel.setEnabled(false);
         }
 
-        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
-        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
-
-        try {
-            DigitalObjectType favoriteType = mdm.findSingleResult("SELECT t FROM DigitalObjectType t WHERE t.identifier='" + MyVaadinUI.FAVORITE_TYPE_IDENTIFIER + "' AND t.typeDomain='" + MyVaadinUI.FAVORITE_TYPE_DOMAIN + "'", DigitalObjectType.class);
+        if (state.getFavorite() != null) {
+            starButton.setIcon(new ThemeResource((state.getFavorite()) ? "img/16x16/starred.png" : "img/16x16/unstarred.png"));
+        } else {
+            try {
+                DigitalObjectType favoriteType = MyVaadinUI.getFavoriteType();
 
-            if (DigitalObjectTypeHelper.isTypeAssignedToObject(object, favoriteType, AuthorizationContext.factorySystemContext())) {
-                //set favorite status
-                starButton.setIcon(new ThemeResource("img/16x16/starred.png"));
-            } else {
-                //set no-favorite status
-                starButton.setIcon(new ThemeResource("img/16x16/unstarred.png"));
+                if (DigitalObjectTypeHelper.isTypeAssignedToObject(object.getDigitalObjectIdentifier(), favoriteType, AuthorizationContext.factorySystemContext())) {
+                    //set favorite status
+                    starButton.setIcon(new ThemeResource("img/16x16/starred.png"));
+                } else {
+                    //set no-favorite status
+                    starButton.setIcon(new ThemeResource("img/16x16/unstarred.png"));
+                }
+            } catch (Exception e) {
+                LOGGER.error("Failed to reset 'favorite' status of digital object.", e);
             }
-        } catch (Exception e) {
-            LOGGER.error("Failed to reset 'favorite' status of digital object.", e);
         }
 
         downloadButton.setCaption("Download");
         downloadButton.setIcon(new ThemeResource("img/32x32/download.png"));
         downloadButton.setDescription("Download the data of this digital object.");
-        setupDownloadButton();
+        setupDownloadButton(state);
     }
 
     /**
      * Setup the download button for download-mode. The button click will be
      * linked to a download of the zipped version of the digital object's data.
-     * If no data is available/accessible, the button will be disabled.
+     * If no data is available/accessible, the button will be disabled. The
+     * archive info is taken from pState if it is known, otherwise it is
+     * obtained from the {@link DataZipInfoCache}.
+     *
+     * @param pState The known states of the object.
      */
-    private void setupDownloadButton() {
+    private void setupDownloadButton(EntryState pState) {
+        //remove the downloader of the previously bound object
+        if (downloader != null) {
+            downloader.remove();
+            downloader = null;
+        }
         boolean haveDownload = false;
         try {
-            //obtain the zip file node
-            IFileNode zipNode = DigitalObjectPersistenceHelper.getDataZipFileNode(object, AuthorizationContext.factorySystemContext());
-            if (zipNode != null) {
-                //zip file node is valid, check URL
-                final String zipUrl = zipNode.getLogicalFileName().asString();
-                if (zipUrl != null) {
-                    try {
-                        //URL seems to be valid, try to get file input stream
-                        final File toDownload = new File(new URL(zipUrl).toURI());
-                        final FileInputStream fin = new FileInputStream(toDownload);
-
-                        final FileDownloader downloader = new FileDownloader(new StreamResource(new StreamSource() {
-                            @Override
-                            public InputStream getStream() {
-                                return fin;
-                            }
-                        }, object.getDigitalObjectIdentifier() + ".zip"));
-
-                        downloader.extend(downloadButton);
-
-                        //obtain stored file size from the according attribute
-                        IAttribute[] attribs = zipNode.getAttributes().toArray(new IAttribute[]{});
-                        long size = -1;
-
-                        if (attribs != null) {
-                            for (IAttribute attrib : attribs) {
-                                if ("size".equals(attrib.getKey())) {
-                                    try {
-                                        size = Long.parseLong(attrib.getValue());
-                                    } catch (NumberFormatException ex) {
-                                        //no long
-                                    }
-                                }
-                            }
-                        }
-
-                        downloadButton.setDescription("Download file " + toDownload.getName() + " (" + size + " bytes)");
-                        haveDownload = true;
-                    } catch (MalformedURLException | URISyntaxException | FileNotFoundException ex) {
-                        LOGGER.error("Failed to setup download.", ex);
-                        downloadButton.setDescription("Failed to obtain data URL.");
-                    }
-                } else {
-                    downloadButton.setDescription("No data available, yet.");
+            //obtain the cached archive info, the archive itself is not accessed before the download is requested
+            DataZipInfo zipInfo = (pState.isArchiveKnown()) ? pState.getArchive() : DataZipInfoCache.getSingleton().getDataZipInfo(object, AuthorizationContext.factorySystemContext());
+            if (zipInfo != null) {
+                try {
+                    File toDownload = zipInfo.getFile();
+                    //the archive is delivered by the DownloadServlet, which checks access and opens the file not before it is requested
+                    downloader = new FileDownloader(new ExternalResource(DownloadServlet.getDownloadUrl(object.getDigitalObjectIdentifier())));
+
+                    downloader.extend(downloadButton);
+                    downloadButton.setDescription("Download file " + toDownload.getName() + " (" + zipInfo.getSize() + " bytes)");
+                    haveDownload = true;
+                } catch (MalformedURLException | URISyntaxException ex) {
+                    LOGGER.error("Failed to setup download.", ex);
+                    downloadButton.setDescription("Failed to obtain data URL.");
                 }
             } else {
                 downloadButton.setDescription("No data available, yet.");
@@ -578,29 +723,34 @@ public class EntryRenderPanel extends CustomComponent {
     }
 
     /**
-     * Set the image component. Currently, an automatically generated
-     * placeholder image is used. This could be changed by e.g. storing
-     * thumbnails in the data organization of an object or by storing additional
-     * image information as new entity in the database.
+     * Set the image component. If a preview thumbnail was created by the
+     * ThumbnailCreator staging processor, the thumbnail is obtained from the
+     * {@link ThumbnailServlet}. Otherwise, an automatically generated
+     * placeholder image is used, which is obtained from the
+     * {@link AvatarServlet}. Both servlets use stable URLs, so the images can
+     * be cached by the browser across pages and sessions.
      *
      * @param pObject The object to set the image for.
+     * @param pThumbnail TRUE if a thumbnail exists, FALSE if not or null if
+     * this has to be checked using the {@link ThumbnailCache}.
      */
-    private void setImage(DigitalObject pObject) {
-
-        //just use test for image...later check data organization
-        final String text = pObject.getLabel();
-
-        typeImage = new Image(null, new StreamResource(new StreamResource.StreamSource() {
-
-            @Override
-            public InputStream getStream() {
-                try {
-                    return new ByteArrayInputStream(TextImage.from(text).withSize(40).getBytes());
-                } catch (IOException ex) {
-                    //error...should not occur..but return empty array to avoid failing
-                    return new ByteArrayInputStream(new byte[]{});
-                }
+    private void setImage(DigitalObject pObject, Boolean pThumbnail) {
+        boolean thumbnail = false;
+        if (pThumbnail != null) {
+            thumbnail = pThumbnail;
+        } else {
+            try {
+                //only check whether a thumbnail exists, the servlet checks access with the context of the user
+                thumbnail = ThumbnailCache.getSingleton().getThumbnail(pObject, AuthorizationContext.factorySystemContext()) != null;
+            } catch (UnauthorizedAccessAttemptException ex) {
+                LOGGER.error("Failed to obtain thumbnail.", ex);
             }
-        }, "dummy.png"));
+        }
+        if (thumbnail) {
+            typeImage.setSource(new ExternalResource(ThumbnailServlet.getThumbnailUrl(pObject.getDigitalObjectIdentifier())));
+            return;
+        }
+        TextImage image = TextImage.from(pObject.getLabel()).withSize(TextImageCache.ENTRY_IMAGE_SIZE);
+        typeImage.setSource(new ExternalResource(AvatarServlet.getAvatarUrl(image, TextImage.getConfiguredFormat())));
     }
 }
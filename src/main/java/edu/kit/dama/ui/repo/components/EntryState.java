@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.components;
+
+import edu.kit.dama.authorization.entities.Role;
+import edu.kit.dama.ui.repo.util.DataZipInfo;
+
+/**
+ * States of a digital object which were obtained before an
+ * {@link EntryRenderPanel} is bound to the object, e.g. while a page is
+ * prefetched in the background. Each state which is not set is obtained by
+ * the panel itself.
+ *
+ * @author mf6319
+ */
+public final class EntryState {
+
+    private Role role = null;
+    private Boolean favorite = null;
+    private Boolean thumbnail = null;
+    private DataZipInfo archive = null;
+    private boolean archiveKnown = false;
+
+    /**
+     * Get the role of the current user for the object.
+     *
+     * @return The role or null if unknown.
+     */
+    public Role getRole() {
+        return role;
+    }
+
+    /**
+     * Set the role of the current user for the object.
+     *
+     * @param pRole The role.
+     */
+    public void setRole(Role pRole) {
+        role = pRole;
+    }
+
+    /**
+     * Get the favorite state of the object.
+     *
+     * @return The favorite state or null if unknown.
+     */
+    public Boolean getFavorite() {
+        return favorite;
+    }
+
+    /**
+     * Set the favorite state of the object.
+     *
+     * @param pFavorite The favorite state.
+     */
+    public void setFavorite(Boolean pFavorite) {
+        favorite = pFavorite;
+    }
+
+    /**
+     * Check whether a preview thumbnail exists for the object.
+     *
+     * @return TRUE if a thumbnail exists or null if unknown.
+     */
+    public Boolean getThumbnail() {
+        return thumbnail;
+    }
+
+    /**
+     * Set whether a preview thumbnail exists for the object.
+     *
+     * @param pThumbnail TRUE if a thumbnail exists.
+     */
+    public void setThumbnail(Boolean pThumbnail) {
+        thumbnail = pThumbnail;
+    }
+
+    /**
+     * Get the info of the zipped data archive of the object. Use
+     * {@link #isArchiveKnown()} to distinguish objects without archive from
+     * objects whose archive is unknown.
+     *
+     * @return The archive info or null.
+     */
+    public DataZipInfo getArchive() {
+        return archive;
+    }
+
+    /**
+     * Set the info of the zipped data archive of the object.
+     *
+     * @param pArchive The archive info or null if the object has no archive.
+     */
+    public void setArchive(DataZipInfo pArchive) {
+        archive = pArchive;
+        archiveKnown = true;
+    }
+
+    /**
+     * Check whether the archive info was set.
+     *
+     * @return TRUE if the archive info was set.
+     */
+    public boolean isArchiveKnown() {
+        return archiveKnown;
+    }
+}
@@ -26,27 +26,94 @@ import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Link;
 import com.vaadin.ui.NativeButton;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.VerticalLayout;
 import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.authorization.entities.Role;
+import edu.kit.dama.authorization.entities.SecurableResourceId;
+import edu.kit.dama.authorization.entities.impl.AuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
 import edu.kit.dama.commons.types.DigitalObjectId;
 import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.DigitalObjectType;
 import edu.kit.dama.ui.repo.MyVaadinUI;
+import edu.kit.dama.ui.repo.util.DataZipInfoCache;
 import edu.kit.dama.ui.repo.util.DigitalObjectPersistenceHelper;
+import edu.kit.dama.ui.repo.util.DigitalObjectSummary;
+import edu.kit.dama.ui.repo.util.DigitalObjectTypeHelper;
+import edu.kit.dama.ui.repo.util.ElasticsearchHelper;
+import edu.kit.dama.ui.repo.util.GrantResolver;
+import edu.kit.dama.ui.repo.util.PrefetchExecutor;
+import edu.kit.dama.ui.repo.util.SearchResultPage;
+import edu.kit.dama.ui.repo.util.ThumbnailCache;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Pagination panel component used to render and navigate through search
- * results.
+ * results. After a page was rendered, the data of the next page, i.e. the
+ * summaries or entities of all objects, the roles of the current user, the
+ * favorite states, the thumbnails and the data archives, is loaded in the
+ * background using the {@link PrefetchExecutor}. The result is handed over to the UI via
+ * {@link UI#access(java.lang.Runnable)}, so navigating to the next page
+ * requires no database or search index access. If the user navigates before
+ * prefetching has finished, the page is pushed to the client as soon as it is
+ * available.
  *
  * @author mf6319
  */
-public class PaginationPanel extends CustomComponent {
+public class PaginationPanel extends CustomComponent implements ResultView {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PaginationPanel.class);
 
+    /**
+     * All data needed to render one page, which is loaded either
+     * synchronously or in the background.
+     */
+    private static final class PageData {
+
+        private final long generation;
+        private final int page;
+        private final IAuthorizationContext context;
+        //total number of hits and summaries of the objects on the page in query mode
+        private long total = 0;
+        private List<DigitalObjectSummary> summaries = null;
+        //objects on the page, including error placeholders, if not in query mode
+        private List<DigitalObject> objects = null;
+        //roles, favorite states, thumbnails and archives by digital object identifier
+        private final Map<String, EntryState> states = new HashMap<>();
+
+        /**
+         * Get the state of the object with the provided identifier, which is
+         * created on first access.
+         *
+         * @param pIdentifier The object identifier.
+         *
+         * @return The state.
+         */
+        private EntryState getState(String pIdentifier) {
+            EntryState state = states.get(pIdentifier);
+            if (state == null) {
+                state = new EntryState();
+                states.put(pIdentifier, state);
+            }
+            return state;
+        }
+
+        PageData(long pGeneration, int pPage, IAuthorizationContext pContext) {
+            generation = pGeneration;
+            page = pPage;
+            context = pContext;
+        }
+    }
+
     private VerticalLayout mainLayout;
     private final VerticalLayout pageLayout = new VerticalLayout();
     private HorizontalLayout navigation = new HorizontalLayout();
@@ -59,6 +126,18 @@ public class PaginationPanel extends CustomComponent {
     private final int entriesPerPage = 10;
     private final MyVaadinUI parent;
     private final List<DigitalObjectId> allEntries = new LinkedList<>();
+    //if set, only the current page of the result of this query is obtained from the search index
+    private String query = null;
+    //render panels which are bound to the entries of the current page and which are reused for each page
+    private final List<EntryRenderPanel> panelPool = new ArrayList<>();
+    //generation of the current query or list of entries, used to detect outdated prefetched pages
+    private long resultGeneration = 0;
+    //the prefetched data of the next page or null
+    private PageData prefetchedPage = null;
+    //the page which is currently prefetched in the background or -1
+    private int pendingPage = -1;
+    //TRUE if the user navigated to the pending page before prefetching has finished
+    private boolean awaitingPendingPage = false;
 
     /**
      * Default constructor.
@@ -76,7 +155,10 @@ public class PaginationPanel extends CustomComponent {
      *
      * @param pObjects All digital object ids.
      */
+    @Override
     public final void setAllEntries(List<DigitalObjectId> pObjects) {
+        resetPrefetching();
+        query = null;
         allEntries.clear();
         allEntries.addAll(pObjects);
         overallPages = allEntries.size() / entriesPerPage;
@@ -85,11 +167,30 @@ public class PaginationPanel extends CustomComponent {
         updatePage();
     }
 
+    /**
+     * Set the query whose results should be rendered. In contrast to
+     * {@link #setAllEntries(java.util.List)}, only the ids of the objects on
+     * the current page and the total number of hits are obtained from the
+     * search index each time the page changes. The entries are rendered from
+     * the indexed metadata without accessing the database.
+     *
+     * @param pQuery The fulltext query.
+     */
+    @Override
+    public final void setQuery(String pQuery) {
+        resetPrefetching();
+        allEntries.clear();
+        query = pQuery;
+        currentPage = 0;
+        updatePage();
+    }
+
     /**
      * Get the parent UI.
      *
      * @return The parent UI.
      */
+    @Override
     public final MyVaadinUI getParentUI() {
         return parent;
     }
@@ -104,7 +205,8 @@ public class PaginationPanel extends CustomComponent {
      *
      * @param pObject The object to share.
      */
-    protected final void showSharingPopup(DigitalObject pObject) {
+    @Override
+    public final void showSharingPopup(DigitalObject pObject) {
         shareComponent.setup(pObject);
         shareComponent.getPopupView().setPopupVisible(true);
     }
@@ -128,36 +230,60 @@ public class PaginationPanel extends CustomComponent {
     }
 
     /**
-     * Update the currently rendered page.
+     * Update the currently rendered page. If the page was prefetched, the
+     * prefetched data is rendered immediately. If the page is still being
+     * prefetched, it is rendered as soon as prefetching has finished.
+     * Otherwise, the page is loaded synchronously. Afterwards, prefetching of
+     * the next page is started.
      */
     private void updatePage() {
-        pageLayout.removeAllComponents();
-        List<DigitalObjectId> objectsOnPage = allEntries.subList(currentPage * entriesPerPage, Math.min(currentPage * entriesPerPage + entriesPerPage, allEntries.size()));
+        PageData data = null;
+        if (prefetchedPage != null && prefetchedPage.page == currentPage) {
+            data = prefetchedPage;
+        }
+        prefetchedPage = null;
+        if (data == null && pendingPage == currentPage) {
+            //rendered by onPagePrefetched() and pushed to the client
+            awaitingPendingPage = true;
+            return;
+        }
+        awaitingPendingPage = false;
+        if (data == null) {
+            data = loadPage(resultGeneration, currentPage, query, getIdsOnPage(currentPage), parent.getAuthorizationContext(), parent.isUserLoggedIn());
+        }
+        renderPage(data);
+        prefetchNextPage();
+    }
+
+    /**
+     * Render the provided page data.
+     *
+     * @param pData The page data.
+     */
+    private void renderPage(PageData pData) {
         int cnt = 0;
-        IAuthorizationContext ctx = parent.getAuthorizationContext();
-        while (cnt < entriesPerPage) {
-            if (objectsOnPage.size() > cnt) {
-                DigitalObject entry = null;
-                String entryId = null;
-                try {
-                    entryId = objectsOnPage.get(cnt).getStringRepresentation().trim();
-                    entry = DigitalObjectPersistenceHelper.getDigitalObjectByIdentifier(entryId, ctx);
-                } catch (Exception ex) {
-                    //do nothing, entry stays null
-                    LOGGER.warn("Failed to get object by id '" + entryId + "'. Adding error placeholder component.", ex);
-                }
-                if (entry == null) {
-                    entry = new DigitalObject();
-                    entry.setDigitalObjectId(new DigitalObjectId(entryId));
-                    entry.setLabel(EntryRenderPanel.ERROR_PLACEHOLDER);
-                }
-                pageLayout.addComponent(new EntryRenderPanel(this, entry, ctx));
+        if (pData.summaries != null) {
+            overallPages = (int) (pData.total / entriesPerPage);
+            overallPages += (pData.total % entriesPerPage > 0) ? 1 : 0;
+            for (DigitalObjectSummary summary : pData.summaries) {
+                String id = summary.getDigitalObjectIdentifier();
+                showEntry(cnt, summary, pData.context, pData.states.get(id));
+                cnt++;
             }
-            cnt++;
+        } else {
+            for (DigitalObject entry : pData.objects) {
+                String id = entry.getDigitalObjectIdentifier();
+                showEntry(cnt, entry, pData.context, pData.states.get(id));
+                cnt++;
+            }
+        }
+        //hide all pooled panels not needed for the current page
+        for (int i = cnt; i < panelPool.size(); i++) {
+            panelPool.get(i).setVisible(false);
         }
 
         //update navigation
-        if (!objectsOnPage.isEmpty()) {
+        if (cnt > 0) {
             HorizontalLayout newNavigation = buildNavigationComponent();
             mainLayout.replaceComponent(navigation, newNavigation);
             navigation = newNavigation;
@@ -169,6 +295,297 @@ public class PaginationPanel extends CustomComponent {
         }
     }
 
+    /**
+     * Start loading the page following the current page in the background.
+     * The result is handed over to the UI via {@link UI#access(java.lang.Runnable)}.
+     * The UI is notified in any case, also if loading fails or if the task is
+     * dropped, so a pending page never blocks navigation.
+     */
+    private void prefetchNextPage() {
+        final int nextPage = currentPage + 1;
+        if (!PrefetchExecutor.isEnabled() || nextPage >= overallPages || pendingPage == nextPage) {
+            return;
+        }
+        //everything needed for loading is collected here, the background thread must not access the UI state
+        final long generation = resultGeneration;
+        final String pageQuery = query;
+        final List<DigitalObjectId> ids = getIdsOnPage(nextPage);
+        final IAuthorizationContext ctx = parent.getAuthorizationContext();
+        final boolean loggedIn = parent.isUserLoggedIn();
+        boolean submitted = PrefetchExecutor.getSingleton().submit(new PrefetchExecutor.Task() {
+
+            @Override
+            public void run() {
+                PageData data = null;
+                try {
+                    data = loadPage(generation, nextPage, pageQuery, ids, ctx, loggedIn);
+                } catch (Throwable t) {
+                    LOGGER.warn("Failed to prefetch page " + nextPage + ".", t);
+                } finally {
+                    notifyUI(data);
+                }
+            }
+
+            @Override
+            public void discard() {
+                notifyUI(null);
+            }
+
+            /**
+             * Hand over the result to the UI.
+             *
+             * @param pData The page data or null if loading has failed.
+             */
+            private void notifyUI(final PageData pData) {
+                try {
+                    parent.access(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            onPagePrefetched(generation, nextPage, pData);
+                        }
+                    });
+                } catch (UIDetachedException ex) {
+                    LOGGER.debug("UI detached before page {} was prefetched.", nextPage);
+                }
+            }
+        });
+        if (submitted) {
+            pendingPage = nextPage;
+        }
+    }
+
+    /**
+     * Called while holding the session lock as soon as prefetching of a page
+     * has finished. Data prefetched for a previous query or list of entries
+     * is ignored. If the user is already waiting for the page, it is rendered
+     * immediately. If prefetching has failed, the page is loaded
+     * synchronously in that case.
+     *
+     * @param pGeneration The result generation the page was prefetched for.
+     * @param pPage The prefetched page.
+     * @param pData The prefetched page data or null if prefetching has failed.
+     */
+    private void onPagePrefetched(long pGeneration, int pPage, PageData pData) {
+        if (pGeneration != resultGeneration) {
+            return;
+        }
+        if (pPage == pendingPage) {
+            pendingPage = -1;
+        }
+        if (pData != null) {
+            prefetchedPage = pData;
+        }
+        if (awaitingPendingPage && pPage == currentPage) {
+            //renders the prefetched data or loads the page synchronously as it is no longer pending
+            updatePage();
+        }
+    }
+
+    /**
+     * Discard all prefetched and pending pages, e.g. if the query or the list
+     * of entries has changed.
+     */
+    private void resetPrefetching() {
+        resultGeneration++;
+        prefetchedPage = null;
+        pendingPage = -1;
+        awaitingPendingPage = false;
+    }
+
+    /**
+     * Get the ids of all objects on the provided page if not in query mode.
+     *
+     * @param pPage The page.
+     *
+     * @return A copy of the ids of all objects on the page or null in query
+     * mode.
+     */
+    private List<DigitalObjectId> getIdsOnPage(int pPage) {
+        if (query != null) {
+            return null;
+        }
+        return new ArrayList<>(allEntries.subList(Math.min(pPage * entriesPerPage, allEntries.size()), Math.min(pPage * entriesPerPage + entriesPerPage, allEntries.size())));
+    }
+
+    /**
+     * Load all data needed to render one page, i.e. the summaries (query mode)
+     * or entities of all objects on the page, the roles of the current user,
+     * the favorite states, the thumbnails and the data archives. This method does not access the state of the
+     * component and can be called from a background thread. Errors are logged
+     * and result in an empty page or in error placeholders.
+     *
+     * @param pGeneration The generation of the query or list of entries.
+     * @param pPage The page.
+     * @param pQuery The query or null if not in query mode.
+     * @param pIds The ids of all objects on the page if not in query mode.
+     * @param pContext The authorization context.
+     * @param pLoggedIn TRUE if a user is logged in, otherwise all objects are
+     * accessed with GUEST role.
+     *
+     * @return The page data.
+     */
+    private PageData loadPage(long pGeneration, int pPage, String pQuery, List<DigitalObjectId> pIds, IAuthorizationContext pContext, boolean pLoggedIn) {
+        PageData data = new PageData(pGeneration, pPage, pContext);
+        //(transient) objects used to determine the states of all objects
+        List<DigitalObject> objects = new ArrayList<>();
+        if (pQuery != null) {
+            try {
+                SearchResultPage page = ElasticsearchHelper.search(pQuery, pPage * entriesPerPage, entriesPerPage);
+                data.total = page.getTotal();
+                data.summaries = page.getSummaries();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Failed to obtain page " + pPage + " for query '" + pQuery + "'.", ex);
+                data.total = 0;
+                data.summaries = new ArrayList<>();
+            }
+            for (DigitalObjectSummary summary : data.summaries) {
+                DigitalObject object = new DigitalObject();
+                object.setDigitalObjectId(new DigitalObjectId(summary.getDigitalObjectIdentifier()));
+                objects.add(object);
+            }
+        } else {
+            //obtain all objects on the page with one query
+            List<String> entryIds = new ArrayList<>();
+            for (DigitalObjectId objectId : pIds) {
+                entryIds.add(objectId.getStringRepresentation().trim());
+            }
+            Map<String, DigitalObject> entries = new HashMap<>();
+            try {
+                entries = DigitalObjectPersistenceHelper.getDigitalObjectsByIdentifiers(entryIds, pContext);
+            } catch (Exception ex) {
+                //do nothing, all entries stay null
+                LOGGER.warn("Failed to get objects by ids " + entryIds + ". Adding error placeholder components.", ex);
+            }
+            data.objects = new ArrayList<>();
+            for (String entryId : entryIds) {
+                DigitalObject entry = entries.get(entryId);
+                if (entry == null) {
+                    LOGGER.warn("Failed to get object by id '{}'. Adding error placeholder component.", entryId);
+                    entry = new DigitalObject();
+                    entry.setDigitalObjectId(new DigitalObjectId(entryId));
+                    entry.setLabel(EntryRenderPanel.ERROR_PLACEHOLDER);
+                } else {
+                    objects.add(entry);
+                }
+                data.objects.add(entry);
+            }
+        }
+        loadStates(data, objects, pLoggedIn);
+        return data;
+    }
+
+    /**
+     * Determine the roles of the current user, the favorite states, the
+     * existence of thumbnails and the data archives of the provided objects.
+     * States which cannot be determined are skipped, they are obtained by the
+     * render panel.
+     *
+     * @param pData The page data receiving the states.
+     * @param pObjects The objects on the page.
+     * @param pLoggedIn TRUE if a user is logged in.
+     */
+    private void loadStates(PageData pData, List<DigitalObject> pObjects, boolean pLoggedIn) {
+        if (pObjects.isEmpty()) {
+            return;
+        }
+        if (pLoggedIn) {
+            //obtain the roles of all objects at once, they are mapped by domain unique id, which is the object identifier
+            List<SecurableResourceId> resources = new ArrayList<>();
+            for (DigitalObject object : pObjects) {
+                resources.add(object.getSecurableResourceId());
+            }
+            for (Map.Entry<String, Role> role : GrantResolver.getGrantRoles(pData.context.getUserId(), resources).entrySet()) {
+                pData.getState(role.getKey()).setRole(role.getValue());
+            }
+        } else {
+            for (DigitalObject object : pObjects) {
+                pData.getState(object.getDigitalObjectIdentifier()).setRole(Role.GUEST);
+            }
+        }
+
+        //only check whether thumbnails and archives exist, access is checked by the servlets with the context of the user
+        for (DigitalObject object : pObjects) {
+            EntryState state = pData.getState(object.getDigitalObjectIdentifier());
+            try {
+                state.setThumbnail(ThumbnailCache.getSingleton().getThumbnail(object, AuthorizationContext.factorySystemContext()) != null);
+                state.setArchive(DataZipInfoCache.getSingleton().getDataZipInfo(object, AuthorizationContext.factorySystemContext()));
+            } catch (UnauthorizedAccessAttemptException | RuntimeException ex) {
+                LOGGER.error("Failed to obtain thumbnail or data archive of digital object " + object.getDigitalObjectIdentifier() + ".", ex);
+            }
+        }
+
+        try {
+            DigitalObjectType favoriteType = MyVaadinUI.getFavoriteType();
+            //obtain the favorite states of all objects at once, in query mode only the identifiers are known
+            if (pData.summaries != null) {
+                List<String> identifiers = new ArrayList<>();
+                for (DigitalObject object : pObjects) {
+                    identifiers.add(object.getDigitalObjectIdentifier());
+                }
+                Set<String> favorites = DigitalObjectTypeHelper.getIdentifiersWithType(identifiers, favoriteType, AuthorizationContext.factorySystemContext());
+                for (String identifier : identifiers) {
+                    pData.getState(identifier).setFavorite(favorites.contains(identifier));
+                }
+            } else {
+                Set<Long> favorites = DigitalObjectTypeHelper.getObjectsWithType(pObjects, favoriteType, AuthorizationContext.factorySystemContext());
+                for (DigitalObject object : pObjects) {
+                    pData.getState(object.getDigitalObjectIdentifier()).setFavorite(favorites.contains(object.getBaseId()));
+                }
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Failed to obtain 'favorite' status of digital objects.", ex);
+        }
+    }
+
+    /**
+     * Show the provided summary at the provided position of the current page.
+     * If there is already a panel at this position, it is bound to the
+     * summary. Otherwise, a new panel is added to the pool.
+     *
+     * @param pIndex The position on the current page.
+     * @param pSummary The summary to show.
+     * @param pContext The authorization context.
+     * @param pState The known states of the object or null.
+     */
+    private void showEntry(int pIndex, DigitalObjectSummary pSummary, IAuthorizationContext pContext, EntryState pState) {
+        if (pIndex < panelPool.size()) {
+            panelPool.get(pIndex).bind(pSummary, pContext, pState);
+            panelPool.get(pIndex).setVisible(true);
+        } else {
+            addToPool(new EntryRenderPanel(this, pSummary, pContext, pState));
+        }
+    }
+
+    /**
+     * Show the provided object at the provided position of the current page.
+     * If there is already a panel at this position, it is bound to the object.
+     * Otherwise, a new panel is added to the pool.
+     *
+     * @param pIndex The position on the current page.
+     * @param pObject The object to show.
+     * @param pContext The authorization context.
+     * @param pState The known states of the object or null.
+     */
+    private void showEntry(int pIndex, DigitalObject pObject, IAuthorizationContext pContext, EntryState pState) {
+        if (pIndex < panelPool.size()) {
+            panelPool.get(pIndex).bind(pObject, pContext, pState);
+            panelPool.get(pIndex).setVisible(true);
+        } else {
+            addToPool(new EntryRenderPanel(this, pObject, pContext, pState));
+        }
+    }
+
+    /**
+     * Add a new panel to the pool and to the page layout.
+     *
+     * @param pPanel The panel.
+     */
+    private void addToPool(EntryRenderPanel pPanel) {
+        panelPool.add(pPanel);
+        pageLayout.addComponent(pPanel);
+    }
+
     /**
      * Build the navigation layout including the appropriate buttons to navigate
      * through the pagination pages.
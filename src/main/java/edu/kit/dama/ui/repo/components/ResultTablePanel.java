@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.components;
+
+import com.vaadin.data.Property;
+import com.vaadin.shared.ui.label.ContentMode;
+import com.vaadin.ui.Alignment;
+import com.vaadin.ui.CustomComponent;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.VerticalLayout;
+import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.commons.types.DigitalObjectId;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.ui.repo.MyVaadinUI;
+import edu.kit.dama.ui.repo.util.DigitalObjectPersistenceHelper;
+import edu.kit.dama.ui.repo.util.DigitalObjectSummary;
+import edu.kit.dama.ui.repo.util.ElasticsearchHelper;
+import edu.kit.dama.ui.repo.util.SearchResultContainer;
+import edu.kit.dama.ui.repo.util.SearchResultPage;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Result view rendering all results in one scrollable table. The table is
+ * backed by a {@link SearchResultContainer}, so only the rows in the viewport
+ * and a small window above and below are obtained and rendered. Selecting a
+ * row shows one {@link EntryRenderPanel} bound to the selected row below the
+ * table, which offers all actions like editing or sharing.
+ *
+ * @author mf6319
+ */
+public class ResultTablePanel extends CustomComponent implements ResultView {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultTablePanel.class);
+
+    private final MyVaadinUI parent;
+    private final ShareObjectComponent shareComponent = new ShareObjectComponent();
+    private VerticalLayout mainLayout;
+    private Table table;
+    private Label hitsLabel;
+    private VerticalLayout detailsLayout;
+    //single render panel which is bound to the selected row
+    private EntryRenderPanel detailsPanel;
+    private SearchResultContainer container;
+
+    /**
+     * Default constructor.
+     *
+     * @param pParent The parent used to obtain the authorization context.
+     */
+    public ResultTablePanel(MyVaadinUI pParent) {
+        parent = pParent;
+        buildMainLayout();
+        setCompositionRoot(mainLayout);
+    }
+
+    @Override
+    public final void setAllEntries(final List<DigitalObjectId> pObjects) {
+        final List<DigitalObjectId> objects = new ArrayList<>(pObjects);
+        setContainer(new SearchResultContainer(new SearchResultContainer.PageLoader() {
+
+            @Override
+            public SearchResultPage loadPage(int pFrom, int pSize) {
+                List<String> identifiers = new ArrayList<>();
+                for (DigitalObjectId objectId : objects.subList(Math.min(pFrom, objects.size()), Math.min(pFrom + pSize, objects.size()))) {
+                    identifiers.add(objectId.getStringRepresentation().trim());
+                }
+                List<DigitalObjectSummary> summaries = new LinkedList<>();
+                try {
+                    Map<String, DigitalObject> entries = DigitalObjectPersistenceHelper.getDigitalObjectsByIdentifiers(identifiers, parent.getAuthorizationContext());
+                    for (Map.Entry<String, DigitalObject> entry : entries.entrySet()) {
+                        summaries.add((entry.getValue() != null) ? DigitalObjectSummary.fromObject(entry.getValue()) : new DigitalObjectSummary(new DigitalObjectId(entry.getKey()), EntryRenderPanel.ERROR_PLACEHOLDER, null, null, null));
+                    }
+                } catch (Exception ex) {
+                    LOGGER.warn("Failed to get objects by ids " + identifiers + ".", ex);
+                }
+                return new SearchResultPage(summaries, objects.size(), pFrom);
+            }
+        }));
+    }
+
+    @Override
+    public final void setQuery(final String pQuery) {
+        try {
+            setContainer(new SearchResultContainer(new SearchResultContainer.PageLoader() {
+
+                @Override
+                public SearchResultPage loadPage(int pFrom, int pSize) {
+                    return ElasticsearchHelper.search(pQuery, pFrom, pSize);
+                }
+            }));
+        } catch (RuntimeException ex) {
+            LOGGER.error("Failed to perform search for query '" + pQuery + "'.", ex);
+            setAllEntries(new LinkedList<DigitalObjectId>());
+        }
+    }
+
+    @Override
+    public final MyVaadinUI getParentUI() {
+        return parent;
+    }
+
+    @Override
+    public final void showSharingPopup(DigitalObject pObject) {
+        shareComponent.setup(pObject);
+        shareComponent.getPopupView().setPopupVisible(true);
+    }
+
+    /**
+     * Set a new container and reset the selection.
+     *
+     * @param pContainer The container.
+     */
+    private void setContainer(SearchResultContainer pContainer) {
+        container = pContainer;
+        table.setContainerDataSource(container);
+        table.setVisibleColumns(SearchResultContainer.TITLE_PROPERTY, SearchResultContainer.CREATOR_PROPERTY, SearchResultContainer.DATE_PROPERTY, SearchResultContainer.IDENTIFIER_PROPERTY);
+        table.setColumnHeaders("dc:title", "dc:creator", "dc:date", "dc:identifier");
+        table.setColumnExpandRatio(SearchResultContainer.TITLE_PROPERTY, .4f);
+        table.setColumnExpandRatio(SearchResultContainer.CREATOR_PROPERTY, .2f);
+        table.setColumnExpandRatio(SearchResultContainer.DATE_PROPERTY, .15f);
+        table.setColumnExpandRatio(SearchResultContainer.IDENTIFIER_PROPERTY, .25f);
+        showDetails(null);
+        if (container.size() == 0) {
+            hitsLabel.setValue("<h2>No objects found for the provided search criteria.</h2>");
+        } else {
+            hitsLabel.setValue("<i>" + container.size() + " object(s) found.</i>");
+        }
+    }
+
+    /**
+     * Show the details of the provided summary below the table. The details
+     * panel is created once and is bound to each selected summary afterwards.
+     *
+     * @param pSummary The summary to show or null to hide the details.
+     */
+    private void showDetails(DigitalObjectSummary pSummary) {
+        if (pSummary == null) {
+            if (detailsPanel != null) {
+                detailsPanel.setVisible(false);
+            }
+            return;
+        }
+        IAuthorizationContext ctx = parent.getAuthorizationContext();
+        if (EntryRenderPanel.ERROR_PLACEHOLDER.equals(pSummary.getTitle())) {
+            DigitalObject placeholder = new DigitalObject();
+            placeholder.setDigitalObjectId(pSummary.getDigitalObjectId());
+            placeholder.setLabel(EntryRenderPanel.ERROR_PLACEHOLDER);
+            if (detailsPanel == null) {
+                detailsPanel = new EntryRenderPanel(this, placeholder, ctx);
+                detailsLayout.addComponent(detailsPanel);
+            } else {
+                detailsPanel.bind(placeholder, ctx);
+            }
+        } else if (detailsPanel == null) {
+            detailsPanel = new EntryRenderPanel(this, pSummary, ctx);
+            detailsLayout.addComponent(detailsPanel);
+        } else {
+            detailsPanel.bind(pSummary, ctx);
+        }
+        detailsPanel.setVisible(true);
+    }
+
+    /**
+     * Build the main layout.
+     */
+    private void buildMainLayout() {
+        hitsLabel = new Label("", ContentMode.HTML);
+        table = new Table();
+        table.setWidth("100%");
+        table.setPageLength(12);
+        //keep one viewport of rows above and below the visible rows
+        table.setCacheRate(1.0);
+        table.setSelectable(true);
+        table.setImmediate(true);
+        table.setSortEnabled(false);
+        table.addValueChangeListener(new Property.ValueChangeListener() {
+
+            @Override
+            public void valueChange(Property.ValueChangeEvent event) {
+                showDetails((container != null) ? container.getSummary(event.getProperty().getValue()) : null);
+            }
+        });
+        detailsLayout = new VerticalLayout();
+        detailsLayout.setWidth("100%");
+
+        mainLayout = new VerticalLayout(hitsLabel, table, detailsLayout);
+        mainLayout.setSizeFull();
+        mainLayout.setSpacing(true);
+        mainLayout.setComponentAlignment(hitsLabel, Alignment.TOP_CENTER);
+        mainLayout.setExpandRatio(table, 1.0f);
+        mainLayout.addComponent(shareComponent.getPopupView());
+        mainLayout.setComponentAlignment(shareComponent.getPopupView(), Alignment.MIDDLE_CENTER);
+    }
+}
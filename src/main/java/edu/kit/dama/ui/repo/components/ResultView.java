@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.components;
+
+import com.vaadin.ui.Component;
+import edu.kit.dama.commons.types.DigitalObjectId;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.ui.repo.MyVaadinUI;
+import java.util.List;
+
+/**
+ * Component used to render search results. Depending on the setting
+ * 'repository.resultView', results are rendered page by page using the
+ * {@link PaginationPanel} or in a lazily loaded table using the
+ * {@link ResultTablePanel}.
+ *
+ * @author mf6319
+ */
+public interface ResultView extends Component {
+
+    /**
+     * Set the list of all elements which can be rendered.
+     *
+     * @param pObjects All digital object ids.
+     */
+    void setAllEntries(List<DigitalObjectId> pObjects);
+
+    /**
+     * Set the query whose results should be rendered. Results are obtained
+     * from the search index on demand.
+     *
+     * @param pQuery The fulltext query.
+     */
+    void setQuery(String pQuery);
+
+    /**
+     * Get the parent UI.
+     *
+     * @return The parent UI.
+     */
+    MyVaadinUI getParentUI();
+
+    /**
+     * Open the popup used to share access to the provided object.
+     *
+     * @param pObject The object to share.
+     */
+    void showSharingPopup(DigitalObject pObject);
+}
@@ -16,6 +16,7 @@
 package edu.kit.dama.ui.repo.components;
 
 import edu.kit.dama.ui.repo.MyVaadinUI;
+import edu.kit.dama.util.DataManagerSettings;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
@@ -30,8 +31,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import javax.imageio.ImageIO;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,12 +44,60 @@ import org.slf4j.LoggerFactory;
  * first letter of the provided text on it. It can be used e.g. as placeholder
  * in a profile if no user image is available.
  *
+ * The image can be obtained as PNG or as SVG document. Creating the SVG
+ * document requires no raster operations and no AWT runtime. The format used
+ * by the user interface is configured by 'repository.textImage.format'
+ * (default: png).
+ *
  * @author mf6319
  */
 public final class TextImage {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TextImage.class);
 
+    public final static String FORMAT_ID = "repository.textImage.format";
+
+    /**
+     * Supported output formats.
+     */
+    public enum Format {
+
+        PNG("png", "image/png"),
+        SVG("svg", "image/svg+xml");
+
+        private final String extension;
+        private final String mimeType;
+
+        /**
+         * Default constructor.
+         *
+         * @param pExtension The file extension.
+         * @param pMimeType The mime type.
+         */
+        Format(String pExtension, String pMimeType) {
+            extension = pExtension;
+            mimeType = pMimeType;
+        }
+
+        /**
+         * Get the file extension.
+         *
+         * @return The file extension.
+         */
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Get the mime type.
+         *
+         * @return The mime type.
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
     /**
      * The text used to create this text image.
      */
@@ -100,6 +151,19 @@ public final class TextImage {
         return this;
     }
 
+    /**
+     * Create a new TextImage instance using the provided color instead of a
+     * color obtained from the ColorGenerator.
+     *
+     * @param pColor The RGB value of the background color.
+     *
+     * @return The text image instance.
+     */
+    public TextImage withColor(int pColor) {
+        color = new Color(pColor);
+        return this;
+    }
+
     /**
      * Crate a new TextImage instance using the provided image size.
      *
@@ -113,13 +177,126 @@ public final class TextImage {
     }
 
     /**
-     * Get the bytes of the final image.
+     * Get the output format configured in the DataManagerSettings (default:
+     * PNG).
+     *
+     * @return The configured format.
+     */
+    public static Format getConfiguredFormat() {
+        String format = DataManagerSettings.getSingleton().getStringProperty(FORMAT_ID, Format.PNG.getExtension());
+        for (Format f : Format.values()) {
+            if (f.getExtension().equalsIgnoreCase(format.trim())) {
+                return f;
+            }
+        }
+        LOGGER.warn("Unsupported text image format '{}'. Using PNG.", format);
+        return Format.PNG;
+    }
+
+    /**
+     * Get the letter shown in the image, which is the first letter of the
+     * text in upper case.
+     *
+     * @return The letter or an empty string if the text is empty.
+     */
+    public String getLetter() {
+        return (text.isEmpty()) ? "" : text.toUpperCase().substring(0, 1);
+    }
+
+    /**
+     * Get the RGB value of the background color.
+     *
+     * @return The background color.
+     */
+    public int getColor() {
+        return color.getRGB();
+    }
+
+    /**
+     * Get the image size.
+     *
+     * @return The image size in pixels.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the bytes of the final image. As the resulting image only depends on
+     * letter, color and size, the image is obtained from the
+     * {@link TextImageCache} and is only rendered if it is not cached, yet.
      *
      * @return The byte array containing the bytes of the resulting image.
      *
      * @throws IOException if creating the image fails.
      */
     public byte[] getBytes() throws IOException {
+        return TextImageCache.getSingleton().getBytes(this);
+    }
+
+    /**
+     * Get the bytes of the final image in the provided format.
+     *
+     * @param pFormat The output format.
+     *
+     * @return The byte array containing the bytes of the resulting image.
+     *
+     * @throws IOException if creating the image fails.
+     */
+    public byte[] getBytes(Format pFormat) throws IOException {
+        if (Format.SVG.equals(pFormat)) {
+            return getSvg().getBytes(StandardCharsets.UTF_8);
+        }
+        return getBytes();
+    }
+
+    /**
+     * Get the image as SVG document. The document shows the same rounded
+     * square with the letter on it as the PNG image, but it is created without
+     * any raster operations.
+     *
+     * @return The SVG document.
+     */
+    public String getSvg() {
+        StringBuilder b = new StringBuilder(512);
+        b.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(size).append("\" height=\"").append(size);
+        b.append("\" viewBox=\"0 0 ").append(size).append(" ").append(size).append("\">");
+        b.append("<rect x=\"0.5\" y=\"0.5\" width=\"").append(size - 1).append("\" height=\"").append(size - 1);
+        b.append("\" rx=\"10\" ry=\"10\" fill=\"").append(toHex(color)).append("\" stroke=\"").append(toHex(getBorderColor())).append("\"/>");
+        b.append("<text x=\"50%\" y=\"50%\" dy=\".35em\" text-anchor=\"middle\" font-family=\"Dialog, sans-serif\" font-weight=\"bold\" font-size=\"");
+        b.append(size - 4).append("\" fill=\"#ffffff\">").append(StringEscapeUtils.escapeXml(getLetter())).append("</text></svg>");
+        return b.toString();
+    }
+
+    /**
+     * Get the color of the border, which is slightly darker than the
+     * background color.
+     *
+     * @return The border color.
+     */
+    private Color getBorderColor() {
+        return new Color(Math.round((float) color.getRed() * .9f), Math.round((float) color.getGreen() * .9f), Math.round((float) color.getBlue() * .9f));
+    }
+
+    /**
+     * Convert the provided color to its hex representation, e.g. #e57373.
+     *
+     * @param pColor The color.
+     *
+     * @return The hex representation.
+     */
+    private static String toHex(Color pColor) {
+        return String.format("#%06x", pColor.getRGB() & 0xFFFFFF);
+    }
+
+    /**
+     * Render the image and encode it as PNG.
+     *
+     * @return The byte array containing the bytes of the resulting image.
+     *
+     * @throws IOException if creating the image fails.
+     */
+    byte[] render() throws IOException {
         Image transparentImage = Toolkit.getDefaultToolkit().createImage(
                 new FilteredImageSource(
                         new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB).getSource(),
@@ -139,14 +316,14 @@ public final class TextImage {
         g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
         g2d.setColor(color);
         g2d.fillRoundRect(0, 0, size, size, 20, 20);
-        g2d.setColor(new Color(Math.round((float) color.getRed() * .9f), Math.round((float) color.getGreen() * .9f), Math.round((float) color.getBlue() * .9f)));
+        g2d.setColor(getBorderColor());
         g2d.drawRoundRect(0, 0, size - 1, size - 1, 20, 20);
 
         Font font = new Font("Dialog", Font.BOLD, size - 4);
         g2d.setFont(font);
         g2d.setColor(Color.WHITE);
 
-        String s = text.toUpperCase().substring(0, 1);
+        String s = getLetter();
         FontMetrics fm = g2d.getFontMetrics();
         float x = ((float) size - (float) fm.stringWidth(s)) / 2f;
         float y = ((float) fm.getAscent() + (float) ((float) size - ((float) fm.getAscent() + (float) fm.getDescent())) / 2f) - 1f;
@@ -158,7 +335,8 @@ public final class TextImage {
     }
 
     /**
-     * Write the resulting image to the provided file.
+     * Write the resulting image to the provided file. If the file extension is
+     * 'svg', the image is written as SVG document, otherwise as PNG.
      *
      * @param pFile The output file.
      *
@@ -168,11 +346,12 @@ public final class TextImage {
      */
     public TextImage writeToFile(File pFile) throws IOException {
         String ext = FilenameUtils.getExtension(pFile.getName());
-        if (!ext.equals("png")) {
+        Format format = (Format.SVG.getExtension().equals(ext)) ? Format.SVG : Format.PNG;
+        if (Format.PNG.equals(format) && !ext.equals("png")) {
             LOGGER.warn("Expecting file extension 'png' but extension is '{}'. Output image might not be readable by all tools.", ext);
         }
         try (FileOutputStream fout = new FileOutputStream(pFile)) {
-            fout.write(getBytes());
+            fout.write(getBytes(format));
             fout.flush();
         }
         return this;
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.components;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application-wide cache for encoded text images. As a text image only depends
+ * on the shown letter, the background color and the size, images are cached
+ * using these values as key instead of being rendered on each request. The
+ * cache holds at most 'repository.textImage.cache.maxEntries' images (default:
+ * 1000) which are evicted in least-recently-used order. Setting maxEntries to
+ * 0 disables the cache. If 'repository.textImage.cache.precompute' is true
+ * (default: false), the images for all letters and colors of
+ * {@link ColorGenerator#MATERIAL} are rendered at startup in the size used for
+ * result entries.
+ *
+ * @author mf6319
+ */
+public final class TextImageCache {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(TextImageCache.class);
+
+    public final static String MAX_ENTRIES_ID = "repository.textImage.cache.maxEntries";
+    public final static String PRECOMPUTE_ID = "repository.textImage.cache.precompute";
+
+    /**
+     * The image size used for result entries.
+     */
+    public final static int ENTRY_IMAGE_SIZE = 40;
+    /**
+     * The letters rendered during precomputation.
+     */
+    private final static String PRECOMPUTE_LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private static TextImageCache SINGLETON = null;
+
+    private final int maxEntries;
+    private final Map<String, byte[]> entries;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Hidden constructor.
+     */
+    private TextImageCache() {
+        maxEntries = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(MAX_ENTRIES_ID, 1000));
+        entries = new LinkedHashMap<String, byte[]>(16, .75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized TextImageCache getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new TextImageCache();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Check whether precomputation at startup is enabled in the
+     * DataManagerSettings (default: false).
+     *
+     * @return TRUE if the images should be precomputed.
+     */
+    public static boolean isPrecomputeEnabled() {
+        return DataManagerSettings.getSingleton().getBooleanProperty(PRECOMPUTE_ID, false);
+    }
+
+    /**
+     * Build the cache key for the provided image.
+     *
+     * @param pImage The image.
+     *
+     * @return The cache key.
+     */
+    private static String toKey(TextImage pImage) {
+        return pImage.getLetter() + "#" + Integer.toHexString(pImage.getColor()) + "#" + pImage.getSize();
+    }
+
+    /**
+     * Get the encoded bytes of the provided image. If the image is not cached,
+     * it is rendered and added to the cache. Rendering takes place outside of
+     * the lock, so an image requested concurrently might be rendered twice.
+     *
+     * @param pImage The image.
+     *
+     * @return The encoded image. The returned array must not be modified.
+     *
+     * @throws IOException if rendering the image fails.
+     */
+    public byte[] getBytes(TextImage pImage) throws IOException {
+        if (maxEntries == 0) {
+            misses.incrementAndGet();
+            return pImage.render();
+        }
+        String key = toKey(pImage);
+        synchronized (entries) {
+            byte[] cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        byte[] bytes = pImage.render();
+        synchronized (entries) {
+            entries.put(key, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Render and cache the images for all letters and colors of
+     * {@link ColorGenerator#MATERIAL} in the provided size. Precomputed images
+     * are not counted as misses.
+     *
+     * @param pSize The image size.
+     */
+    public void precompute(int pSize) {
+        if (maxEntries == 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (char letter : PRECOMPUTE_LETTERS.toCharArray()) {
+            for (int color : ColorGenerator.MATERIAL.getColors()) {
+                TextImage image = TextImage.from(String.valueOf(letter)).withColor(color).withSize(pSize);
+                try {
+                    byte[] bytes = image.render();
+                    synchronized (entries) {
+                        entries.put(toKey(image), bytes);
+                    }
+                    count++;
+                } catch (IOException ex) {
+                    LOGGER.warn("Failed to precompute text image for letter " + letter + ".", ex);
+                }
+            }
+        }
+        LOGGER.info("Precomputed {} text image(s) of size {} in {} ms.", count, pSize, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Get the number of cache hits.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of cache misses.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the hit rate.
+     *
+     * @return The hit rate between 0 and 1.
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return (total == 0) ? 0 : (double) hits.get() / (double) total;
+    }
+
+    /**
+     * Get the number of currently cached images.
+     *
+     * @return The number of cached images.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Properties;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +43,13 @@ import org.slf4j.LoggerFactory;
  * in a view named 'generated' which allows to access the zipped file directly
  * afterwards.
  *
+ * The data is compressed by a {@link ParallelZipWriter} using the number of
+ * threads configured by the internal property 'threads' (default: number of
+ * available processors). Setting 'threads' to 1 uses the single-threaded
+ * ZipUtils implementation. Concurrent ingests share one compression pool, so
+ * the total number of compression threads never exceeds the number of
+ * available processors.
+ *
  * @author mf6319
  */
 public class DataZipCreator extends AbstractStagingProcessor {
@@ -51,6 +59,13 @@ public class DataZipCreator extends AbstractStagingProcessor {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(DataZipCreator.class);
 
+    public static final String THREADS_PROPERTY = "threads";
+
+    /**
+     * The number of threads used for compression.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     /**
      * Default constructor.
      *
@@ -67,11 +82,14 @@ public class DataZipCreator extends AbstractStagingProcessor {
 
     @Override
     public String[] getInternalPropertyKeys() {
-        return new String[]{};
+        return new String[]{THREADS_PROPERTY};
     }
 
     @Override
     public String getInternalPropertyDescription(String string) {
+        if (THREADS_PROPERTY.equals(string)) {
+            return "The number of threads used to compress the data (default: number of available processors). 1 disables parallel compression.";
+        }
         return "No description available";
     }
 
@@ -87,10 +105,25 @@ public class DataZipCreator extends AbstractStagingProcessor {
 
     @Override
     public void validateProperties(Properties pProperties) throws PropertyValidationException {
+        String value = pProperties.getProperty(THREADS_PROPERTY);
+        if (value != null) {
+            try {
+                if (Integer.parseInt(value.trim()) < 1) {
+                    throw new PropertyValidationException("Property '" + THREADS_PROPERTY + "' must be a positive number.");
+                }
+            } catch (NumberFormatException ex) {
+                throw new PropertyValidationException("Property '" + THREADS_PROPERTY + "' must be a positive number.");
+            }
+        }
     }
 
     @Override
-    public void configure(Properties pProperties) {
+    public void configure(Properties pProperties) throws PropertyValidationException {
+        validateProperties(pProperties);
+        String value = pProperties.getProperty(THREADS_PROPERTY);
+        if (value != null) {
+            threads = Integer.parseInt(value.trim());
+        }
     }
 
     @Override
@@ -122,8 +155,18 @@ public class DataZipCreator extends AbstractStagingProcessor {
                 throw new IOException("Data folder " + dataFolder.getAbsolutePath() + " does not exist. Aborting zip operation.");
             }
 
-            LOGGER.debug("Start zip operation using data input folder URL {}", dataFolder);
-            ZipUtils.zip(new File(dataFolder.toURI()), targetFile);
+            LOGGER.debug("Start zip operation using data input folder URL {} and {} thread(s)", dataFolder, threads);
+            long start = System.currentTimeMillis();
+            long bytes;
+            if (threads > 1) {
+                bytes = new ParallelZipWriter(threads).zip(dataFolder, targetFile);
+            } else {
+                ZipUtils.zip(new File(dataFolder.toURI()), targetFile);
+                bytes = FileUtils.sizeOfDirectory(dataFolder);
+            }
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+            LOGGER.info("Zipped {} MB to {} MB in {} ms ({} MB/s) using {} thread(s).", bytes / (1024 * 1024), targetFile.length() / (1024 * 1024), duration,
+                    String.format("%.1f", (bytes / (1024.0 * 1024.0)) / (duration / 1000.0)), threads);
             LOGGER.debug("Adding zip file {} to container.", targetFile);
             pContainer.addGeneratedFile(targetFile);
             LOGGER.debug("Zip operation successfully finished.");
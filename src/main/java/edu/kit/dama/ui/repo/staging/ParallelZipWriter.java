@@ -0,0 +1,576 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.staging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip writer compressing the content of a folder on multiple threads. Each
+ * file is split into chunks of CHUNK_SIZE bytes which are deflated
+ * independently by a pool of worker threads. Except for the last chunk of a
+ * file, the output of each chunk is terminated by a sync flush and the last
+ * 32 KB of the previous chunk are used as preset dictionary, so the
+ * concatenated chunks form one regular deflate stream with almost the same
+ * compression ratio as a sequential deflate. The compressed chunks are
+ * written to the zip file in order, so the result is a standard zip file
+ * readable by any zip tool. Large entries, large archives and archives with
+ * many entries are written in Zip64 format.
+ *
+ * The number of chunks in progress is limited to twice the number of threads,
+ * so the memory usage does not depend on the size of the input. All writers
+ * share one pool with one thread per available processor, so concurrent
+ * ingests do not start more compression threads than processors available.
+ * The number of threads provided to a writer only limits the number of chunks
+ * it compresses in parallel. Entry names
+ * are relative to the source folder, empty folders are stored as directory
+ * entries.
+ *
+ * @author mf6319
+ */
+final class ParallelZipWriter {
+
+    /**
+     * Size of the chunks compressed in parallel.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    /**
+     * Max. size of a preset dictionary.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    /**
+     * Max. value of a 4-byte field, larger values require Zip64.
+     */
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    /**
+     * Entries larger than this size are written as Zip64 entries, leaving
+     * room for the deflate overhead of incompressible data.
+     */
+    private static final long ZIP64_ENTRY_THRESHOLD = 0xF0000000L;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    /**
+     * General purpose flag indicating UTF-8 encoded entry names.
+     */
+    private static final int UTF8_FLAG = 0x0800;
+
+    /**
+     * Compression pool shared by all writers.
+     */
+    private static ExecutorService executor;
+
+    private final int threads;
+
+    /**
+     * Zip entry written to the archive.
+     */
+    private static final class Entry {
+
+        private final String name;
+        private final byte[] nameBytes;
+        private final boolean directory;
+        private final boolean zip64;
+        private final int dosTime;
+        private final CRC32 checksum = new CRC32();
+        private long offset;
+        private long size;
+        private long compressedSize;
+
+        Entry(String pName, File pFile) {
+            name = pName;
+            nameBytes = pName.getBytes(StandardCharsets.UTF_8);
+            directory = pFile.isDirectory();
+            zip64 = pFile.length() > ZIP64_ENTRY_THRESHOLD;
+            dosTime = toDosTime(pFile.lastModified());
+        }
+    }
+
+    /**
+     * Part of an entry as it is written to the archive, i.e. a compressed
+     * chunk and the information whether the local header has to be written
+     * before or has to be updated after the chunk.
+     */
+    private static final class Segment {
+
+        private final Entry entry;
+        private final Future<byte[]> data;
+        private final boolean first;
+        private final boolean last;
+
+        Segment(Entry pEntry, Future<byte[]> pData, boolean pFirst, boolean pLast) {
+            entry = pEntry;
+            data = pData;
+            first = pFirst;
+            last = pLast;
+        }
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param pThreads The max. number of threads used for compression,
+     * limited by the number of available processors.
+     */
+    ParallelZipWriter(int pThreads) {
+        threads = Math.max(1, pThreads);
+    }
+
+    /**
+     * Zip the content of the provided folder to the provided file.
+     *
+     * @param pSourceFolder The folder to zip.
+     * @param pTargetFile The zip file, which is overwritten if it exists.
+     *
+     * @return The number of uncompressed bytes written to the archive.
+     *
+     * @throws IOException If reading a file or writing the archive fails.
+     */
+    long zip(File pSourceFolder, File pTargetFile) throws IOException {
+        List<File> files = new ArrayList<>();
+        collectFiles(pSourceFolder, files);
+        String basePath = pSourceFolder.getAbsolutePath();
+
+        ExecutorService executor = getExecutor();
+        LinkedList<Segment> pending = new LinkedList<>();
+        long bytesIn = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(pTargetFile, "rw")) {
+            raf.setLength(0);
+            FileChannel out = raf.getChannel();
+            List<Entry> entries = new ArrayList<>(files.size());
+            int maxPending = threads * 2;
+            for (File file : files) {
+                String name = file.getAbsolutePath().substring(basePath.length() + 1).replace(File.separatorChar, '/');
+                Entry entry = new Entry((file.isDirectory()) ? name + "/" : name, file);
+                entries.add(entry);
+                if (entry.directory) {
+                    pending.add(new Segment(entry, null, true, true));
+                    continue;
+                }
+                try (InputStream in = new FileInputStream(file)) {
+                    byte[] dictionary = null;
+                    boolean first = true;
+                    boolean last = false;
+                    long remaining = file.length();
+                    while (!last) {
+                        //small files get a small buffer, one additional byte is needed to detect the end of the file
+                        byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, Math.max(0, remaining) + 1)];
+                        int length = readChunk(in, chunk);
+                        remaining -= length;
+                        last = length < chunk.length;
+                        entry.checksum.update(chunk, 0, length);
+                        entry.size += length;
+                        pending.add(new Segment(entry, executor.submit(new DeflateTask(chunk, length, dictionary, last)), first, last));
+                        if (!last) {
+                            dictionary = Arrays.copyOfRange(chunk, Math.max(0, length - DICTIONARY_SIZE), length);
+                        }
+                        first = false;
+                        while (pending.size() >= maxPending) {
+                            writeSegment(out, pending.removeFirst());
+                        }
+                    }
+                }
+                bytesIn += entry.size;
+            }
+            while (!pending.isEmpty()) {
+                writeSegment(out, pending.removeFirst());
+            }
+            writeCentralDirectory(out, entries);
+        } finally {
+            //cancel the remaining chunks if zipping failed
+            for (Segment segment : pending) {
+                if (segment.data != null) {
+                    segment.data.cancel(true);
+                }
+            }
+        }
+        return bytesIn;
+    }
+
+    /**
+     * Get the compression pool shared by all writers, which is created on
+     * first access.
+     *
+     * @return The compression pool.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ParallelZipWriter");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Collect all files and empty folders below the provided folder in
+     * alphabetical order.
+     *
+     * @param pFolder The folder.
+     * @param pFiles The list of collected files.
+     */
+    private void collectFiles(File pFolder, List<File> pFiles) throws IOException {
+        File[] children = pFolder.listFiles();
+        if (children == null) {
+            throw new IOException("Failed to list content of folder " + pFolder.getAbsolutePath());
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                String[] content = child.list();
+                if (content != null && content.length == 0) {
+                    pFiles.add(child);
+                } else {
+                    collectFiles(child, pFiles);
+                }
+            } else {
+                pFiles.add(child);
+            }
+        }
+    }
+
+    /**
+     * Read until the provided buffer is full or until the end of the stream
+     * is reached.
+     *
+     * @param pIn The input stream.
+     * @param pBuffer The buffer.
+     *
+     * @return The number of bytes read.
+     */
+    private int readChunk(InputStream pIn, byte[] pBuffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < pBuffer.length && (read = pIn.read(pBuffer, length, pBuffer.length - length)) >= 0) {
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Write the provided segment. The local header is written before the first
+     * segment of an entry and is updated with checksum and sizes after the
+     * last segment.
+     *
+     * @param pOut The output channel.
+     * @param pSegment The segment.
+     */
+    private void writeSegment(FileChannel pOut, Segment pSegment) throws IOException {
+        Entry entry = pSegment.entry;
+        if (pSegment.first) {
+            entry.offset = pOut.position();
+            writeFully(pOut, createLocalHeader(entry));
+        }
+        if (pSegment.data != null) {
+            byte[] data;
+            try {
+                data = pSegment.data.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing entry " + entry.name);
+            } catch (ExecutionException ex) {
+                throw new IOException("Failed to compress entry " + entry.name, ex.getCause());
+            }
+            writeFully(pOut, ByteBuffer.wrap(data));
+            entry.compressedSize += data.length;
+        }
+        if (pSegment.last && !entry.directory) {
+            if (!entry.zip64 && (entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC)) {
+                throw new IOException("Entry " + entry.name + " has grown beyond 4 GB while zipping.");
+            }
+            //update checksum and sizes in the local header
+            ByteBuffer sizes = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            sizes.putInt((int) entry.checksum.getValue());
+            sizes.putInt((int) ((entry.zip64) ? ZIP64_MAGIC : entry.compressedSize));
+            sizes.putInt((int) ((entry.zip64) ? ZIP64_MAGIC : entry.size));
+            sizes.flip();
+            writeFully(pOut, sizes, entry.offset + 14);
+            if (entry.zip64) {
+                ByteBuffer extra = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                extra.putLong(entry.size);
+                extra.putLong(entry.compressedSize);
+                extra.flip();
+                writeFully(pOut, extra, entry.offset + 30 + entry.nameBytes.length + 4);
+            }
+        }
+    }
+
+    /**
+     * Create the local header of the provided entry with empty checksum and
+     * sizes, which are updated as soon as the entry is written.
+     *
+     * @param pEntry The entry.
+     *
+     * @return The local header.
+     */
+    private ByteBuffer createLocalHeader(Entry pEntry) {
+        int extraLength = (pEntry.zip64) ? 20 : 0;
+        ByteBuffer header = ByteBuffer.allocate(30 + pEntry.nameBytes.length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) getVersionNeeded(pEntry));
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) ((pEntry.directory) ? 0 : 8));
+        header.putInt(pEntry.dosTime);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(0);
+        header.putShort((short) pEntry.nameBytes.length);
+        header.putShort((short) extraLength);
+        header.put(pEntry.nameBytes);
+        if (pEntry.zip64) {
+            header.putShort((short) 1);
+            header.putShort((short) 16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Write the central directory and the end of central directory record.
+     * Zip64 records are added if needed.
+     *
+     * @param pOut The output channel.
+     * @param pEntries All entries of the archive.
+     */
+    private void writeCentralDirectory(FileChannel pOut, List<Entry> pEntries) throws IOException {
+        long centralDirectoryOffset = pOut.position();
+        for (Entry entry : pEntries) {
+            boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+            int extraLength = ((entry.zip64 || zip64Offset) ? 4 : 0) + ((entry.zip64) ? 16 : 0) + ((zip64Offset) ? 8 : 0);
+            ByteBuffer header = ByteBuffer.allocate(46 + entry.nameBytes.length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(CENTRAL_HEADER_SIGNATURE);
+            header.putShort((short) 45);
+            header.putShort((short) ((zip64Offset) ? 45 : getVersionNeeded(entry)));
+            header.putShort((short) UTF8_FLAG);
+            header.putShort((short) ((entry.directory) ? 0 : 8));
+            header.putInt(entry.dosTime);
+            header.putInt((int) entry.checksum.getValue());
+            header.putInt((int) ((entry.zip64) ? ZIP64_MAGIC : entry.compressedSize));
+            header.putInt((int) ((entry.zip64) ? ZIP64_MAGIC : entry.size));
+            header.putShort((short) entry.nameBytes.length);
+            header.putShort((short) extraLength);
+            //comment length, disk number, internal attributes
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            //MS-DOS directory attribute
+            header.putInt((entry.directory) ? 0x10 : 0);
+            header.putInt((int) ((zip64Offset) ? ZIP64_MAGIC : entry.offset));
+            header.put(entry.nameBytes);
+            if (entry.zip64 || zip64Offset) {
+                header.putShort((short) 1);
+                header.putShort((short) (extraLength - 4));
+                if (entry.zip64) {
+                    header.putLong(entry.size);
+                    header.putLong(entry.compressedSize);
+                }
+                if (zip64Offset) {
+                    header.putLong(entry.offset);
+                }
+            }
+            header.flip();
+            writeFully(pOut, header);
+        }
+        long centralDirectoryEnd = pOut.position();
+        long centralDirectorySize = centralDirectoryEnd - centralDirectoryOffset;
+
+        if (pEntries.size() >= 0xFFFF || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC) {
+            ByteBuffer zip64End = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+            zip64End.putInt(ZIP64_END_SIGNATURE);
+            zip64End.putLong(44);
+            zip64End.putShort((short) 45);
+            zip64End.putShort((short) 45);
+            zip64End.putInt(0);
+            zip64End.putInt(0);
+            zip64End.putLong(pEntries.size());
+            zip64End.putLong(pEntries.size());
+            zip64End.putLong(centralDirectorySize);
+            zip64End.putLong(centralDirectoryOffset);
+            //locator pointing to the Zip64 end record
+            zip64End.putInt(ZIP64_LOCATOR_SIGNATURE);
+            zip64End.putInt(0);
+            zip64End.putLong(centralDirectoryEnd);
+            zip64End.putInt(1);
+            zip64End.flip();
+            writeFully(pOut, zip64End);
+        }
+
+        ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(pEntries.size(), 0xFFFF));
+        end.putShort((short) Math.min(pEntries.size(), 0xFFFF));
+        end.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+        end.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        end.putShort((short) 0);
+        end.flip();
+        writeFully(pOut, end);
+    }
+
+    /**
+     * Get the version needed to extract the provided entry.
+     *
+     * @param pEntry The entry.
+     *
+     * @return 45 for Zip64 entries, 10 for directories and 20 for all other
+     * entries.
+     */
+    private static int getVersionNeeded(Entry pEntry) {
+        if (pEntry.zip64) {
+            return 45;
+        }
+        return (pEntry.directory) ? 10 : 20;
+    }
+
+    /**
+     * Write the provided buffer at the current position of the channel.
+     *
+     * @param pOut The output channel.
+     * @param pBuffer The buffer.
+     */
+    private static void writeFully(FileChannel pOut, ByteBuffer pBuffer) throws IOException {
+        while (pBuffer.hasRemaining()) {
+            pOut.write(pBuffer);
+        }
+    }
+
+    /**
+     * Write the provided buffer at the provided position without changing the
+     * position of the channel.
+     *
+     * @param pOut The output channel.
+     * @param pBuffer The buffer.
+     * @param pPosition The position.
+     */
+    private static void writeFully(FileChannel pOut, ByteBuffer pBuffer, long pPosition) throws IOException {
+        long position = pPosition;
+        while (pBuffer.hasRemaining()) {
+            position += pOut.write(pBuffer, position);
+        }
+    }
+
+    /**
+     * Convert the provided timestamp to MS-DOS date and time as used in zip
+     * headers.
+     *
+     * @param pTime The timestamp in milliseconds.
+     *
+     * @return The MS-DOS time in the lower and the MS-DOS date in the upper
+     * 16 bits.
+     */
+    private static int toDosTime(long pTime) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(pTime);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            //earliest date supported, 1980-01-01
+            return (1 << 21) | (1 << 16);
+        }
+        int date = ((year - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5) | calendar.get(Calendar.DAY_OF_MONTH);
+        int time = (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+        return (date << 16) | time;
+    }
+
+    /**
+     * Task compressing a single chunk.
+     */
+    private static final class DeflateTask implements Callable<byte[]> {
+
+        private final byte[] chunk;
+        private final int length;
+        private final byte[] dictionary;
+        private final boolean last;
+
+        /**
+         * Default constructor.
+         *
+         * @param pChunk The chunk data.
+         * @param pLength The number of valid bytes in pChunk.
+         * @param pDictionary The end of the previous chunk or null for the
+         * first chunk of an entry.
+         * @param pLast TRUE if this is the last chunk of an entry.
+         */
+        DeflateTask(byte[] pChunk, int pLength, byte[] pDictionary, boolean pLast) {
+            chunk = pChunk;
+            length = pLength;
+            dictionary = pDictionary;
+            last = pLast;
+        }
+
+        @Override
+        public byte[] call() {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(chunk, 0, length);
+                //compressed data is usually smaller than the input, the buffer grows otherwise
+                byte[] buffer = new byte[Math.max(1024, length / 2)];
+                int written = 0;
+                if (last) {
+                    deflater.finish();
+                }
+                while (true) {
+                    if (written == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    int count = (last) ? deflater.deflate(buffer, written, buffer.length - written) : deflater.deflate(buffer, written, buffer.length - written, Deflater.SYNC_FLUSH);
+                    written += count;
+                    //a sync flush is complete if the output buffer was not filled entirely
+                    if ((last && deflater.finished()) || (!last && written < buffer.length)) {
+                        break;
+                    }
+                }
+                return Arrays.copyOf(buffer, written);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.staging;
+
+import edu.kit.dama.commons.exceptions.PropertyValidationException;
+import edu.kit.dama.rest.staging.types.TransferTaskContainer;
+import edu.kit.dama.staging.exceptions.StagingProcessorException;
+import edu.kit.dama.staging.interfaces.ITransferInformation;
+import edu.kit.dama.staging.processor.AbstractStagingProcessor;
+import edu.kit.dama.staging.services.impl.StagingService;
+import edu.kit.dama.util.Constants;
+import edu.kit.dama.util.CryptUtil;
+import edu.kit.tools.url.URLCreator;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staging Processor implementation that creates a small preview thumbnail of
+ * the data of a digital object. Up to 'maxFiles' image or text files are
+ * sampled from the 'data' folder of the ingest and are rendered in parallel
+ * using 'threads' threads. Images are read with source subsampling, so the
+ * memory needed to read an image depends on the thumbnail size rather than on
+ * the image size, and only the first characters of text files are read. A
+ * single rendered file fills the entire thumbnail, multiple files are arranged
+ * in a 2x2 grid. The thumbnail is written as PNG to the 'generated' folder of
+ * the ingest, so it is archived in the 'generated' view next to the data
+ * archive created by {@link DataZipCreator}. If no suitable file is found, no
+ * thumbnail is created and the ingest continues.
+ *
+ * @author mf6319
+ */
+public class ThumbnailCreator extends AbstractStagingProcessor {
+
+    /**
+     * The logger
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailCreator.class);
+
+    public static final String SIZE_PROPERTY = "size";
+    public static final String MAX_FILES_PROPERTY = "maxFiles";
+    public static final String THREADS_PROPERTY = "threads";
+
+    /**
+     * The max. number of tiles of the thumbnail.
+     */
+    private static final int MAX_TILES = 4;
+    /**
+     * The max. number of characters read from a text file.
+     */
+    private static final int MAX_TEXT_LENGTH = 2048;
+    /**
+     * File extensions of files rendered as text.
+     */
+    private static final Set<String> TEXT_EXTENSIONS = new HashSet<>(Arrays.asList("txt", "csv", "tsv", "log", "md", "xml", "json"));
+
+    private int size = 80;
+    private int maxFiles = MAX_TILES;
+    private int threads = 2;
+
+    /**
+     * Default constructor.
+     *
+     * @param pUniqueIdentifier The unique identifier.
+     */
+    public ThumbnailCreator(String pUniqueIdentifier) {
+        super(pUniqueIdentifier);
+    }
+
+    /**
+     * Get the name of the thumbnail file of the object with the provided
+     * identifier, which is the SHA-1 hash of the identifier with the suffix
+     * '_thumb.png'.
+     *
+     * @param pDigitalObjectId The digital object identifier.
+     *
+     * @return The file name.
+     */
+    public static String getThumbnailFileName(String pDigitalObjectId) {
+        return CryptUtil.stringToSHA1(pDigitalObjectId) + "_thumb.png";
+    }
+
+    @Override
+    public String getName() {
+        return "ThumbnailCreator";
+    }
+
+    @Override
+    public String[] getInternalPropertyKeys() {
+        return new String[]{SIZE_PROPERTY, MAX_FILES_PROPERTY, THREADS_PROPERTY};
+    }
+
+    @Override
+    public String getInternalPropertyDescription(String pKey) {
+        switch (pKey) {
+            case SIZE_PROPERTY:
+                return "The width and height of the thumbnail in pixels (default: 80).";
+            case MAX_FILES_PROPERTY:
+                return "The max. number of image or text files rendered into the thumbnail (default: 4, max. 4).";
+            case THREADS_PROPERTY:
+                return "The number of threads used to render the sampled files (default: 2).";
+            default:
+                return "No description available";
+        }
+    }
+
+    @Override
+    public String[] getUserPropertyKeys() {
+        return new String[]{};
+    }
+
+    @Override
+    public String getUserPropertyDescription(String pKey) {
+        return "No description available";
+    }
+
+    @Override
+    public void validateProperties(Properties pProperties) throws PropertyValidationException {
+        for (String key : getInternalPropertyKeys()) {
+            String value = pProperties.getProperty(key);
+            if (value != null) {
+                try {
+                    if (Integer.parseInt(value.trim()) < 1) {
+                        throw new PropertyValidationException("Property '" + key + "' must be a positive number.");
+                    }
+                } catch (NumberFormatException ex) {
+                    throw new PropertyValidationException("Property '" + key + "' must be a positive number.");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void configure(Properties pProperties) throws PropertyValidationException {
+        validateProperties(pProperties);
+        size = getIntProperty(pProperties, SIZE_PROPERTY, size);
+        maxFiles = Math.min(MAX_TILES, getIntProperty(pProperties, MAX_FILES_PROPERTY, maxFiles));
+        threads = getIntProperty(pProperties, THREADS_PROPERTY, threads);
+    }
+
+    /**
+     * Get an integer property.
+     *
+     * @param pProperties The properties.
+     * @param pKey The property key.
+     * @param pDefault The default value.
+     *
+     * @return The property value or pDefault if the property is not set.
+     */
+    private int getIntProperty(Properties pProperties, String pKey, int pDefault) {
+        String value = pProperties.getProperty(pKey);
+        return (value != null) ? Integer.parseInt(value.trim()) : pDefault;
+    }
+
+    @Override
+    public void performPreTransferProcessing(TransferTaskContainer pContainer) throws StagingProcessorException {
+    }
+
+    @Override
+    public void finalizePreTransferProcessing(TransferTaskContainer pContainer) throws StagingProcessorException {
+    }
+
+    @Override
+    public void performPostTransferProcessing(TransferTaskContainer pContainer) throws StagingProcessorException {
+        LOGGER.debug("Creating thumbnail");
+        try {
+            ITransferInformation info = pContainer.getTransferInformation();
+            File localFolder = StagingService.getSingleton().getLocalStagingFolder(info, StagingService.getSingleton().getContext(info));
+            File dataFolder = new File(FilenameUtils.concat(localFolder.getAbsolutePath(), Constants.STAGING_DATA_FOLDER_NAME));
+            if (!dataFolder.exists()) {
+                throw new IOException("Data folder " + dataFolder.getAbsolutePath() + " does not exist. Aborting thumbnail creation.");
+            }
+
+            long start = System.currentTimeMillis();
+            List<BufferedImage> tiles = renderTiles(findCandidates(dataFolder));
+            if (tiles.isEmpty()) {
+                LOGGER.info("No image or text files found in folder {}. Skipping thumbnail creation.", dataFolder);
+                return;
+            }
+
+            URL targetUrl = URLCreator.appendToURL(pContainer.getGeneratedUrl(), getThumbnailFileName(info.getDigitalObjectId()));
+            File targetFile = new File(targetUrl.toURI());
+            if (!ImageIO.write(compose(tiles), "png", targetFile)) {
+                throw new IOException("No PNG writer available.");
+            }
+            LOGGER.debug("Created thumbnail {} from {} file(s) in {} ms.", targetFile, tiles.size(), System.currentTimeMillis() - start);
+            pContainer.addGeneratedFile(targetFile);
+        } catch (IOException | URISyntaxException ex) {
+            throw new StagingProcessorException("Failed to create thumbnail", ex);
+        }
+    }
+
+    @Override
+    public void finalizePostTransferProcessing(TransferTaskContainer pContainer) throws StagingProcessorException {
+    }
+
+    /**
+     * Collect up to maxFiles image or text files from the provided folder. The
+     * folder is traversed breadth-first in alphabetical order, so files close
+     * to the root are preferred and the result is reproducible.
+     *
+     * @param pFolder The data folder.
+     *
+     * @return The list of candidates.
+     */
+    private List<File> findCandidates(File pFolder) {
+        Set<String> imageExtensions = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            imageExtensions.add(suffix.toLowerCase(Locale.ENGLISH));
+        }
+        List<File> candidates = new ArrayList<>(maxFiles);
+        LinkedList<File> folders = new LinkedList<>();
+        folders.add(pFolder);
+        while (!folders.isEmpty() && candidates.size() < maxFiles) {
+            File[] children = folders.removeFirst().listFiles();
+            if (children == null) {
+                continue;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    folders.add(child);
+                } else if (candidates.size() < maxFiles) {
+                    String ext = FilenameUtils.getExtension(child.getName()).toLowerCase(Locale.ENGLISH);
+                    if (imageExtensions.contains(ext) || TEXT_EXTENSIONS.contains(ext)) {
+                        candidates.add(child);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Render the provided files in parallel. Files that cannot be rendered are
+     * skipped. The order of the result follows the order of pFiles.
+     *
+     * @param pFiles The files to render.
+     *
+     * @return The rendered tiles.
+     */
+    private List<BufferedImage> renderTiles(List<File> pFiles) {
+        List<BufferedImage> tiles = new ArrayList<>(pFiles.size());
+        if (pFiles.isEmpty()) {
+            return tiles;
+        }
+        final int tileSize = (pFiles.size() == 1) ? size : size / 2;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, pFiles.size()));
+        try {
+            List<Future<BufferedImage>> futures = new ArrayList<>(pFiles.size());
+            for (final File file : pFiles) {
+                futures.add(executor.submit(new Callable<BufferedImage>() {
+
+                    @Override
+                    public BufferedImage call() throws Exception {
+                        String ext = FilenameUtils.getExtension(file.getName()).toLowerCase(Locale.ENGLISH);
+                        return (TEXT_EXTENSIONS.contains(ext)) ? renderText(file, tileSize) : renderImage(file, tileSize);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    BufferedImage tile = futures.get(i).get();
+                    if (tile != null) {
+                        tiles.add(tile);
+                    }
+                } catch (ExecutionException ex) {
+                    LOGGER.warn("Failed to render file " + pFiles.get(i) + ". Skipping file.", ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return tiles;
+    }
+
+    /**
+     * Render a square tile of the provided image file. Only every n-th pixel
+     * is read, where n is chosen such that the longer side of the image read
+     * is at least twice as large as the tile. Basing n on the longer side
+     * bounds the memory needed for images with extreme aspect ratios. The
+     * image is center-cropped to a square afterwards.
+     *
+     * @param pFile The image file.
+     * @param pTileSize The tile size.
+     *
+     * @return The tile or null if the file cannot be read.
+     *
+     * @throws IOException If reading the file fails.
+     */
+    private BufferedImage renderImage(File pFile, int pTileSize) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream in = ImageIO.createImageInputStream(pFile)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (pTileSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+        int edge = Math.min(image.getWidth(), image.getHeight());
+        BufferedImage tile = new BufferedImage(pTileSize, pTileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = tile.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            int x = (image.getWidth() - edge) / 2;
+            int y = (image.getHeight() - edge) / 2;
+            g2d.drawImage(image, 0, 0, pTileSize, pTileSize, x, y, x + edge, y + edge, null);
+        } finally {
+            g2d.dispose();
+        }
+        return tile;
+    }
+
+    /**
+     * Render a square tile showing the beginning of the provided text file.
+     * At most MAX_TEXT_LENGTH characters are read.
+     *
+     * @param pFile The text file.
+     * @param pTileSize The tile size.
+     *
+     * @return The tile.
+     *
+     * @throws IOException If reading the file fails.
+     */
+    private BufferedImage renderText(File pFile, int pTileSize) throws IOException {
+        char[] buffer = new char[MAX_TEXT_LENGTH];
+        int length = 0;
+        try (Reader reader = new InputStreamReader(new FileInputStream(pFile), StandardCharsets.UTF_8)) {
+            int read;
+            while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+        }
+        BufferedImage tile = new BufferedImage(pTileSize, pTileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = tile.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, pTileSize, pTileSize);
+            g2d.setColor(Color.LIGHT_GRAY);
+            g2d.drawRect(0, 0, pTileSize - 1, pTileSize - 1);
+            g2d.setColor(Color.DARK_GRAY);
+            int fontSize = Math.max(4, pTileSize / 10);
+            g2d.setFont(new Font(Font.MONOSPACED, Font.PLAIN, fontSize));
+            int y = fontSize + 1;
+            for (String line : new String(buffer, 0, length).split("\r?\n")) {
+                if (y > pTileSize) {
+                    break;
+                }
+                g2d.drawString(line.replace('\t', ' '), 2, y);
+                y += fontSize + 1;
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return tile;
+    }
+
+    /**
+     * Compose the thumbnail from the provided tiles. A single tile fills the
+     * entire thumbnail, multiple tiles are arranged in a 2x2 grid.
+     *
+     * @param pTiles The tiles.
+     *
+     * @return The thumbnail.
+     */
+    private BufferedImage compose(List<BufferedImage> pTiles) {
+        if (pTiles.size() == 1 && pTiles.get(0).getWidth() == size) {
+            return pTiles.get(0);
+        }
+        BufferedImage thumbnail = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = thumbnail.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            if (pTiles.size() == 1) {
+                //only one of multiple sampled files could be rendered
+                g2d.drawImage(pTiles.get(0), 0, 0, size, size, null);
+            } else {
+                int tileSize = size / 2;
+                for (int i = 0; i < pTiles.size(); i++) {
+                    g2d.drawImage(pTiles.get(i), (i % 2) * tileSize, (i / 2) * tileSize, tileSize, tileSize, null);
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return thumbnail;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Properties file used by background jobs to persist their progress, e.g. the
+ * last processed base id. The file is replaced atomically, so a job that is
+ * interrupted while writing still finds the previous checkpoint.
+ *
+ * @author mf6319
+ */
+final class CheckpointFile {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(CheckpointFile.class);
+
+    private final File file;
+
+    /**
+     * Default constructor.
+     *
+     * @param pSettingsKey The DataManagerSettings key which may contain a
+     * custom location of the file.
+     * @param pDefaultName The name of the file in the temp. directory used if
+     * there is no custom location.
+     */
+    CheckpointFile(String pSettingsKey, String pDefaultName) {
+        file = new File(DataManagerSettings.getSingleton().getStringProperty(pSettingsKey, new File(System.getProperty("java.io.tmpdir"), pDefaultName).getAbsolutePath()));
+    }
+
+    /**
+     * Read the checkpoint.
+     *
+     * @return The checkpoint properties or null if there is no (readable)
+     * checkpoint.
+     */
+    Properties read() {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            checkpoint.load(in);
+            return checkpoint;
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to read checkpoint file " + file + ".", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Write the checkpoint. The checkpoint is written to a temporary file
+     * first, which is renamed afterwards.
+     *
+     * @param pCheckpoint The checkpoint properties.
+     */
+    void write(Properties pCheckpoint) {
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            pCheckpoint.store(out, "BaReDemo checkpoint");
+        } catch (IOException ex) {
+            LOGGER.error("Failed to write checkpoint file " + tmp + ".", ex);
+            return;
+        }
+        if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+            LOGGER.error("Failed to replace checkpoint file {}.", file);
+        }
+    }
+
+    /**
+     * Remove the checkpoint.
+     */
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Failed to remove checkpoint file {}.", file);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.mdm.dataorganization.entity.core.IAttribute;
+import edu.kit.dama.mdm.dataorganization.entity.core.IFileNode;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Metadata of the zipped data archive of a digital object, i.e. the URL of the
+ * archive and its size, which is sufficient to render a download link. The
+ * archive itself is not accessed before the download is requested.
+ *
+ * The same information is also used for other files in the 'generated' view,
+ * e.g. preview thumbnails.
+ *
+ * @author mf6319
+ */
+public final class DataZipInfo {
+
+    private final String url;
+    private final long size;
+
+    /**
+     * Default constructor.
+     *
+     * @param pUrl The URL of the archive.
+     * @param pSize The size of the archive or -1 if unknown.
+     */
+    public DataZipInfo(String pUrl, long pSize) {
+        url = pUrl;
+        size = pSize;
+    }
+
+    /**
+     * Create the info from the provided zip file node. The size is obtained
+     * from the attribute 'size' of the node.
+     *
+     * @param pZipNode The zip file node.
+     *
+     * @return The info or null if the node has no URL.
+     */
+    public static DataZipInfo fromFileNode(IFileNode pZipNode) {
+        String zipUrl = pZipNode.getLogicalFileName().asString();
+        if (zipUrl == null) {
+            return null;
+        }
+        long size = -1;
+        for (IAttribute attrib : pZipNode.getAttributes()) {
+            if ("size".equals(attrib.getKey())) {
+                try {
+                    size = Long.parseLong(attrib.getValue());
+                } catch (NumberFormatException ex) {
+                    //no long
+                }
+            }
+        }
+        return new DataZipInfo(zipUrl, size);
+    }
+
+    /**
+     * Get the URL of the archive.
+     *
+     * @return The URL.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Get the size of the archive as stored in the data organization.
+     *
+     * @return The size in bytes or -1 if unknown.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the archive as local file.
+     *
+     * @return The file.
+     *
+     * @throws MalformedURLException if the URL is invalid.
+     * @throws URISyntaxException if the URL is no valid URI.
+     */
+    public File getFile() throws MalformedURLException, URISyntaxException {
+        return new File(new URL(url).toURI());
+    }
+}
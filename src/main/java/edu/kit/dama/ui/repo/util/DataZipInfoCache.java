@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.util.DataManagerSettings;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Application-wide cache of the {@link DataZipInfo} of digital objects, which
+ * avoids loading the data organization each time a download link is rendered.
+ * The cache holds at most 'repository.download.cache.maxEntries' entries
+ * (default: 1000), which are evicted in least-recently-used order. Objects
+ * without archive are cached, too, but only for
+ * 'repository.download.cache.ttl' milliseconds (default: 60000) as the
+ * archive may be created later on. Cached infos are shared by all callers
+ * regardless of the authorization context used to obtain them, so access to
+ * the object itself has to be checked by the caller.
+ *
+ * @author mf6319
+ */
+public final class DataZipInfoCache {
+
+    public final static String MAX_ENTRIES_ID = "repository.download.cache.maxEntries";
+    public final static String TTL_ID = "repository.download.cache.ttl";
+
+    private static DataZipInfoCache SINGLETON = null;
+
+    private final int maxEntries;
+    private final long ttl;
+    private final Map<String, CacheEntry> entries;
+
+    /**
+     * Cached info together with its creation time. The info is null if the
+     * object has no archive.
+     */
+    private static final class CacheEntry {
+
+        private final DataZipInfo info;
+        private final long created;
+
+        CacheEntry(DataZipInfo pInfo) {
+            info = pInfo;
+            created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private DataZipInfoCache() {
+        maxEntries = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(MAX_ENTRIES_ID, 1000));
+        ttl = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(TTL_ID, 60000));
+        entries = new LinkedHashMap<String, CacheEntry>(16, .75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized DataZipInfoCache getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new DataZipInfoCache();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Get the archive info of the provided object. If the info is not cached,
+     * it is obtained via
+     * {@link DigitalObjectPersistenceHelper#getDataZipInfo(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.authorization.entities.IAuthorizationContext)}.
+     *
+     * @param pObject The object.
+     * @param pContext The context used to access the data organization.
+     *
+     * @return The archive info or null if no archive is available (yet).
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    public DataZipInfo getDataZipInfo(DigitalObject pObject, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        String key = pObject.getDigitalObjectIdentifier();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && (entry.info != null || System.currentTimeMillis() - entry.created <= ttl)) {
+                return entry.info;
+            }
+        }
+        DataZipInfo info = DigitalObjectPersistenceHelper.getDataZipInfo(pObject, pContext);
+        if (maxEntries > 0) {
+            synchronized (entries) {
+                entries.put(key, new CacheEntry(info));
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Remove the cached info of the object with the provided identifier, e.g.
+     * if the archive has been changed.
+     *
+     * @param pIdentifier The digital object identifier.
+     */
+    public void invalidate(String pIdentifier) {
+        synchronized (entries) {
+            entries.remove(pIdentifier);
+        }
+    }
+}
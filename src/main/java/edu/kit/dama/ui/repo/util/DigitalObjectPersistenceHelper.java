@@ -16,6 +16,7 @@
 package edu.kit.dama.ui.repo.util;
 
 import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.authorization.entities.util.PU;
 import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
 import edu.kit.dama.mdm.base.DigitalObject;
 import edu.kit.dama.mdm.core.IMetaDataManager;
@@ -28,9 +29,16 @@ import edu.kit.dama.mdm.dataorganization.service.core.DataOrganizationServiceLoc
 import edu.kit.dama.mdm.dataorganization.service.exception.EntityNotFoundException;
 import edu.kit.dama.staging.entities.ingest.IngestInformation;
 import edu.kit.dama.staging.services.impl.ingest.IngestInformationServiceLocal;
+import edu.kit.dama.ui.repo.staging.ThumbnailCreator;
 import edu.kit.dama.util.CryptUtil;
 import edu.kit.dama.util.Constants;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +52,11 @@ import org.slf4j.LoggerFactory;
 public final class DigitalObjectPersistenceHelper {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(DigitalObjectPersistenceHelper.class);
+    /**
+     * Set as soon as the direct lookup of generated files has failed once.
+     * Afterwards, the file tree is always loaded instead.
+     */
+    private static volatile boolean directLookupFailed = false;
 
     /**
      * Hidden constructor.
@@ -120,6 +133,47 @@ public final class DigitalObjectPersistenceHelper {
         }
     }
 
+    /**
+     * Find multiple objects by their identifiers using one single query. The
+     * uploader and the investigation of each object are fetched together with
+     * the object. The returned map contains one entry for each provided
+     * identifier in the order of pIdentifiers. If an object was not found, the
+     * according value is null.
+     *
+     * @param pIdentifiers The identifiers.
+     * @param pContext The authorization context used to find the objects.
+     *
+     * @return A map of identifiers and objects.
+     *
+     * @throws UnauthorizedAccessAttemptException if pContext is not allowed to
+     * access the objects.
+     */
+    public static Map<String, DigitalObject> getDigitalObjectsByIdentifiers(Collection<String> pIdentifiers, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        Map<String, DigitalObject> result = new LinkedHashMap<>();
+        if (pIdentifiers.isEmpty()) {
+            return result;
+        }
+        List<DigitalObject> objects;
+        IMetaDataManager mdm = null;
+        try {
+            mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+            mdm.setAuthorizationContext(pContext);
+            objects = mdm.findResultList("SELECT o FROM DigitalObject o LEFT JOIN FETCH o.uploader LEFT JOIN FETCH o.investigation WHERE o.digitalObjectIdentifier IN ?1", new Object[]{new ArrayList<>(pIdentifiers)}, DigitalObject.class);
+        } finally {
+            if (mdm != null) {
+                mdm.close();
+            }
+        }
+        Map<String, DigitalObject> byIdentifier = new HashMap<>();
+        for (DigitalObject object : objects) {
+            byIdentifier.put(object.getDigitalObjectIdentifier(), object);
+        }
+        for (String identifier : pIdentifiers) {
+            result.put(identifier, byIdentifier.get(identifier));
+        }
+        return result;
+    }
+
     /**
      * Get the ingest associated with the provided object.
      *
@@ -193,15 +247,182 @@ public final class DigitalObjectPersistenceHelper {
      * to access the data.
      */
     public static IFileNode getDataZipFileNode(DigitalObject pObject, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        return (pObject != null) ? getGeneratedFileNode(pObject, getDataZipFileName(pObject), pContext) : null;
+    }
+
+    /**
+     * Get the node with the provided name from the 'generated' view of the
+     * provided object by loading the entire view.
+     *
+     * @param pObject The object.
+     * @param pFileName The node name.
+     * @param pContext The context used to access the data.
+     *
+     * @return The filenode or null if no filenode is available (yet).
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    private static IFileNode getGeneratedFileNode(DigitalObject pObject, String pFileName, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
         if (pObject != null) {
+            long start = System.currentTimeMillis();
             try {
                 IFileTree tree = DataOrganizationServiceLocal.getSingleton().loadFileTree(pObject.getDigitalObjectId(), Constants.STAGING_GENERATED_FOLDER_NAME, pContext);
-                return (IFileNode) Util.getNodeByName(tree.getRootNode(), CryptUtil.stringToSHA1(pObject.getDigitalObjectIdentifier()) + ".zip");
+                return (IFileNode) Util.getNodeByName(tree.getRootNode(), pFileName);
             } catch (EntityNotFoundException ex) {
                 return null;
+            } finally {
+                LOGGER.debug("Loaded file tree of object {} in {} ms.", pObject.getDigitalObjectIdentifier(), System.currentTimeMillis() - start);
             }
         }
         return null;
     }
 
+    /**
+     * Get the URL and size of the zipped data archive of the provided object.
+     * In contrast to
+     * {@link #getDataZipFileNode(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.authorization.entities.IAuthorizationContext)},
+     * not the entire 'generated' view is loaded, but only the node of the
+     * archive and its size attribute are obtained by name with one query
+     * (backed by the index dataorganizationnode_name_idx). As for the file
+     * tree, only nodes of the latest version of the view are considered.
+     * Before, read access to the object and to its data organization is
+     * checked using pContext. If the direct lookup fails, e.g. due to a
+     * different database layout, the file tree is loaded instead for this and
+     * all subsequent calls.
+     *
+     * @param pObject The object.
+     * @param pContext The context used to access the data.
+     *
+     * @return The archive info or null if no archive is available (yet).
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    public static DataZipInfo getDataZipInfo(DigitalObject pObject, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        return (pObject != null) ? getGeneratedFileInfo(pObject, getDataZipFileName(pObject), pContext) : null;
+    }
+
+    /**
+     * Get the URL and size of the preview thumbnail of the provided object
+     * created by {@link ThumbnailCreator}. The thumbnail is obtained the same
+     * way as the data archive in
+     * {@link #getDataZipInfo(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.authorization.entities.IAuthorizationContext)}.
+     *
+     * @param pObject The object.
+     * @param pContext The context used to access the data.
+     *
+     * @return The thumbnail info or null if no thumbnail is available.
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    public static DataZipInfo getThumbnailInfo(DigitalObject pObject, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        return (pObject != null) ? getGeneratedFileInfo(pObject, ThumbnailCreator.getThumbnailFileName(pObject.getDigitalObjectIdentifier()), pContext) : null;
+    }
+
+    /**
+     * Get URL and size of the file with the provided name in the 'generated'
+     * view of the provided object by a direct lookup of the node. The nodes
+     * of a view are stored as nested set, i.e. each node covers the interval
+     * [stepnoarrived, stepnoleaved] of its subtree, and the root node
+     * (nodedepth 0) of each version of the view has its own interval. Like
+     * the file tree, the lookup is restricted to the subtree of the root node
+     * with the highest version and returns the first match in tree order.
+     *
+     * @param pObject The object.
+     * @param pFileName The node name.
+     * @param pContext The context used to access the data.
+     *
+     * @return The file info or null if the file is not available.
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    private static DataZipInfo getGeneratedFileInfo(DigitalObject pObject, String pFileName, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        String identifier = pObject.getDigitalObjectIdentifier();
+        //check read access to the object, the secure metadata manager fails if pContext is not authorized
+        IMetaDataManager mdm = SecureMetaDataManager.factorySecureMetaDataManager(pContext);
+        try {
+            if (mdm.findSingleResult("SELECT o.baseId FROM DigitalObject o WHERE o.digitalObjectIdentifier=?1", new Object[]{identifier}, Number.class) == null) {
+                return null;
+            }
+        } finally {
+            mdm.close();
+        }
+        checkDataAccess(pObject, pContext);
+
+        if (directLookupFailed) {
+            IFileNode node = getGeneratedFileNode(pObject, pFileName, pContext);
+            return (node != null) ? DataZipInfo.fromFileNode(node) : null;
+        }
+        long start = System.currentTimeMillis();
+        EntityManager em = null;
+        try {
+            //the data organization is located in the same database as the authorization tables
+            em = PU.entityManager();
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = em.createNativeQuery("SELECT n.value, a.attr_value FROM dataorganizationnode r "
+                    + "JOIN dataorganizationnode n ON n.digit_obj_id=r.digit_obj_id AND n.viewname=r.viewname AND n.stepnoarrived>r.stepnoarrived AND n.stepnoleaved<r.stepnoleaved "
+                    + "LEFT OUTER JOIN attribute a ON a.digit_obj_id=n.digit_obj_id AND a.viewname=n.viewname AND a.stepnoarrived=n.stepnoarrived AND a.attr_key='size' "
+                    + "WHERE r.digit_obj_id=?1 AND r.viewname=?2 AND r.nodedepth=0 "
+                    + "AND r.idversion=(SELECT MAX(v.idversion) FROM dataorganizationnode v WHERE v.digit_obj_id=?1 AND v.viewname=?2 AND v.nodedepth=0) "
+                    + "AND n.name=?3 ORDER BY n.stepnoarrived ASC")
+                    .setParameter(1, identifier)
+                    .setParameter(2, Constants.STAGING_GENERATED_FOLDER_NAME)
+                    .setParameter(3, pFileName)
+                    .setMaxResults(1)
+                    .getResultList();
+            if (rows.isEmpty() || rows.get(0)[0] == null) {
+                return null;
+            }
+            long size = -1;
+            if (rows.get(0)[1] != null) {
+                try {
+                    size = Long.parseLong(rows.get(0)[1].toString());
+                } catch (NumberFormatException ex) {
+                    //no long
+                }
+            }
+            return new DataZipInfo(rows.get(0)[0].toString(), size);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to obtain file " + pFileName + " of object " + identifier + " by name. Loading file trees from now on.", ex);
+            directLookupFailed = true;
+            IFileNode node = getGeneratedFileNode(pObject, pFileName, pContext);
+            return (node != null) ? DataZipInfo.fromFileNode(node) : null;
+        } finally {
+            if (em != null) {
+                em.close();
+            }
+            LOGGER.debug("Obtained file {} of object {} in {} ms.", pFileName, identifier, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Check whether pContext is allowed to access the data organization of the
+     * provided object. The data organization is secured separately from the
+     * object, listing the views of the object is the cheapest secured call.
+     *
+     * @param pObject The object.
+     * @param pContext The context used to access the data.
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    public static void checkDataAccess(DigitalObject pObject, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        DataOrganizationServiceLocal.getSingleton().getViews(pObject.getDigitalObjectId(), pContext);
+    }
+
+    /**
+     * Get the name of the node holding the zipped data archive of the
+     * provided object, which is the SHA-1 hash of the object identifier.
+     *
+     * @param pObject The object.
+     *
+     * @return The node name.
+     */
+    private static String getDataZipFileName(DigitalObject pObject) {
+        return CryptUtil.stringToSHA1(pObject.getDigitalObjectIdentifier()) + ".zip";
+    }
+
 }
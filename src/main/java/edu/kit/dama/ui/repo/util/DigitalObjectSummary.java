@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.commons.types.DigitalObjectId;
+import edu.kit.dama.mdm.base.DigitalObject;
+import static edu.kit.dama.mdm.content.impl.DublinCoreMetadataExtractor.ISO_8601_DATE_FORMAT;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only summary of a digital object containing all fields needed to
+ * render a search result entry. Summaries are created from the Dublin Core
+ * document stored in the search index and therefore do not require any
+ * database access.
+ *
+ * @author mf6319
+ */
+public final class DigitalObjectSummary {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(DigitalObjectSummary.class);
+
+    public final static String TITLE_FIELD = "dc:title";
+    public final static String CREATOR_FIELD = "dc:creator";
+    public final static String DATE_FIELD = "dc:date";
+    public final static String DESCRIPTION_FIELD = "dc:description";
+    public final static String IDENTIFIER_FIELD = "dc:identifier";
+    /**
+     * The source fields needed to create a summary.
+     */
+    public final static String[] SOURCE_FIELDS = new String[]{
+        DublinCoreJsonSerializer.ROOT_ELEMENT + "." + TITLE_FIELD,
+        DublinCoreJsonSerializer.ROOT_ELEMENT + "." + CREATOR_FIELD,
+        DublinCoreJsonSerializer.ROOT_ELEMENT + "." + DATE_FIELD,
+        DublinCoreJsonSerializer.ROOT_ELEMENT + "." + DESCRIPTION_FIELD,
+        DublinCoreJsonSerializer.ROOT_ELEMENT + "." + IDENTIFIER_FIELD
+    };
+
+    private final DigitalObjectId digitalObjectId;
+    private final String title;
+    private final String creator;
+    private final Date date;
+    private final String description;
+
+    /**
+     * Default constructor.
+     *
+     * @param pDigitalObjectId The digital object id.
+     * @param pTitle The title.
+     * @param pCreator The full name of the creator.
+     * @param pDate The creation date.
+     * @param pDescription The description.
+     */
+    public DigitalObjectSummary(DigitalObjectId pDigitalObjectId, String pTitle, String pCreator, Date pDate, String pDescription) {
+        digitalObjectId = pDigitalObjectId;
+        title = pTitle;
+        creator = pCreator;
+        date = (pDate != null) ? new Date(pDate.getTime()) : null;
+        description = pDescription;
+    }
+
+    /**
+     * Create a summary from the source of a document created by the
+     * {@link DublinCoreJsonSerializer}. If the source contains no identifier,
+     * the provided fallback identifier is used.
+     *
+     * @param pIdentifier The fallback identifier, e.g. obtained from the
+     * document id.
+     * @param pSource The document source.
+     *
+     * @return The summary.
+     */
+    public static DigitalObjectSummary fromSource(String pIdentifier, Map<String, Object> pSource) {
+        Object root = (pSource != null) ? pSource.get(DublinCoreJsonSerializer.ROOT_ELEMENT) : null;
+        if (!(root instanceof Map)) {
+            return new DigitalObjectSummary(new DigitalObjectId(pIdentifier), null, null, null, null);
+        }
+        Map<?, ?> dc = (Map<?, ?>) root;
+        String identifier = getValue(dc, IDENTIFIER_FIELD);
+        Date date = null;
+        String dateValue = getValue(dc, DATE_FIELD);
+        if (dateValue != null) {
+            try {
+                date = new SimpleDateFormat(ISO_8601_DATE_FORMAT).parse(dateValue);
+            } catch (ParseException ex) {
+                LOGGER.warn("Failed to parse date '{}' of object {}.", dateValue, pIdentifier);
+            }
+        }
+        return new DigitalObjectSummary(new DigitalObjectId((identifier != null) ? identifier : pIdentifier),
+                getValue(dc, TITLE_FIELD),
+                getValue(dc, CREATOR_FIELD),
+                date,
+                getValue(dc, DESCRIPTION_FIELD));
+    }
+
+    /**
+     * Create a summary from the provided digital object entity.
+     *
+     * @param pObject The digital object.
+     *
+     * @return The summary.
+     */
+    public static DigitalObjectSummary fromObject(DigitalObject pObject) {
+        return new DigitalObjectSummary(pObject.getDigitalObjectId(),
+                pObject.getLabel(),
+                (pObject.getUploader() != null) ? pObject.getUploader().getFullname() : null,
+                pObject.getStartDate(),
+                (pObject.getInvestigation() != null) ? pObject.getInvestigation().getDescription() : null);
+    }
+
+    /**
+     * Get a single value from the provided map. For arrays the first element
+     * is returned.
+     *
+     * @param pMap The map.
+     * @param pKey The key.
+     *
+     * @return The value or null.
+     */
+    private static String getValue(Map<?, ?> pMap, String pKey) {
+        Object value = pMap.get(pKey);
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            value = (values.isEmpty()) ? null : values.get(0);
+        }
+        return (value != null) ? value.toString() : null;
+    }
+
+    /**
+     * Get the digital object id.
+     *
+     * @return The digital object id.
+     */
+    public DigitalObjectId getDigitalObjectId() {
+        return digitalObjectId;
+    }
+
+    /**
+     * Get the digital object identifier.
+     *
+     * @return The digital object identifier.
+     */
+    public String getDigitalObjectIdentifier() {
+        return digitalObjectId.getStringRepresentation();
+    }
+
+    /**
+     * Get the title.
+     *
+     * @return The title or null.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the full name of the creator.
+     *
+     * @return The creator or null.
+     */
+    public String getCreator() {
+        return creator;
+    }
+
+    /**
+     * Get the creation date.
+     *
+     * @return The date or null.
+     */
+    public Date getDate() {
+        return (date != null) ? new Date(date.getTime()) : null;
+    }
+
+    /**
+     * Get the description.
+     *
+     * @return The description or null.
+     */
+    public String getDescription() {
+        return description;
+    }
+}
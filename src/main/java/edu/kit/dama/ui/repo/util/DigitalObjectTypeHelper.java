@@ -13,6 +13,11 @@ import edu.kit.dama.mdm.base.DigitalObjectType;
 import edu.kit.dama.mdm.base.ObjectTypeMapping;
 import edu.kit.dama.mdm.core.IMetaDataManager;
 import edu.kit.dama.mdm.core.MetaDataManagement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -103,6 +108,120 @@ public class DigitalObjectTypeHelper {
         }
     }
 
+    /**
+     * Check whether the provided type is assigned to the digital object with
+     * the provided identifier. In contrast to
+     * {@link #isTypeAssignedToObject(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.mdm.base.DigitalObjectType, edu.kit.dama.authorization.entities.IAuthorizationContext)}
+     * no persisted digital object entity is needed, e.g. if the object is only
+     * known from the search index.
+     *
+     * @param pIdentifier The digital object identifier.
+     * @param pType The digital object type to check.
+     * @param pContext The context used to authorize the access.
+     *
+     * @return TRUE if pType is assigned to the object with the identifier
+     * pIdentifier.
+     *
+     * @throws UnauthorizedAccessAttemptException if pContext is not authorized
+     * to perform the operaion.
+     */
+    public static boolean isTypeAssignedToObject(String pIdentifier, DigitalObjectType pType, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        if (pIdentifier == null) {
+            throw new IllegalArgumentException("Argument pIdentifier should not be null.");
+        }
+
+        if (pType == null) {
+            throw new IllegalArgumentException("Argument pType should not be null.");
+        }
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(pContext);
+        try {
+            Number resultCount = mdm.findSingleResult("SELECT COUNT(m) FROM ObjectTypeMapping m WHERE m.digitalObject.digitalObjectIdentifier=?1 AND m.objectType.id=?2", new Object[]{pIdentifier, pType.getId()}, Number.class);
+            return (resultCount == null) ? false : (resultCount.intValue() == 1);
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Get the base ids of all provided digital objects the provided type is
+     * assigned to. In contrast to calling
+     * {@link #isTypeAssignedToObject(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.mdm.base.DigitalObjectType, edu.kit.dama.authorization.entities.IAuthorizationContext)}
+     * for each object, only one query is performed.
+     *
+     * @param pInputObjects The input objects, which must be persisted entities.
+     * @param pType The digital object type to check.
+     * @param pContext The context used to authorize the access.
+     *
+     * @return The base ids of all objects pType is assigned to.
+     *
+     * @throws UnauthorizedAccessAttemptException if pContext is not authorized
+     * to perform the operaion.
+     */
+    public static Set<Long> getObjectsWithType(Collection<DigitalObject> pInputObjects, DigitalObjectType pType, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        if (pInputObjects == null) {
+            throw new IllegalArgumentException("Argument pInputObjects should not be null.");
+        }
+
+        if (pType == null) {
+            throw new IllegalArgumentException("Argument pType should not be null.");
+        }
+        Set<Long> result = new HashSet<>();
+        List<Long> baseIds = new ArrayList<>();
+        for (DigitalObject object : pInputObjects) {
+            baseIds.add(object.getBaseId());
+        }
+        if (baseIds.isEmpty()) {
+            return result;
+        }
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(pContext);
+        try {
+            result.addAll(mdm.findResultList("SELECT m.digitalObject.baseId FROM ObjectTypeMapping m WHERE m.objectType.id=?1 AND m.digitalObject.baseId IN ?2", new Object[]{pType.getId(), baseIds}, Long.class));
+            return result;
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Get the identifiers of all digital objects with the provided identifiers
+     * the provided type is assigned to. Like
+     * {@link #getObjectsWithType(java.util.Collection, edu.kit.dama.mdm.base.DigitalObjectType, edu.kit.dama.authorization.entities.IAuthorizationContext)}
+     * only one query is performed, but no persisted digital object entities
+     * are needed, e.g. if the objects are only known from the search index.
+     *
+     * @param pIdentifiers The digital object identifiers.
+     * @param pType The digital object type to check.
+     * @param pContext The context used to authorize the access.
+     *
+     * @return The identifiers of all objects pType is assigned to.
+     *
+     * @throws UnauthorizedAccessAttemptException if pContext is not authorized
+     * to perform the operaion.
+     */
+    public static Set<String> getIdentifiersWithType(Collection<String> pIdentifiers, DigitalObjectType pType, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        if (pIdentifiers == null) {
+            throw new IllegalArgumentException("Argument pIdentifiers should not be null.");
+        }
+
+        if (pType == null) {
+            throw new IllegalArgumentException("Argument pType should not be null.");
+        }
+        Set<String> result = new HashSet<>();
+        if (pIdentifiers.isEmpty()) {
+            return result;
+        }
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(pContext);
+        try {
+            result.addAll(mdm.findResultList("SELECT m.digitalObject.digitalObjectIdentifier FROM ObjectTypeMapping m WHERE m.objectType.id=?1 AND m.digitalObject.digitalObjectIdentifier IN ?2", new Object[]{pType.getId(), new ArrayList<>(pIdentifiers)}, String.class));
+            return result;
+        } finally {
+            mdm.close();
+        }
+    }
+
     /**
      * Removed the provided object type from the provided digital object. Both
      * arguments must be existing, persisted entities. If there is no mapping
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.authorization.entities.impl.AuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObjectType;
+import edu.kit.dama.mdm.core.IMetaDataManager;
+import edu.kit.dama.mdm.core.MetaDataManagement;
+import edu.kit.dama.util.DataManagerSettings;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application-wide registry of digital object types. Types are resolved by
+ * identifier, domain and version once and are served from memory afterwards.
+ * Cached types expire after 'repository.typeRegistry.ttl' milliseconds
+ * (default: 300000), so changes made by an administrator become visible
+ * without restart. Additionally, {@link #refresh()} can be called to drop all
+ * cached types immediately.
+ *
+ * @author mf6319
+ */
+public final class DigitalObjectTypeRegistry {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(DigitalObjectTypeRegistry.class);
+
+    public final static String TTL_ID = "repository.typeRegistry.ttl";
+
+    private static DigitalObjectTypeRegistry SINGLETON = null;
+
+    private final long ttl;
+    private final ConcurrentMap<String, CachedType> types = new ConcurrentHashMap<>();
+
+    /**
+     * Cached type together with the time it was obtained.
+     */
+    private static final class CachedType {
+
+        private final DigitalObjectType type;
+        private final long loaded;
+
+        CachedType(DigitalObjectType pType) {
+            type = pType;
+            loaded = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private DigitalObjectTypeRegistry() {
+        ttl = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(TTL_ID, 300000));
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized DigitalObjectTypeRegistry getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new DigitalObjectTypeRegistry();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Build the key of a type.
+     *
+     * @param pIdentifier The type identifier.
+     * @param pDomain The type domain.
+     * @param pVersion The type version.
+     *
+     * @return The key.
+     */
+    private static String toKey(String pIdentifier, String pDomain, int pVersion) {
+        return pDomain + "#" + pIdentifier + "#" + pVersion;
+    }
+
+    /**
+     * Get the type with the provided identifier, domain and version. If the
+     * type is not cached or if the cached type has expired, it is obtained
+     * from the database.
+     *
+     * @param pIdentifier The type identifier.
+     * @param pDomain The type domain.
+     * @param pVersion The type version.
+     *
+     * @return The type or null if no such type exists.
+     *
+     * @throws IllegalStateException If the type could not be obtained from the
+     * database.
+     */
+    public DigitalObjectType getType(String pIdentifier, String pDomain, int pVersion) {
+        String key = toKey(pIdentifier, pDomain, pVersion);
+        CachedType cached = types.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.loaded <= ttl) {
+            return cached.type;
+        }
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+        try {
+            DigitalObjectType type = mdm.findSingleResult("SELECT t FROM DigitalObjectType t WHERE t.identifier=?1 AND t.typeDomain=?2 AND t.version=?3", new Object[]{pIdentifier, pDomain, pVersion}, DigitalObjectType.class);
+            if (type != null) {
+                types.put(key, new CachedType(type));
+            } else {
+                types.remove(key);
+            }
+            return type;
+        } catch (UnauthorizedAccessAttemptException | RuntimeException ex) {
+            throw new IllegalStateException("Failed to obtain digital object type '" + key + "'.", ex);
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Get the type with the provided identifier, domain and version and create
+     * it if it does not exist, yet. This method must only be used while
+     * bootstrapping the application, all other code uses
+     * {@link #getType(java.lang.String, java.lang.String, int)}. Creation is
+     * synchronized and the database is checked again before the type is
+     * saved, so the type is not created twice by this application.
+     *
+     * @param pIdentifier The type identifier.
+     * @param pDomain The type domain.
+     * @param pVersion The type version.
+     * @param pDescription The description used if the type is created.
+     *
+     * @return The existing or created type.
+     *
+     * @throws IllegalStateException If the type could neither be obtained nor
+     * created.
+     */
+    public synchronized DigitalObjectType getOrCreateType(String pIdentifier, String pDomain, int pVersion, String pDescription) {
+        //bypass the cache, the type may have been removed in the meantime
+        types.remove(toKey(pIdentifier, pDomain, pVersion));
+        DigitalObjectType type = getType(pIdentifier, pDomain, pVersion);
+        if (type != null) {
+            return type;
+        }
+        LOGGER.info("Digital object type '{}' does not exist. Creating it.", pIdentifier);
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+        try {
+            type = new DigitalObjectType();
+            type.setIdentifier(pIdentifier);
+            type.setTypeDomain(pDomain);
+            type.setVersion(pVersion);
+            type.setDescription(pDescription);
+            type = mdm.save(type);
+            types.put(toKey(pIdentifier, pDomain, pVersion), new CachedType(type));
+            return type;
+        } catch (UnauthorizedAccessAttemptException | RuntimeException ex) {
+            throw new IllegalStateException("Failed to create digital object type '" + pIdentifier + "'.", ex);
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Drop all cached types, e.g. after an administrator has changed types.
+     * All types are obtained from the database again on next access.
+     */
+    public void refresh() {
+        LOGGER.debug("Dropping {} cached digital object type(s).", types.size());
+        types.clear();
+    }
+}
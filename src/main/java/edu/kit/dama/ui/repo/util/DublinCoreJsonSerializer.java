@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.UserData;
+import static edu.kit.dama.mdm.content.impl.DublinCoreMetadataExtractor.ISO_8601_DATE_FORMAT;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.LinkedList;
+import java.util.List;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+/**
+ * Serializer writing the Dublin Core representation of a digital object
+ * directly to a streaming JSON generator. The resulting document has the same
+ * shape as the OAI-DC XML document previously created and converted via
+ * <i>org.json.XML</i>, i.e. all elements are located below the key 'oai_dc:dc'
+ * together with the namespace attributes, values are trimmed and repeated
+ * elements are written as array. In contrast to the XML conversion, values
+ * are always written as strings and are properly escaped.
+ *
+ * The string values are an intended difference: org.json converted texts
+ * looking like numbers or booleans, e.g. the title '2015' or the subject
+ * 'true', into JSON numbers or booleans. Depending on the first indexed
+ * document, elasticsearch may therefore have created a numeric or boolean
+ * dynamic mapping for a Dublin Core field of an existing index, which rejects
+ * or mis-converts the strings written now. Such indices have to be recreated
+ * before running the {@link ReindexJob}. The former output is pinned in the
+ * golden files of DublinCoreJsonSerializerTest.
+ *
+ * Additionally, title and creator are written to the top-level field
+ * 'suggest', which is mapped as completion field and is used to provide
+ * search suggestions.
+ *
+ * @author mf6319
+ */
+public final class DublinCoreJsonSerializer {
+
+    public final static String ROOT_ELEMENT = "oai_dc:dc";
+    public final static String SUGGEST_FIELD = "suggest";
+
+    /**
+     * SimpleDateFormat is not thread-safe, therefore each thread gets its own
+     * instance.
+     */
+    private final static ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(ISO_8601_DATE_FORMAT);
+        }
+    };
+
+    /**
+     * Hidden constructor.
+     */
+    private DublinCoreJsonSerializer() {
+    }
+
+    /**
+     * Generate a DublinCore Json representation of the provided entry. The
+     * mapping of the fields follows
+     * <i>edu.kit.dama.mdm.content.impl.DublinCoreMetadataExtractor</i>.
+     *
+     * @param pEntry The entry to convert.
+     *
+     * @return The DublinCore Json string.
+     *
+     * @throws IOException if writing the document fails.
+     */
+    public static String toJson(DigitalObject pEntry) throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        builder.startObject().startObject(ROOT_ELEMENT);
+        builder.field("xmlns:oai_dc", "http://www.openarchives.org/OAI/2.0/oai_dc/");
+        builder.field("xmlns:dc", "http://purl.org/dc/elements/1.1/");
+        builder.field("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
+        builder.field("xsi:schemaLocation", "http://www.openarchives.org/OAI/2.0/oai_dc/ \n     http://www.openarchives.org/OAI/2.0/oai_dc.xsd");
+
+        writeValue(builder, "dc:title", pEntry.getLabel());
+        UserData uploader = pEntry.getUploader();
+        if (uploader != null) {
+            writeValue(builder, "dc:creator", uploader.getFullname());
+            writeValue(builder, "dc:publisher", uploader.getFullname());
+        }
+
+        List<String> contributors = new LinkedList<>();
+        for (UserData experimenter : pEntry.getExperimenters()) {
+            //don't list uploader a second time here
+            if (uploader == null || !experimenter.equals(uploader)) {
+                contributors.add(experimenter.getFullname());
+            }
+        }
+        if (contributors.size() == 1) {
+            writeValue(builder, "dc:contributor", contributors.get(0));
+        } else if (contributors.size() > 1) {
+            builder.startArray("dc:contributor");
+            for (String contributor : contributors) {
+                builder.value(normalize(contributor));
+            }
+            builder.endArray();
+        }
+
+        if (pEntry.getInvestigation() != null) {
+            writeValue(builder, "dc:subject", pEntry.getInvestigation().getTopic());
+            String description = pEntry.getInvestigation().getDescription();
+            if (description != null) {
+                writeValue(builder, "dc:description", description);
+            }
+            if (pEntry.getInvestigation().getStudy() != null) {
+                String legalNotes = pEntry.getInvestigation().getStudy().getLegalNote();
+                if (legalNotes != null) {
+                    writeValue(builder, "dc:rights", legalNotes);
+                }
+            }
+        }
+        if (pEntry.getStartDate() != null) {
+            writeValue(builder, "dc:date", DATE_FORMAT.get().format(pEntry.getStartDate()));
+        }
+        //not possible in our case - use binary type 'application/octet-stream'
+        builder.field("dc:format", "application/octet-stream");
+        //see http://dublincore.org/documents/2012/06/14/dcmi-terms/?v=dcmitype
+        builder.field("dc:type", "Dataset");
+        writeValue(builder, "dc:identifier", pEntry.getDigitalObjectId().getStringRepresentation());
+        builder.endObject();
+
+        //suggestion inputs, empty values are not allowed here
+        List<String> inputs = new LinkedList<>();
+        if (pEntry.getLabel() != null && !pEntry.getLabel().trim().isEmpty()) {
+            inputs.add(normalize(pEntry.getLabel()));
+        }
+        if (uploader != null && uploader.getFullname() != null && !uploader.getFullname().trim().isEmpty()) {
+            inputs.add(normalize(uploader.getFullname()));
+        }
+        if (!inputs.isEmpty()) {
+            builder.startObject(SUGGEST_FIELD).startArray("input");
+            for (String input : inputs) {
+                builder.value(input);
+            }
+            builder.endArray().endObject();
+        }
+        builder.endObject();
+        return builder.string();
+    }
+
+    /**
+     * Write a single value. Null values are written as JSON null, all other
+     * values are trimmed.
+     *
+     * @param pBuilder The builder.
+     * @param pKey The key.
+     * @param pValue The value.
+     */
+    private static void writeValue(XContentBuilder pBuilder, String pKey, String pValue) throws IOException {
+        if (pValue == null) {
+            pBuilder.nullField(pKey);
+        } else {
+            pBuilder.field(pKey, normalize(pValue));
+        }
+    }
+
+    /**
+     * Normalize a value the same way the XML conversion did by removing
+     * leading and trailing whitespaces.
+     *
+     * @param pValue The value.
+     *
+     * @return The normalized value.
+     */
+    private static String normalize(String pValue) {
+        return (pValue == null) ? null : pValue.trim();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.suggest.SuggestResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.mapper.MergeMappingException;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestionBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search back end using an external elasticsearch cluster configured by the
+ * default DataManagerSettings of KIT Data Manager. All operations share the
+ * client provided by {@link ElasticsearchClientHolder}. Before the first
+ * document is indexed, the field 'suggest' is mapped as completion field, which
+ * is used to provide search suggestions. Until this mapping is applied, the
+ * field is removed from all documents, as elasticsearch would otherwise map it
+ * dynamically as object, which cannot be changed afterwards. Documents indexed
+ * in the meantime provide no suggestions until they are reindexed. If the
+ * field is already mapped differently, suggestions are disabled until the
+ * index is rebuilt.
+ *
+ * @author mf6319
+ */
+public final class ElasticsearchBackend implements SearchBackend {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ElasticsearchBackend.class);
+    private final static String SUGGESTION_NAME = "dc-suggest";
+
+    private volatile boolean mappingApplied = false;
+    private volatile boolean mappingConflict = false;
+    private boolean mappingFailureLogged = false;
+
+    @Override
+    public Set<String> executeBulk(Map<String, String> pOperations, boolean pRefresh) {
+        ElasticsearchClientHolder holder = ElasticsearchClientHolder.getSingleton();
+        Client client = holder.getClient();
+        if (!mappingApplied && !mappingConflict) {
+            ensureSuggestMapping(client, holder.getIndex());
+        }
+        boolean withSuggest = mappingApplied;
+        BulkRequestBuilder bulk = client.prepareBulk().setRefresh(pRefresh);
+        for (Map.Entry<String, String> operation : pOperations.entrySet()) {
+            if (operation.getValue() != null) {
+                String source = (withSuggest) ? operation.getValue() : removeSuggestField(operation.getValue());
+                bulk.add(client.prepareIndex(holder.getIndex(), ElasticsearchHelper.ELASTICSEARCH_TYPE, operation.getKey()).setSource(source));
+            } else {
+                bulk.add(client.prepareDelete(holder.getIndex(), ElasticsearchHelper.ELASTICSEARCH_TYPE, operation.getKey()));
+            }
+        }
+        BulkResponse response = bulk.execute().actionGet();
+        Set<String> failed = new HashSet<>();
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) {
+                    LOGGER.warn("Failed to {} document {}: {}", item.getOpType(), item.getId(), item.getFailureMessage());
+                    failed.add(item.getId());
+                }
+            }
+        }
+        LOGGER.debug("Bulk request with {} operation(s) finished in {} ms. {} operation(s) failed.", pOperations.size(), response.getTookInMillis(), failed.size());
+        return failed;
+    }
+
+    @Override
+    public void refresh() {
+        ElasticsearchClientHolder holder = ElasticsearchClientHolder.getSingleton();
+        holder.getClient().admin().indices().prepareRefresh(holder.getIndex()).execute().actionGet();
+    }
+
+    @Override
+    public SearchResultPage search(String pQuery, int pFrom, int pSize) {
+        ElasticsearchClientHolder holder = ElasticsearchClientHolder.getSingleton();
+        SearchResponse response = holder.getClient().prepareSearch(holder.getIndex())
+                .setTypes(ElasticsearchHelper.ELASTICSEARCH_TYPE)
+                .setQuery(QueryBuilders.queryString(pQuery))
+                .setFetchSource(DigitalObjectSummary.SOURCE_FIELDS, null)
+                .setFrom(pFrom)
+                .setSize(pSize)
+                .execute()
+                .actionGet();
+        List<DigitalObjectSummary> summaries = new ArrayList<>(response.getHits().getHits().length);
+        for (SearchHit hit : response.getHits().getHits()) {
+            summaries.add(DigitalObjectSummary.fromSource(ElasticsearchHelper.documentIdToObjectId(hit.getId()), hit.getSource()));
+        }
+        LOGGER.debug("Query '{}' returned {} of {} result(s) in {} ms.", pQuery, summaries.size(), response.getHits().getTotalHits(), response.getTookInMillis());
+        return new SearchResultPage(summaries, response.getHits().getTotalHits(), pFrom);
+    }
+
+    @Override
+    public List<String> suggest(String pPrefix, int pMaxSuggestions) {
+        if (!mappingApplied) {
+            //field is not mapped as completion field (yet)
+            return new ArrayList<>();
+        }
+        ElasticsearchClientHolder holder = ElasticsearchClientHolder.getSingleton();
+        CompletionSuggestionBuilder completion = new CompletionSuggestionBuilder(SUGGESTION_NAME)
+                .field(DublinCoreJsonSerializer.SUGGEST_FIELD)
+                .text(pPrefix)
+                .size(pMaxSuggestions);
+        SuggestResponse response = holder.getClient().prepareSuggest(holder.getIndex()).addSuggestion(completion).execute().actionGet();
+        List<String> suggestions = new ArrayList<>();
+        CompletionSuggestion suggestion = response.getSuggest().getSuggestion(SUGGESTION_NAME);
+        if (suggestion != null) {
+            for (CompletionSuggestion.Entry entry : suggestion.getEntries()) {
+                for (CompletionSuggestion.Entry.Option option : entry.getOptions()) {
+                    String text = option.getText().string();
+                    if (!suggestions.contains(text)) {
+                        suggestions.add(text);
+                    }
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    @Override
+    public void close() {
+        ElasticsearchClientHolder.getSingleton().close();
+    }
+
+    /**
+     * Make sure that the index exists and that the suggest field is mapped as
+     * completion field. Errors are logged once, as indexing still works
+     * without suggestions. The check is repeated before each bulk request
+     * until it succeeded once, e.g. after the cluster became available, or
+     * until a conflicting mapping of the field was detected.
+     *
+     * @param pClient The client.
+     * @param pIndex The index.
+     */
+    private synchronized void ensureSuggestMapping(Client pClient, String pIndex) {
+        if (mappingApplied || mappingConflict) {
+            return;
+        }
+        IndicesAdminClient indices = pClient.admin().indices();
+        try {
+            if (!indices.prepareExists(pIndex).execute().actionGet().isExists()) {
+                indices.prepareCreate(pIndex).execute().actionGet();
+            }
+            XContentBuilder mapping = XContentFactory.jsonBuilder().startObject()
+                    .startObject(ElasticsearchHelper.ELASTICSEARCH_TYPE).startObject("properties")
+                    .startObject(DublinCoreJsonSerializer.SUGGEST_FIELD)
+                    .field("type", "completion")
+                    .field("analyzer", "simple")
+                    .field("search_analyzer", "simple")
+                    .endObject()
+                    .endObject().endObject()
+                    .endObject();
+            indices.preparePutMapping(pIndex).setType(ElasticsearchHelper.ELASTICSEARCH_TYPE).setSource(mapping).execute().actionGet();
+            LOGGER.info("Completion mapping of field '{}' is available.", DublinCoreJsonSerializer.SUGGEST_FIELD);
+            mappingApplied = true;
+        } catch (ElasticsearchException ex) {
+            if (ex.unwrapCause() instanceof MergeMappingException) {
+                LOGGER.error("Field '" + DublinCoreJsonSerializer.SUGGEST_FIELD + "' of index '" + pIndex + "' is mapped differently. Suggestions are disabled until the index is deleted and rebuilt.", ex);
+                mappingConflict = true;
+            } else {
+                logMappingFailure(ex);
+            }
+        } catch (IOException ex) {
+            logMappingFailure(ex);
+        }
+    }
+
+    /**
+     * Log a failure to apply the completion mapping. Only the first failure is
+     * logged as warning, subsequent failures are logged at debug level.
+     *
+     * @param pCause The cause of the failure.
+     */
+    private void logMappingFailure(Exception pCause) {
+        String message = "Failed to map field '" + DublinCoreJsonSerializer.SUGGEST_FIELD + "' as completion field. Documents are indexed without suggestions until the mapping is applied.";
+        if (!mappingFailureLogged) {
+            LOGGER.warn(message, pCause);
+            mappingFailureLogged = true;
+        } else {
+            LOGGER.debug(message, pCause);
+        }
+    }
+
+    /**
+     * Remove the suggest field from the provided document source.
+     *
+     * @param pSource The JSON source.
+     *
+     * @return The JSON source without suggest field.
+     */
+    private String removeSuggestField(String pSource) {
+        Map<String, Object> source = XContentHelper.convertToMap(pSource.getBytes(StandardCharsets.UTF_8), true).v2();
+        if (source.remove(DublinCoreJsonSerializer.SUGGEST_FIELD) == null) {
+            return pSource;
+        }
+        try {
+            return XContentFactory.jsonBuilder().map(source).string();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to serialize document source.", ex);
+        }
+    }
+}
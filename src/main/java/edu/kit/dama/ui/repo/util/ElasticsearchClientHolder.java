@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application-scoped holder of the elasticsearch transport client. The client
+ * is created lazily on first access using the default DataManagerSettings of
+ * KIT Data Manager, which are read only once. Afterwards, the same client is
+ * shared by all indexing and search operations until the application is
+ * undeployed and {@link #close()} is called.
+ *
+ * Before the client is handed out, its connection state is checked. If the
+ * client has lost all nodes, the client is closed and a new connection is
+ * established, but at most once every five seconds. In addition, the cluster
+ * health is requested periodically by a background thread. Its result is
+ * only logged and provided by {@link #getClusterStatus()}, as a cluster
+ * reports RED also if the index does not exist, yet.
+ *
+ * @author mf6319
+ */
+public final class ElasticsearchClientHolder {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ElasticsearchClientHolder.class);
+    /**
+     * Time in milliseconds between two cluster health checks.
+     */
+    private final static long HEALTH_CHECK_INTERVAL = 30000;
+    /**
+     * Timeout of a single cluster health check.
+     */
+    private final static TimeValue HEALTH_CHECK_TIMEOUT = TimeValue.timeValueSeconds(5);
+    /**
+     * Min. time in milliseconds between two connection attempts.
+     */
+    private final static long RECONNECT_INTERVAL = 5000;
+
+    private static ElasticsearchClientHolder SINGLETON = null;
+
+    private final String cluster;
+    private final String index;
+    private final String hostname;
+    private final int port;
+    private TransportClient client = null;
+    private long lastConnect = 0;
+    private boolean closed = false;
+    private ScheduledExecutorService healthCheckExecutor = null;
+    private volatile ClusterHealthStatus clusterStatus = null;
+
+    /**
+     * Hidden constructor.
+     */
+    private ElasticsearchClientHolder() {
+        cluster = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_CLUSTER_ID, "KITDataManager");
+        index = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_INDEX_ID, ElasticsearchHelper.ELASTICSEARCH_TYPE);
+        hostname = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_HOST_ID, "localhost");
+        port = DataManagerSettings.getSingleton().getIntProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_PORT_ID, 9300);
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized ElasticsearchClientHolder getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new ElasticsearchClientHolder();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Get the configured elasticsearch cluster name.
+     *
+     * @return The cluster name.
+     */
+    public String getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Get the configured elasticsearch index.
+     *
+     * @return The index.
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the shared client. If there is no client yet or if the current client
+     * is not connected to any node, a new client is created. This method does
+     * not perform any remote calls.
+     *
+     * @return The shared client.
+     *
+     * @throws IllegalStateException if the holder was already closed.
+     */
+    public synchronized Client getClient() {
+        if (closed) {
+            throw new IllegalStateException("Elasticsearch client holder was already closed.");
+        }
+        if (client != null && client.connectedNodes().isEmpty() && System.currentTimeMillis() - lastConnect >= RECONNECT_INTERVAL) {
+            LOGGER.warn("Elasticsearch client is not connected to any node of {}:{}. Reconnecting.", hostname, port);
+            closeClient();
+        }
+        if (client == null) {
+            connect();
+        }
+        return client;
+    }
+
+    /**
+     * Get the cluster health obtained by the last periodic health check.
+     *
+     * @return The cluster status or null if it could not be obtained, yet.
+     */
+    public ClusterHealthStatus getClusterStatus() {
+        return clusterStatus;
+    }
+
+    /**
+     * Request the health of the cluster using the current client. The
+     * request is performed without holding the lock of this holder, so
+     * callers of {@link #getClient()} are not blocked by a slow cluster.
+     */
+    private void checkHealth() {
+        Client current;
+        synchronized (this) {
+            if (closed || client == null) {
+                return;
+            }
+            current = client;
+        }
+        try {
+            ClusterHealthResponse health = current.admin().cluster().prepareHealth(index).setTimeout(HEALTH_CHECK_TIMEOUT).execute().actionGet(HEALTH_CHECK_TIMEOUT);
+            if (ClusterHealthStatus.RED.equals(health.getStatus()) && !ClusterHealthStatus.RED.equals(clusterStatus)) {
+                LOGGER.warn("Cluster {} is in state RED, e.g. because index '{}' does not exist or is unavailable.", health.getClusterName(), index);
+            } else {
+                LOGGER.debug("Cluster {} is in state {}.", health.getClusterName(), health.getStatus());
+            }
+            clusterStatus = health.getStatus();
+        } catch (ElasticsearchException ex) {
+            LOGGER.warn("Failed to obtain cluster health.", ex);
+            clusterStatus = null;
+        }
+    }
+
+    /**
+     * Create a new transport client for the configured cluster and start the
+     * periodic health check if it is not running, yet.
+     */
+    private void connect() {
+        LOGGER.info("Intitializing transport client for cluster {} at {}:{}.", cluster, hostname, port);
+        Settings esSettings = ImmutableSettings.settingsBuilder().put("cluster.name", cluster).build();
+        lastConnect = System.currentTimeMillis();
+        client = new TransportClient(esSettings).addTransportAddress(new InetSocketTransportAddress(hostname, port));
+        if (healthCheckExecutor == null) {
+            healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ElasticsearchHealthCheck");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            healthCheckExecutor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        checkHealth();
+                    } catch (RuntimeException ex) {
+                        LOGGER.warn("Cluster health check failed.", ex);
+                    }
+                }
+            }, 0, HEALTH_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Close the current client if there is one.
+     */
+    private void closeClient() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (ElasticsearchException ex) {
+                LOGGER.warn("Failed to close transport client.", ex);
+            }
+            client = null;
+        }
+    }
+
+    /**
+     * Close the shared client. Afterwards, the holder cannot be used anymore.
+     * This method is called as soon as the application is undeployed.
+     */
+    public synchronized void close() {
+        LOGGER.info("Closing elasticsearch transport client.");
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdownNow();
+            healthCheckExecutor = null;
+        }
+        closeClient();
+        closed = true;
+    }
+}
@@ -16,27 +16,24 @@
 package edu.kit.dama.ui.repo.util;
 
 import edu.kit.dama.mdm.base.DigitalObject;
-import edu.kit.dama.mdm.base.UserData;
-import static edu.kit.dama.mdm.content.impl.DublinCoreMetadataExtractor.ISO_8601_DATE_FORMAT;
 import edu.kit.dama.util.DataManagerSettings;
-import java.text.SimpleDateFormat;
-import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.delete.DeleteResponse;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.client.Client;
-import org.elasticsearch.client.transport.TransportClient;
-import org.elasticsearch.common.settings.ImmutableSettings;
-import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.transport.InetSocketTransportAddress;
-import org.json.JSONException;
-import org.json.XML;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Helper class which allows to add/remove a Dublin Core representation of a
- * digital object to/from an elasticsearch index configured by the default
- * DataManagerSettings of KIT Data Manager.
+ * digital object to/from the search index and to search in this index. By
+ * default, the elasticsearch index configured by the default
+ * DataManagerSettings of KIT Data Manager is used. Setting
+ * 'elasticsearch.backend' to 'lucene' switches to an embedded Lucene index
+ * (see {@link LuceneBackend}).
  *
  * @author mf6319
  */
@@ -44,6 +41,9 @@ public final class ElasticsearchHelper {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(ElasticsearchHelper.class);
     public final static String ELASTICSEARCH_TYPE = "dc";
+    public final static String BACKEND_ID = "elasticsearch.backend";
+
+    private static SearchBackend BACKEND = null;
 
     /**
      * Hidden constructor.
@@ -52,115 +52,236 @@ public final class ElasticsearchHelper {
     }
 
     /**
-     * Index the provided digital object to the elasticsearch index.
+     * Get the configured search back end. The back end is created on first
+     * access. There is no fallback to another back end, as it would serve a
+     * different index.
+     *
+     * @return The search back end.
+     *
+     * @throws IllegalStateException If the configured back end is unknown or
+     * if the embedded Lucene index cannot be opened.
+     */
+    public static synchronized SearchBackend getBackend() {
+        if (BACKEND == null) {
+            String backend = DataManagerSettings.getSingleton().getStringProperty(BACKEND_ID, "elasticsearch");
+            switch (backend) {
+                case "elasticsearch":
+                    BACKEND = new ElasticsearchBackend();
+                    break;
+                case "lucene":
+                    try {
+                        BACKEND = new LuceneBackend();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException("Failed to open embedded Lucene index configured by '" + BACKEND_ID + "'.", ex);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown search back end '" + backend + "' configured by '" + BACKEND_ID + "'.");
+            }
+            LOGGER.info("Using search back end {}.", BACKEND.getClass().getSimpleName());
+        }
+        return BACKEND;
+    }
+
+    /**
+     * Close the search back end, e.g. when the application is undeployed.
+     */
+    public static synchronized void close() {
+        if (BACKEND != null) {
+            BACKEND.close();
+            BACKEND = null;
+        }
+    }
+
+    /**
+     * Index the provided digital object to the search index. The Dublin
+     * Core representation is created immediately, whereas the actual index
+     * operation is scheduled in the {@link IndexingQueue} and is executed
+     * asynchronously as part of the next bulk request.
+     *
+     * @param pEntry The entry to index.
      */
     public static void indexEntry(DigitalObject pEntry) {
-        LOGGER.debug("Initializing elasticsearch connection.");
-        String cluster = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_CLUSTER_ID, "KITDataManager");
-        String index = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_INDEX_ID, ELASTICSEARCH_TYPE);
-        String hostname = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_HOST_ID, "localhost");
-        int port = DataManagerSettings.getSingleton().getIntProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_PORT_ID, 9300);
-
-        LOGGER.info("Intitializing transport client.");
-        Settings esSettings = ImmutableSettings.settingsBuilder().put("cluster.name", cluster).build();
         try {
-            try (Client client = new TransportClient(esSettings).addTransportAddress(new InetSocketTransportAddress(hostname, port))) {
-                LOGGER.info("Indexing digital object entry.");
-                IndexResponse response = client.prepareIndex(index,
-                        ELASTICSEARCH_TYPE,
-                        pEntry.getDigitalObjectIdentifier() + "_" + ELASTICSEARCH_TYPE)
-                        .setSource(entryToJson(pEntry))
-                        .execute()
-                        .actionGet();
-                LOGGER.info("Digital Object with identifier {} was {}. Current version: {}", response.getId(), (response.isCreated()) ? "created" : "updated", response.getVersion());
-            }
-        } catch (JSONException ex) {
+            LOGGER.debug("Scheduling indexing of digital object entry.");
+            IndexingQueue.getSingleton().index(getDocumentId(pEntry), entryToJson(pEntry));
+            SearchResultCache.getSingleton().invalidate();
+        } catch (IOException ex) {
             LOGGER.error("Failed to convert entry to JSON.", ex);
         }
     }
 
+    /**
+     * Remove the provided digital object from the search index. The
+     * delete operation is scheduled in the {@link IndexingQueue} and is
+     * executed asynchronously as part of the next bulk request.
+     *
+     * @param pEntry The entry to remove.
+     */
     public static void unindexEntry(DigitalObject pEntry) {
-        LOGGER.debug("Initializing elasticsearch connection.");
-        String cluster = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_CLUSTER_ID, "KITDataManager");
-        String index = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_INDEX_ID, ELASTICSEARCH_TYPE);
-        String hostname = DataManagerSettings.getSingleton().getStringProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_HOST_ID, "localhost");
-        int port = DataManagerSettings.getSingleton().getIntProperty(DataManagerSettings.ELASTIC_SEARCH_DEFAULT_PORT_ID, 9300);
-
-        LOGGER.debug("Intitializing transport client.");
+        LOGGER.debug("Scheduling removal of digital object entry.");
+        IndexingQueue.getSingleton().delete(getDocumentId(pEntry));
+        SearchResultCache.getSingleton().invalidate();
+    }
 
-        Settings esSettings = ImmutableSettings.settingsBuilder().put("cluster.name", cluster).build();
+    /**
+     * Send the provided operations as one bulk request to the search back
+     * end. Each key of the provided map is a document id. The associated
+     * value is the JSON source that should be indexed or null if the document
+     * should be deleted. Refreshing the index is expensive, therefore only
+     * interactive changes should be refreshed immediately, whereas batch jobs
+     * should call {@link #refresh()} once they are done. If pRefresh is TRUE,
+     * the {@link SearchResultCache} is invalidated after the changes became
+     * visible to searches.
+     *
+     * @param pOperations The operations to send.
+     * @param pRefresh TRUE to make the changes visible immediately.
+     *
+     * @return The ids of all documents whose operation failed.
+     */
+    public static Set<String> executeBulk(Map<String, String> pOperations, boolean pRefresh) {
+        if (pOperations.isEmpty()) {
+            return Collections.emptySet();
+        }
+        try {
+            return getBackend().executeBulk(pOperations, pRefresh);
+        } finally {
+            if (pRefresh) {
+                SearchResultCache.getSingleton().invalidate();
+            }
+        }
+    }
 
-        try (Client client = new TransportClient(esSettings)
-                .addTransportAddress(new InetSocketTransportAddress(hostname, port))) {
-            DeleteResponse response = client.delete(new DeleteRequest(index, ELASTICSEARCH_TYPE, pEntry.getDigitalObjectIdentifier() + "_" + ELASTICSEARCH_TYPE)).actionGet();
-            LOGGER.debug("Digital object with identifier {} was deleted.", response.getId());
+    /**
+     * Make all changes sent so far visible to searches and invalidate the
+     * {@link SearchResultCache} afterwards.
+     */
+    public static void refresh() {
+        try {
+            getBackend().refresh();
+        } finally {
+            SearchResultCache.getSingleton().invalidate();
         }
     }
 
     /**
-     * Generate a DublinCore Json representation of the provided entry. The
-     * implementation was copied from
-     * <i>edu.kit.dama.mdm.content.impl.DublinCoreMetadataExtractor</i>.
+     * Get the id of the elasticsearch document representing the provided
+     * digital object.
      *
-     * @param pEntry The entry to convert.
+     * @param pEntry The entry.
      *
-     * @return The DublinCore Json string.
+     * @return The document id.
      */
-    private static String entryToJson(DigitalObject pEntry) throws JSONException {
-        StringBuilder xmlBuilder = new StringBuilder();
-        xmlBuilder.append("<oai_dc:dc \n"
-                + "     xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\" \n"
-                + "     xmlns:dc=\"http://purl.org/dc/elements/1.1/\" \n"
-                + "     xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" \n"
-                + "     xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/oai_dc/ \n"
-                + "     http://www.openarchives.org/OAI/2.0/oai_dc.xsd\">");
-        xmlBuilder.append("<dc:title>").append(pEntry.getLabel()).append("</dc:title>");
-        UserData uploader = pEntry.getUploader();
-        if (uploader != null) {
-            xmlBuilder.append("<dc:creator>").append(uploader.getFullname()).append("</dc:creator>");
-            xmlBuilder.append("<dc:publisher>").append(uploader.getFullname()).append("</dc:publisher>");
-        }
+    public static String getDocumentId(DigitalObject pEntry) {
+        return pEntry.getDigitalObjectIdentifier() + "_" + ELASTICSEARCH_TYPE;
+    }
 
-        for (UserData experimenter : pEntry.getExperimenters()) {
-            //don't list uploader a second time here
-            if (uploader == null || !experimenter.equals(uploader)) {
-                xmlBuilder.append("<dc:contributor>").append(experimenter.getFullname()).append("</dc:contributor>");
-            }
+    /**
+     * Perform a fulltext search in the _all field of all documents indexed
+     * with the Dublin Core type. The query string syntax of elasticsearch is
+     * supported by all back ends. Only the hits from pFrom to pFrom + pSize
+     * are obtained in the order of their score, together with the total number
+     * of hits. For each hit, a {@link DigitalObjectSummary} is created from the
+     * indexed source, which allows to render the hit without database access.
+     * Results are served from the {@link SearchResultCache} if possible.
+     *
+     * @param pQuery The query string.
+     * @param pFrom The offset of the first hit to return.
+     * @param pSize The max. number of hits to return.
+     *
+     * @return The requested result page.
+     */
+    public static SearchResultPage search(String pQuery, int pFrom, int pSize) {
+        SearchResultCache cache = SearchResultCache.getSingleton();
+        SearchResultPage cached = cache.get(pQuery, pFrom, pSize);
+        if (cached != null) {
+            LOGGER.debug("Returning cached result for query '{}' (from: {}, size: {}).", pQuery, pFrom, pSize);
+            return cached;
         }
+        long generation = cache.getGeneration();
+        SearchResultPage result = getBackend().search(SearchResultCache.normalize(pQuery), pFrom, pSize);
+        cache.put(pQuery, pFrom, pSize, result, generation);
+        return result;
+    }
 
-        if (pEntry.getInvestigation() != null) {
-            xmlBuilder.append("<dc:subject>").append(pEntry.getInvestigation().getTopic()).append("</dc:subject>");
-            String description = pEntry.getInvestigation().getDescription();
-            if (description != null) {
-                xmlBuilder.append("<dc:description>").append(description).append("</dc:description>");
-            }
-            if (pEntry.getInvestigation().getStudy() != null) {
-                String legalNotes = pEntry.getInvestigation().getStudy().getLegalNote();
-                if (legalNotes != null) {
-                    xmlBuilder.append("<dc:rights>").append(legalNotes).append("</dc:rights>");
+    /**
+     * Get suggestions for titles and creators starting with the provided
+     * prefix. Suggestions are cached per prefix. If the suggestions of a
+     * shorter prefix are cached and are complete, i.e. there are less than
+     * pMaxSuggestions, the suggestions for pPrefix are obtained by filtering
+     * them without accessing the search back end. If obtaining suggestions
+     * fails, an empty list is returned.
+     *
+     * @param pPrefix The prefix typed by the user.
+     * @param pMaxSuggestions The max. number of suggestions.
+     *
+     * @return A list of suggestions.
+     */
+    public static List<String> suggest(String pPrefix, int pMaxSuggestions) {
+        String prefix = SearchResultCache.normalize(pPrefix);
+        if (prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SearchResultCache cache = SearchResultCache.getSingleton();
+        List<String> suggestions = cache.getSuggestions(prefix, pMaxSuggestions);
+        if (suggestions != null) {
+            return suggestions;
+        }
+        long generation = cache.getGeneration();
+        for (int i = prefix.length() - 1; i > 0; i--) {
+            List<String> shorter = cache.getSuggestions(prefix.substring(0, i), pMaxSuggestions);
+            if (shorter != null && shorter.size() < pMaxSuggestions) {
+                suggestions = new ArrayList<>();
+                String lowerPrefix = prefix.toLowerCase(Locale.ENGLISH);
+                for (String suggestion : shorter) {
+                    if (suggestion.toLowerCase(Locale.ENGLISH).startsWith(lowerPrefix)) {
+                        suggestions.add(suggestion);
+                    }
                 }
+                break;
             }
         }
-        if (pEntry.getStartDate() != null) {
-            xmlBuilder.append("<dc:date>").append(new SimpleDateFormat(ISO_8601_DATE_FORMAT).format(pEntry.getStartDate())).append("</dc:date>");
+        if (suggestions == null) {
+            try {
+                suggestions = getBackend().suggest(prefix, pMaxSuggestions);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Failed to obtain suggestions for prefix '" + prefix + "'.", ex);
+                return Collections.emptyList();
+            }
         }
-        //not possible in our case - use binary type 'application/octet-stream'
-        xmlBuilder.append("<dc:format>").append("application/octet-stream").append("</dc:format>");
-
-        //see http://dublincore.org/documents/2012/06/14/dcmi-terms/?v=dcmitype  
-        xmlBuilder.append("<dc:type>").append("Dataset").append("</dc:type>");
-        xmlBuilder.append("<dc:identifier>").append(pEntry.getDigitalObjectId().getStringRepresentation()).append("</dc:identifier>");
-
-        //>>>not possible, yet -> later: getDigitalObject().getPredecessor() for processing results!?
-        //xmlBuilder.append("<dc:source>").append(----).append("</dc:source>");
-        //xmlBuilder.append("<dc:relation>").append(----).append("</dc:relation>");
-        //>>>not relevant!? Otherwise refer to RFC 4646
-        //xmlBuilder.append("<dc:language>").append("").append("</dc:language>");
-        //Not relevant?!
-        //xmlBuilder.append("<dc:coverage>").append("").append("</dc:coverage>");
-        xmlBuilder.append("</oai_dc:dc>");
-
-        return XML.toJSONObject(xmlBuilder.toString()).toString();
+        cache.putSuggestions(prefix, pMaxSuggestions, suggestions, generation);
+        return suggestions;
+    }
+
+    /**
+     * Convert the id of an elasticsearch document into the identifier of the
+     * associated digital object by removing the type suffix that was appended
+     * while indexing.
+     *
+     * @param pDocumentId The document id.
+     *
+     * @return The digital object identifier.
+     */
+    static String documentIdToObjectId(String pDocumentId) {
+        String suffix = "_" + ELASTICSEARCH_TYPE;
+        if (pDocumentId.endsWith(suffix)) {
+            return pDocumentId.substring(0, pDocumentId.length() - suffix.length());
+        }
+        return pDocumentId;
+    }
+
+    /**
+     * Generate a DublinCore Json representation of the provided entry using
+     * the {@link DublinCoreJsonSerializer}.
+     *
+     * @param pEntry The entry to convert.
+     *
+     * @return The DublinCore Json string.
+     *
+     * @throws IOException if the conversion fails.
+     */
+    static String entryToJson(DigitalObject pEntry) throws IOException {
+        return DublinCoreJsonSerializer.toJson(pEntry);
     }
 
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.authorization.entities.Role;
+import edu.kit.dama.authorization.entities.SecurableResourceId;
+import edu.kit.dama.authorization.entities.UserId;
+import edu.kit.dama.authorization.entities.impl.AuthorizationContext;
+import edu.kit.dama.authorization.entities.util.PU;
+import edu.kit.dama.authorization.exceptions.EntityNotFoundException;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.authorization.services.administration.ResourceServiceLocal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper to determine the grant roles of one user for many securable
+ * resources at once. Calling
+ * {@link ResourceServiceLocal#getGrantRole(edu.kit.dama.authorization.entities.SecurableResourceId, edu.kit.dama.authorization.entities.UserId, edu.kit.dama.authorization.entities.IAuthorizationContext)}
+ * for each entry of a result page causes one query per entry, whereas this
+ * helper obtains the grants of all resources of one domain with a single
+ * query. The effective role is the least of the granted role, the role
+ * restriction of the grant set and the maximum role of the user. Resources
+ * without grant are accessible with GUEST role.
+ *
+ * @author mf6319
+ */
+public final class GrantResolver {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(GrantResolver.class);
+
+    /**
+     * Hidden constructor.
+     */
+    private GrantResolver() {
+    }
+
+    /**
+     * Get the effective grant roles of the provided user for all provided
+     * resources. If the bulk query fails, the roles are obtained one by one
+     * via ResourceServiceLocal.
+     *
+     * @param pUserId The user id.
+     * @param pResources The resources.
+     *
+     * @return The effective role for each resource mapped by the domain
+     * unique id of the resource.
+     */
+    public static Map<String, Role> getGrantRoles(UserId pUserId, Collection<SecurableResourceId> pResources) {
+        Map<String, Role> result = new LinkedHashMap<>();
+        //group resources by domain, usually there is only one
+        Map<String, List<String>> resourcesByDomain = new HashMap<>();
+        for (SecurableResourceId resource : pResources) {
+            result.put(resource.getDomainUniqueId(), Role.GUEST);
+            List<String> domainResources = resourcesByDomain.get(resource.getDomainId());
+            if (domainResources == null) {
+                domainResources = new ArrayList<>();
+                resourcesByDomain.put(resource.getDomainId(), domainResources);
+            }
+            domainResources.add(resource.getDomainUniqueId());
+        }
+        if (result.isEmpty()) {
+            return result;
+        }
+
+        EntityManager em = PU.entityManager();
+        try {
+            for (Map.Entry<String, List<String>> domain : resourcesByDomain.entrySet()) {
+                List<Object[]> grants = em.createQuery("SELECT g.grants.resource.domainUniqueId, g.grantedRole, g.grants.roleRestriction, g.grantee.maximumRole FROM Grant g "
+                        + "WHERE g.grantee.userId=?1 AND g.grants.resource.domainId=?2 AND g.grants.resource.domainUniqueId IN ?3", Object[].class)
+                        .setParameter(1, pUserId.getStringRepresentation())
+                        .setParameter(2, domain.getKey())
+                        .setParameter(3, domain.getValue())
+                        .getResultList();
+                for (Object[] grant : grants) {
+                    Role role = least(least((Role) grant[1], (Role) grant[2]), (Role) grant[3]);
+                    result.put((String) grant[0], (role != null) ? role : Role.GUEST);
+                }
+            }
+            return result;
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to obtain grant roles for user " + pUserId + " in one query. Obtaining roles one by one.", ex);
+            return getGrantRolesOneByOne(pUserId, pResources);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Fallback obtaining the grant role of each resource via
+     * ResourceServiceLocal.
+     *
+     * @param pUserId The user id.
+     * @param pResources The resources.
+     *
+     * @return The grant role for each resource mapped by the domain unique id
+     * of the resource.
+     */
+    private static Map<String, Role> getGrantRolesOneByOne(UserId pUserId, Collection<SecurableResourceId> pResources) {
+        Map<String, Role> result = new LinkedHashMap<>();
+        for (SecurableResourceId resource : pResources) {
+            Role role = Role.GUEST;
+            try {
+                role = ResourceServiceLocal.getSingleton().getGrantRole(resource, pUserId, AuthorizationContext.factorySystemContext());
+            } catch (EntityNotFoundException | UnauthorizedAccessAttemptException ex) {
+                LOGGER.debug("Failed to determine grant role of user " + pUserId + " for resource " + resource + ". Continue with GUEST permissions.", ex);
+            }
+            result.put(resource.getDomainUniqueId(), role);
+        }
+        return result;
+    }
+
+    /**
+     * Get the least of both roles. Null values are ignored.
+     *
+     * @param pFirst The first role.
+     * @param pSecond The second role.
+     *
+     * @return The least role.
+     */
+    private static Role least(Role pFirst, Role pSecond) {
+        if (pFirst == null) {
+            return pSecond;
+        }
+        if (pSecond == null) {
+            return pFirst;
+        }
+        return (pFirst.atLeast(pSecond)) ? pSecond : pFirst;
+    }
+}
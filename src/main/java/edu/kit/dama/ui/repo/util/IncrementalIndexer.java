@@ -0,0 +1,507 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.authorization.entities.impl.AuthorizationContext;
+import edu.kit.dama.authorization.entities.util.PU;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.core.IMetaDataManager;
+import edu.kit.dama.mdm.core.MetaDataManagement;
+import edu.kit.dama.util.DataManagerSettings;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background indexer keeping the Dublin Core index up to date without full
+ * rebuilds. Every 'elasticsearch.incremental.interval' milliseconds (default:
+ * 30000) the indexer checks for digital objects whose base id is larger than
+ * the persisted watermark, i.e. objects created by new ingests, and for
+ * entries in the metadataindexingtask table which were added or whose
+ * schedule, finish or error timestamp changed since the last run. The
+ * digitalobject table has no modification timestamp, therefore objects edited
+ * by other clients are only reindexed via their indexing tasks, whereas
+ * objects edited in the repository UI are indexed directly. All affected objects are sent to the search back end in bulk requests
+ * of 'elasticsearch.bulkSize' objects. The watermarks and the objects to
+ * retry are stored in the file configured by
+ * 'elasticsearch.incremental.checkpoint' (default:
+ * ${java.io.tmpdir}/BaReDemo-incremental.properties).
+ *
+ * Ids are assigned before a transaction commits, so an object or task may
+ * become visible after another one with a larger id. Therefore, the last
+ * 'elasticsearch.incremental.overlap' ids (default: 1000) below each
+ * watermark are checked again on every run and all ids in this window which
+ * were not processed before are indexed, too. After a restart the entire
+ * window is indexed once. Accordingly, tasks whose timestamp is at most five
+ * minutes older than the task timestamp watermark are checked again.
+ *
+ * The task table is read via native SQL, as the task entity is not part of
+ * the persistence unit of the repository. If it cannot be read, new objects
+ * are still indexed and the tasks are processed as soon as the table becomes
+ * readable.
+ *
+ * Watermarks are only advanced if the bulk request was sent. Objects that
+ * could not be converted or were rejected by the back end, e.g. because a
+ * bulk item failed or the embedded index could not be committed, are retried
+ * on the next runs. After ten failed attempts an object is logged as error
+ * and skipped until it is changed again or the {@link ReindexJob} is
+ * executed.
+ *
+ * If no watermark exists, e.g. on first startup, the indexer starts at the
+ * current state of the database. Existing objects have to be indexed once
+ * using the {@link ReindexJob}.
+ *
+ * @author mf6319
+ */
+public final class IncrementalIndexer {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(IncrementalIndexer.class);
+
+    public final static String ENABLED_ID = "elasticsearch.incremental.enabled";
+    public final static String INTERVAL_ID = "elasticsearch.incremental.interval";
+    public final static String CHECKPOINT_ID = "elasticsearch.incremental.checkpoint";
+    public final static String OVERLAP_ID = "elasticsearch.incremental.overlap";
+
+    private final static int MAX_RETRIES = 10;
+    private final static long TIMESTAMP_OVERLAP = 5 * 60 * 1000;
+
+    /**
+     * Most recent change of an indexing task.
+     */
+    private final static String TASK_TIMESTAMP = "GREATEST(COALESCE(t.scheduletimestamp, 0), COALESCE(t.finishtimestamp, 0), COALESCE(t.lasterrortimestamp, 0))";
+
+    private final static String OBJECT_WATERMARK_KEY = "lastBaseId";
+    private final static String TASK_WATERMARK_KEY = "lastTaskId";
+    private final static String TASK_TIMESTAMP_WATERMARK_KEY = "lastTaskTimestamp";
+    private final static String RETRY_KEY_PREFIX = "retry.";
+
+    private static IncrementalIndexer SINGLETON = null;
+
+    private final long interval;
+    private final int batchSize;
+    private final long overlap;
+    private final CheckpointFile checkpointFile;
+    private ScheduledExecutorService executor = null;
+    private long lastBaseId = -1;
+    private long lastTaskId = -1;
+    private long lastTaskTimestamp = -1;
+    private boolean initialized = false;
+    private boolean taskTableReadable = true;
+    private boolean refreshNeeded = false;
+    private final TreeSet<Long> processedBaseIds = new TreeSet<>();
+    /**
+     * Task ids and timestamps processed within the overlap windows.
+     */
+    private final Map<Long, Long> processedTasks = new HashMap<>();
+    private final Map<String, Integer> retries = new LinkedHashMap<>();
+
+    /**
+     * Hidden constructor.
+     */
+    private IncrementalIndexer() {
+        interval = Math.max(1000, DataManagerSettings.getSingleton().getIntProperty(INTERVAL_ID, 30000));
+        batchSize = Math.max(1, DataManagerSettings.getSingleton().getIntProperty(IndexingQueue.BULK_SIZE_ID, 100));
+        overlap = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(OVERLAP_ID, 1000));
+        checkpointFile = new CheckpointFile(CHECKPOINT_ID, "BaReDemo-incremental.properties");
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized IncrementalIndexer getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new IncrementalIndexer();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Check whether the incremental indexer is enabled in the
+     * DataManagerSettings (default: true).
+     *
+     * @return TRUE if the indexer should be started.
+     */
+    public static boolean isEnabled() {
+        return DataManagerSettings.getSingleton().getBooleanProperty(ENABLED_ID, true);
+    }
+
+    /**
+     * Start polling for changes.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "IncrementalIndexer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException | UnauthorizedAccessAttemptException ex) {
+                    LOGGER.error("Incremental indexing failed. Retrying in " + interval + " ms.", ex);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        LOGGER.info("Incremental indexer started with poll interval {} ms.", interval);
+    }
+
+    /**
+     * Stop polling for changes. A running poll is finished before this method
+     * returns.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(interval, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Incremental indexer did not terminate in time.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        LOGGER.info("Incremental indexer stopped.");
+    }
+
+    /**
+     * Perform one poll. At first, objects which failed in previous runs are
+     * retried. Afterwards, all objects committed late within the overlap
+     * window and all objects newer than the object watermark are indexed.
+     * Finally, all objects referenced by new or changed indexing tasks are
+     * indexed. The index is refreshed once at the end of the poll.
+     */
+    private void poll() throws UnauthorizedAccessAttemptException {
+        if (!initialized) {
+            initWatermarks();
+        }
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+        try {
+            //objects failed before
+            if (!retries.isEmpty()) {
+                List<String> identifiers = new ArrayList<>(retries.keySet());
+                Set<String> found = sendObjects(mdm, identifiers);
+                for (String identifier : identifiers) {
+                    if (!found.contains(identifier)) {
+                        //object was removed in the meantime
+                        retries.remove(identifier);
+                    }
+                }
+                writeCheckpoint();
+            }
+
+            //objects committed after objects with larger base ids
+            List<Long> missedBaseIds = new ArrayList<>();
+            for (Number baseId : mdm.findResultList("SELECT o.baseId FROM DigitalObject o WHERE o.baseId>?1 AND o.baseId<=?2", new Object[]{lastBaseId - overlap, lastBaseId}, Number.class)) {
+                if (!processedBaseIds.contains(baseId.longValue())) {
+                    missedBaseIds.add(baseId.longValue());
+                }
+            }
+            for (int i = 0; i < missedBaseIds.size(); i += batchSize) {
+                List<Long> slice = missedBaseIds.subList(i, Math.min(i + batchSize, missedBaseIds.size()));
+                sendBatch(mdm.findResultList("SELECT o FROM DigitalObject o WHERE o.baseId IN ?1", new Object[]{new ArrayList<>(slice)}, DigitalObject.class));
+                processedBaseIds.addAll(slice);
+                writeCheckpoint();
+            }
+            if (!missedBaseIds.isEmpty()) {
+                LOGGER.info("Indexed {} digital object(s) committed below the watermark {}.", missedBaseIds.size(), lastBaseId);
+            }
+
+            //newly created objects
+            List<DigitalObject> objects = mdm.findResultList("SELECT o FROM DigitalObject o WHERE o.baseId>?1 ORDER BY o.baseId ASC", new Object[]{lastBaseId}, DigitalObject.class, 0, batchSize);
+            while (!objects.isEmpty()) {
+                sendBatch(objects);
+                for (DigitalObject object : objects) {
+                    processedBaseIds.add(object.getBaseId());
+                }
+                lastBaseId = objects.get(objects.size() - 1).getBaseId();
+                writeCheckpoint();
+                objects = mdm.findResultList("SELECT o FROM DigitalObject o WHERE o.baseId>?1 ORDER BY o.baseId ASC", new Object[]{lastBaseId}, DigitalObject.class, 0, batchSize);
+            }
+            processedBaseIds.headSet(lastBaseId - overlap, true).clear();
+
+            pollTasks(mdm);
+        } finally {
+            mdm.close();
+            refresh();
+        }
+    }
+
+    /**
+     * Make the changes sent during the current poll visible to searches. The
+     * index is refreshed once per poll instead of once per batch.
+     */
+    private void refresh() {
+        if (!refreshNeeded) {
+            return;
+        }
+        try {
+            ElasticsearchHelper.refresh();
+            refreshNeeded = false;
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to refresh the index. Retrying after the next poll.", ex);
+        }
+    }
+
+    /**
+     * Index all objects referenced by indexing tasks which were added or
+     * changed since the last run, including tasks committed late within the
+     * overlap windows. If the task table cannot be read, this is logged once
+     * and the tasks are skipped until the table is readable again.
+     *
+     * @param pMdm The metadata manager used to load the objects.
+     */
+    private void pollTasks(IMetaDataManager pMdm) throws UnauthorizedAccessAttemptException {
+        List<Object[]> tasks;
+        try {
+            if (lastTaskId < 0 || lastTaskTimestamp < 0) {
+                initTaskWatermarks();
+            }
+            tasks = findTasks();
+        } catch (RuntimeException ex) {
+            if (taskTableReadable) {
+                LOGGER.warn("Failed to read indexing tasks. Only new digital objects are indexed until the task table is readable.", ex);
+                taskTableReadable = false;
+            }
+            return;
+        }
+        if (!taskTableReadable) {
+            LOGGER.info("Indexing tasks are readable again.");
+            taskTableReadable = true;
+        }
+
+        Map<Long, Long> changedTasks = new HashMap<>();
+        Set<String> identifiers = new LinkedHashSet<>();
+        long maxTaskId = lastTaskId;
+        long maxTimestamp = lastTaskTimestamp;
+        for (Object[] task : tasks) {
+            long taskId = ((Number) task[0]).longValue();
+            long timestamp = (task[2] != null) ? ((Number) task[2]).longValue() : 0;
+            Long processed = processedTasks.get(taskId);
+            if (processed == null || processed != timestamp) {
+                changedTasks.put(taskId, timestamp);
+                if (task[1] != null) {
+                    identifiers.add((String) task[1]);
+                }
+            }
+            maxTaskId = Math.max(maxTaskId, taskId);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+        if (changedTasks.isEmpty()) {
+            return;
+        }
+        sendObjects(pMdm, new ArrayList<>(identifiers));
+        processedTasks.putAll(changedTasks);
+        lastTaskId = maxTaskId;
+        lastTaskTimestamp = maxTimestamp;
+        Iterator<Map.Entry<Long, Long>> iterator = processedTasks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> task = iterator.next();
+            if (task.getKey() <= lastTaskId - overlap && task.getValue() <= lastTaskTimestamp - TIMESTAMP_OVERLAP) {
+                iterator.remove();
+            }
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Find all indexing tasks within the id or timestamp overlap window or
+     * newer than the task watermarks.
+     *
+     * @return Id, digital object identifier and timestamp of each task.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object[]> findTasks() {
+        EntityManager em = PU.entityManager();
+        try {
+            return em.createNativeQuery("SELECT t.id, t.digitalobjectid, " + TASK_TIMESTAMP + " FROM metadataindexingtask t WHERE t.id>?1 OR " + TASK_TIMESTAMP + ">?2")
+                    .setParameter(1, lastTaskId - overlap)
+                    .setParameter(2, lastTaskTimestamp - TIMESTAMP_OVERLAP)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Initialize missing task watermarks with the current max. task id and
+     * timestamp.
+     */
+    private void initTaskWatermarks() {
+        EntityManager em = PU.entityManager();
+        try {
+            Object[] max = (Object[]) em.createNativeQuery("SELECT MAX(t.id), MAX(" + TASK_TIMESTAMP + ") FROM metadataindexingtask t").getSingleResult();
+            lastTaskId = (lastTaskId < 0) ? ((max[0] == null) ? 0 : ((Number) max[0]).longValue()) : lastTaskId;
+            lastTaskTimestamp = (lastTaskTimestamp < 0) ? ((max[1] == null) ? 0 : ((Number) max[1]).longValue()) : lastTaskTimestamp;
+        } finally {
+            em.close();
+        }
+        LOGGER.info("Starting processing of indexing tasks at task id {} and timestamp {}.", lastTaskId, lastTaskTimestamp);
+        writeCheckpoint();
+    }
+
+    /**
+     * Load the objects with the provided identifiers and send them in
+     * batches of max. batchSize objects.
+     *
+     * @param pMdm The metadata manager used to load the objects.
+     * @param pIdentifiers The identifiers of the objects to send.
+     *
+     * @return The identifiers of all objects which were found.
+     */
+    private Set<String> sendObjects(IMetaDataManager pMdm, List<String> pIdentifiers) throws UnauthorizedAccessAttemptException {
+        Set<String> found = new HashSet<>();
+        for (int i = 0; i < pIdentifiers.size(); i += batchSize) {
+            List<String> slice = pIdentifiers.subList(i, Math.min(i + batchSize, pIdentifiers.size()));
+            List<DigitalObject> objects = pMdm.findResultList("SELECT o FROM DigitalObject o WHERE o.digitalObjectIdentifier IN ?1", new Object[]{new ArrayList<>(slice)}, DigitalObject.class);
+            sendBatch(objects);
+            for (DigitalObject object : objects) {
+                found.add(object.getDigitalObjectIdentifier());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Send one batch of objects as bulk request. Visible objects are indexed,
+     * invisible objects are removed from the index. Objects that could not be
+     * converted or were rejected by the back end are scheduled for retry,
+     * objects that were sent successfully are removed from the retries.
+     *
+     * @param pObjects The objects to send.
+     */
+    private void sendBatch(List<DigitalObject> pObjects) {
+        if (pObjects.isEmpty()) {
+            return;
+        }
+        Map<String, String> operations = new LinkedHashMap<>();
+        Set<String> failed = new HashSet<>();
+        for (DigitalObject object : pObjects) {
+            try {
+                operations.put(ElasticsearchHelper.getDocumentId(object), (object.isVisible()) ? ElasticsearchHelper.entryToJson(object) : null);
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to convert digital object " + object.getDigitalObjectIdentifier() + " to JSON.", ex);
+                failed.add(object.getDigitalObjectIdentifier());
+            }
+        }
+        refreshNeeded = true;
+        for (String documentId : ElasticsearchHelper.executeBulk(operations, false)) {
+            failed.add(ElasticsearchHelper.documentIdToObjectId(documentId));
+        }
+        for (DigitalObject object : pObjects) {
+            String identifier = object.getDigitalObjectIdentifier();
+            if (!failed.contains(identifier)) {
+                retries.remove(identifier);
+                continue;
+            }
+            Integer attempts = retries.get(identifier);
+            int attempt = (attempts == null) ? 1 : attempts + 1;
+            if (attempt > MAX_RETRIES) {
+                LOGGER.error("Failed to index digital object {} {} times. Skipping object.", identifier, MAX_RETRIES);
+                retries.remove(identifier);
+            } else {
+                retries.put(identifier, attempt);
+            }
+        }
+        LOGGER.debug("Incrementally indexed {} digital object(s), {} failed.", pObjects.size(), failed.size());
+    }
+
+    /**
+     * Initialize the watermarks and the retries from the checkpoint file. If
+     * there is no checkpoint, the object watermark is set to the current max.
+     * base id. The task watermarks are initialized separately by
+     * {@link #initTaskWatermarks()}.
+     */
+    private void initWatermarks() throws UnauthorizedAccessAttemptException {
+        Properties checkpoint = checkpointFile.read();
+        if (checkpoint != null) {
+            try {
+                lastBaseId = Long.parseLong(checkpoint.getProperty(OBJECT_WATERMARK_KEY, "-1"));
+                lastTaskId = Long.parseLong(checkpoint.getProperty(TASK_WATERMARK_KEY, "-1"));
+                lastTaskTimestamp = Long.parseLong(checkpoint.getProperty(TASK_TIMESTAMP_WATERMARK_KEY, "-1"));
+                for (String key : checkpoint.stringPropertyNames()) {
+                    if (key.startsWith(RETRY_KEY_PREFIX)) {
+                        retries.put(key.substring(RETRY_KEY_PREFIX.length()), Integer.parseInt(checkpoint.getProperty(key)));
+                    }
+                }
+            } catch (NumberFormatException ex) {
+                LOGGER.warn("Invalid incremental indexing checkpoint. Reinitializing watermarks.", ex);
+                lastBaseId = -1;
+                lastTaskId = -1;
+                lastTaskTimestamp = -1;
+                retries.clear();
+            }
+        }
+        if (lastBaseId < 0) {
+            IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+            mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+            try {
+                Number maxBaseId = mdm.findSingleResult("SELECT MAX(o.baseId) FROM DigitalObject o", Number.class);
+                lastBaseId = (maxBaseId == null) ? 0 : maxBaseId.longValue();
+            } finally {
+                mdm.close();
+            }
+            LOGGER.info("No object watermark found. Starting incremental indexing at base id {}.", lastBaseId);
+            writeCheckpoint();
+        }
+        initialized = true;
+    }
+
+    /**
+     * Persist the current watermarks and the objects to retry.
+     */
+    private void writeCheckpoint() {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(OBJECT_WATERMARK_KEY, Long.toString(lastBaseId));
+        checkpoint.setProperty(TASK_WATERMARK_KEY, Long.toString(lastTaskId));
+        checkpoint.setProperty(TASK_TIMESTAMP_WATERMARK_KEY, Long.toString(lastTaskTimestamp));
+        for (Map.Entry<String, Integer> retry : retries.entrySet()) {
+            checkpoint.setProperty(RETRY_KEY_PREFIX + retry.getKey(), Integer.toString(retry.getValue()));
+        }
+        checkpointFile.write(checkpoint);
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous queue collecting index and delete operations for the
+ * elasticsearch index. Operations are keyed by the document id, so multiple
+ * updates of the same digital object that arrive before the next flush are
+ * coalesced and only the latest one is sent. Pending operations are sent as
+ * bulk request either as soon as the configured bulk size is reached or after
+ * the configured flush interval has elapsed.
+ *
+ * The bulk size and the flush interval can be configured via the properties
+ * 'elasticsearch.bulkSize' (default: 100) and 'elasticsearch.flushInterval'
+ * (default: 1000 ms) of the DataManagerSettings.
+ *
+ * If a bulk request fails entirely, its operations are put back into the
+ * queue and the next flush is delayed by an exponential backoff starting at
+ * the flush interval (max. one minute). Each operation is retried at most
+ * 'elasticsearch.maxRetries' (default: 5) times before it is dropped. The
+ * queue holds at most 'elasticsearch.maxPending' (default: 10000)
+ * operations. If the queue is full, new operations wait up to five seconds
+ * for free space and are rejected afterwards. Dropped and rejected objects are
+ * indexed again by the next reindex run.
+ *
+ * Queue statistics are available via JMX as MXBean
+ * 'edu.kit.dama.ui.repo:type=IndexingQueue'.
+ *
+ * @author mf6319
+ */
+public final class IndexingQueue implements IndexingQueueMXBean {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(IndexingQueue.class);
+
+    public final static String BULK_SIZE_ID = "elasticsearch.bulkSize";
+    public final static String FLUSH_INTERVAL_ID = "elasticsearch.flushInterval";
+    public final static String MAX_PENDING_ID = "elasticsearch.maxPending";
+    public final static String MAX_RETRIES_ID = "elasticsearch.maxRetries";
+
+    private final static String OBJECT_NAME = "edu.kit.dama.ui.repo:type=IndexingQueue";
+    private final static long MAX_BACKOFF = 60000;
+    private final static long ENQUEUE_TIMEOUT = 5000;
+
+    private static IndexingQueue SINGLETON = null;
+
+    /**
+     * Pending operations. The key is the document id, the value is the JSON
+     * source to index or null if the document should be deleted.
+     */
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    /**
+     * Number of failed attempts of pending operations, guarded by pending.
+     */
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private final int bulkSize;
+    private final long flushInterval;
+    private final int maxPending;
+    private final int maxRetries;
+    private volatile int consecutiveFailures = 0;
+    private volatile long nextFlush = 0;
+    private final ScheduledExecutorService flushExecutor;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    //statistics
+    private final AtomicLong flushCount = new AtomicLong(0);
+    private final AtomicLong processedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong requeuedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong lastFlushLatency = new AtomicLong(0);
+    private final AtomicLong maxFlushLatency = new AtomicLong(0);
+    private final AtomicLong totalFlushLatency = new AtomicLong(0);
+    private volatile boolean shutdown = false;
+
+    /**
+     * Hidden constructor.
+     */
+    private IndexingQueue() {
+        bulkSize = Math.max(1, DataManagerSettings.getSingleton().getIntProperty(BULK_SIZE_ID, 100));
+        flushInterval = Math.max(100, DataManagerSettings.getSingleton().getIntProperty(FLUSH_INTERVAL_ID, 1000));
+        maxPending = Math.max(bulkSize, DataManagerSettings.getSingleton().getIntProperty(MAX_PENDING_ID, 10000));
+        maxRetries = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(MAX_RETRIES_ID, 5));
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "IndexingQueue-Flusher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        flushExecutor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            LOGGER.warn("Failed to register indexing queue statistics as MXBean " + OBJECT_NAME + ".", ex);
+        }
+        LOGGER.info("Indexing queue started with bulk size {}, flush interval {} ms and max. {} pending operation(s).", bulkSize, flushInterval, maxPending);
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized IndexingQueue getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new IndexingQueue();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Schedule the provided document for indexing. A pending operation for the
+     * same document is replaced.
+     *
+     * @param pDocumentId The document id.
+     * @param pSource The JSON source of the document.
+     */
+    public void index(String pDocumentId, String pSource) {
+        if (pSource == null) {
+            throw new IllegalArgumentException("Argument pSource must not be null.");
+        }
+        enqueue(pDocumentId, pSource);
+    }
+
+    /**
+     * Schedule the provided document for deletion. A pending operation for the
+     * same document is replaced.
+     *
+     * @param pDocumentId The document id.
+     */
+    public void delete(String pDocumentId) {
+        enqueue(pDocumentId, null);
+    }
+
+    /**
+     * Add an operation to the queue and request an immediate flush if the bulk
+     * size is reached. If the queue is full, this method waits for free space
+     * up to ENQUEUE_TIMEOUT milliseconds. Afterwards, the operation is
+     * rejected and the document remains outdated until the next reindex run.
+     *
+     * @param pDocumentId The document id.
+     * @param pSource The source or null for deletion.
+     */
+    private void enqueue(String pDocumentId, String pSource) {
+        if (shutdown) {
+            throw new IllegalStateException("Indexing queue was already shut down.");
+        }
+        int backlog;
+        synchronized (pending) {
+            long deadline = System.currentTimeMillis() + ENQUEUE_TIMEOUT;
+            while (pending.size() >= maxPending && !pending.containsKey(pDocumentId)) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    rejectedCount.incrementAndGet();
+                    LOGGER.error("Indexing queue is full. Rejecting {} of document {}.", (pSource != null) ? "indexing" : "deletion", pDocumentId);
+                    return;
+                }
+                try {
+                    pending.wait(wait);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    rejectedCount.incrementAndGet();
+                    LOGGER.error("Interrupted while waiting for free space in indexing queue. Rejecting operation of document {}.", pDocumentId);
+                    return;
+                }
+            }
+            if (pending.containsKey(pDocumentId)) {
+                coalescedCount.incrementAndGet();
+            }
+            pending.put(pDocumentId, pSource);
+            //a new operation gets its own retries
+            attempts.remove(pDocumentId);
+            backlog = pending.size();
+        }
+        LOGGER.debug("Scheduled {} of document {}. Current backlog: {}", (pSource != null) ? "indexing" : "deletion", pDocumentId, backlog);
+        if (backlog >= bulkSize && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    flushRequested.set(false);
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Send all pending operations in chunks of max. bulkSize operations. If a
+     * bulk request fails entirely, e.g. because the cluster is not reachable,
+     * the operations are put back into the queue unless a newer operation for
+     * the same document has arrived in the meantime, and further flushes are
+     * skipped until the backoff has elapsed.
+     */
+    private synchronized void flush() {
+        if (System.currentTimeMillis() < nextFlush) {
+            return;
+        }
+        while (true) {
+            Map<String, String> chunk = drain();
+            if (chunk.isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                int failed = ElasticsearchHelper.executeBulk(chunk, true).size();
+                clearAttempts(chunk);
+                processedCount.addAndGet(chunk.size() - failed);
+                failedCount.addAndGet(failed);
+                consecutiveFailures = 0;
+                nextFlush = 0;
+            } catch (RuntimeException ex) {
+                consecutiveFailures++;
+                long backoff = Math.min(MAX_BACKOFF, flushInterval << Math.min(consecutiveFailures - 1, 16));
+                nextFlush = System.currentTimeMillis() + backoff;
+                LOGGER.error("Failed to send bulk request with " + chunk.size() + " operation(s). Requeueing operations and retrying in " + backoff + " ms.", ex);
+                requeue(chunk);
+                return;
+            } finally {
+                recordLatency(System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    /**
+     * Remove up to bulkSize operations from the queue.
+     *
+     * @return The removed operations in insertion order.
+     */
+    private Map<String, String> drain() {
+        Map<String, String> chunk = new LinkedHashMap<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator();
+            while (it.hasNext() && chunk.size() < bulkSize) {
+                Map.Entry<String, String> entry = it.next();
+                chunk.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+            if (!chunk.isEmpty()) {
+                pending.notifyAll();
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Put back operations of a failed bulk request. Operations which have
+     * failed maxRetries times are dropped. Requeued operations may exceed
+     * maxPending, as they were already accepted before.
+     *
+     * @param pChunk The operations to put back.
+     */
+    private void requeue(Map<String, String> pChunk) {
+        synchronized (pending) {
+            for (Map.Entry<String, String> entry : pChunk.entrySet()) {
+                if (pending.containsKey(entry.getKey())) {
+                    //a newer operation has arrived
+                    continue;
+                }
+                Integer failures = attempts.get(entry.getKey());
+                int attempt = (failures == null) ? 1 : failures + 1;
+                if (attempt > maxRetries) {
+                    attempts.remove(entry.getKey());
+                    droppedCount.incrementAndGet();
+                    LOGGER.error("Dropping {} of document {} after {} failed attempt(s).", (entry.getValue() != null) ? "indexing" : "deletion", entry.getKey(), attempt);
+                } else {
+                    attempts.put(entry.getKey(), attempt);
+                    pending.put(entry.getKey(), entry.getValue());
+                    requeuedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the failed attempts of operations that were sent.
+     *
+     * @param pChunk The operations that were sent.
+     */
+    private void clearAttempts(Map<String, String> pChunk) {
+        synchronized (pending) {
+            for (String documentId : pChunk.keySet()) {
+                if (!pending.containsKey(documentId)) {
+                    attempts.remove(documentId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the flush latency statistics.
+     *
+     * @param pLatency The latency of the last flush in milliseconds.
+     */
+    private void recordLatency(long pLatency) {
+        flushCount.incrementAndGet();
+        lastFlushLatency.set(pLatency);
+        totalFlushLatency.addAndGet(pLatency);
+        long max = maxFlushLatency.get();
+        while (pLatency > max && !maxFlushLatency.compareAndSet(max, pLatency)) {
+            max = maxFlushLatency.get();
+        }
+    }
+
+    /**
+     * Get the number of operations waiting to be sent.
+     *
+     * @return The backlog.
+     */
+    @Override
+    public int getBacklog() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Get the number of bulk requests sent so far.
+     *
+     * @return The number of flushes.
+     */
+    @Override
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * Get the number of successfully processed operations.
+     *
+     * @return The number of processed operations.
+     */
+    @Override
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Get the number of operations rejected by elasticsearch.
+     *
+     * @return The number of failed operations.
+     */
+    @Override
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Get the number of operations that were replaced by a newer operation
+     * for the same document before they were sent.
+     *
+     * @return The number of coalesced operations.
+     */
+    @Override
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Get the latency of the last bulk request in milliseconds.
+     *
+     * @return The last flush latency.
+     */
+    @Override
+    public long getLastFlushLatency() {
+        return lastFlushLatency.get();
+    }
+
+    /**
+     * Get the max. latency of all bulk requests in milliseconds.
+     *
+     * @return The max. flush latency.
+     */
+    @Override
+    public long getMaxFlushLatency() {
+        return maxFlushLatency.get();
+    }
+
+    /**
+     * Get the average latency of all bulk requests in milliseconds.
+     *
+     * @return The average flush latency.
+     */
+    @Override
+    public double getAverageFlushLatency() {
+        long count = flushCount.get();
+        return (count == 0) ? 0 : (double) totalFlushLatency.get() / (double) count;
+    }
+
+    @Override
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    @Override
+    public long getRequeuedCount() {
+        return requeuedCount.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    @Override
+    public long getBackoff() {
+        return Math.max(0, nextFlush - System.currentTimeMillis());
+    }
+
+    /**
+     * Send all pending operations and stop the flush thread. This method is
+     * called as soon as the application is undeployed.
+     */
+    public void shutdown() {
+        LOGGER.info("Shutting down indexing queue. Sending {} pending operation(s).", getBacklog());
+        shutdown = true;
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(flushInterval * 2, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Flush thread did not terminate in time.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        //try once more regardless of the backoff
+        nextFlush = 0;
+        flush();
+        if (getBacklog() > 0) {
+            LOGGER.warn("{} operation(s) could not be sent before shutdown.", getBacklog());
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            LOGGER.debug("Failed to unregister MXBean " + OBJECT_NAME + ".", ex);
+        }
+        LOGGER.info("Indexing queue statistics: {} flushes, {} processed, {} failed, {} coalesced, {} requeued, {} dropped, {} rejected, avg. latency {} ms, max. latency {} ms.", flushCount.get(), processedCount.get(), failedCount.get(), coalescedCount.get(), requeuedCount.get(), droppedCount.get(), rejectedCount.get(), getAverageFlushLatency(), maxFlushLatency.get());
+    }
+}
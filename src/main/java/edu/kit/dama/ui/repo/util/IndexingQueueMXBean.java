@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+/**
+ * Statistics of the {@link IndexingQueue} exposed via JMX.
+ *
+ * @author mf6319
+ */
+public interface IndexingQueueMXBean {
+
+    /**
+     * Get the number of operations waiting to be sent.
+     *
+     * @return The backlog.
+     */
+    int getBacklog();
+
+    /**
+     * Get the max. number of operations waiting to be sent.
+     *
+     * @return The max. backlog.
+     */
+    int getMaxPending();
+
+    /**
+     * Get the number of bulk requests sent so far.
+     *
+     * @return The number of flushes.
+     */
+    long getFlushCount();
+
+    /**
+     * Get the number of successfully processed operations.
+     *
+     * @return The number of processed operations.
+     */
+    long getProcessedCount();
+
+    /**
+     * Get the number of operations rejected by elasticsearch.
+     *
+     * @return The number of failed operations.
+     */
+    long getFailedCount();
+
+    /**
+     * Get the number of operations that were replaced by a newer operation
+     * for the same document before they were sent.
+     *
+     * @return The number of coalesced operations.
+     */
+    long getCoalescedCount();
+
+    /**
+     * Get the number of operations put back into the queue after a failed
+     * bulk request.
+     *
+     * @return The number of requeued operations.
+     */
+    long getRequeuedCount();
+
+    /**
+     * Get the number of operations dropped after the max. number of retries.
+     *
+     * @return The number of dropped operations.
+     */
+    long getDroppedCount();
+
+    /**
+     * Get the number of operations rejected because the queue was full.
+     *
+     * @return The number of rejected operations.
+     */
+    long getRejectedCount();
+
+    /**
+     * Get the number of bulk requests that failed in a row.
+     *
+     * @return The number of consecutive failures.
+     */
+    int getConsecutiveFailures();
+
+    /**
+     * Get the remaining time until the next flush is attempted after a failed
+     * bulk request.
+     *
+     * @return The remaining backoff in milliseconds.
+     */
+    long getBackoff();
+
+    /**
+     * Get the latency of the last bulk request in milliseconds.
+     *
+     * @return The last flush latency.
+     */
+    long getLastFlushLatency();
+
+    /**
+     * Get the max. latency of all bulk requests in milliseconds.
+     *
+     * @return The max. flush latency.
+     */
+    long getMaxFlushLatency();
+
+    /**
+     * Get the average latency of all bulk requests in milliseconds.
+     *
+     * @return The average flush latency.
+     */
+    double getAverageFlushLatency();
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search back end using an embedded Lucene index, which avoids running an
+ * external elasticsearch cluster for small single-node deployments or
+ * integration tests. The index is located at 'elasticsearch.lucene.path'
+ * (default: ${java.io.tmpdir}/BaReDemo-index) and is accessed depending on
+ * 'elasticsearch.lucene.directory' using memory-mapped files ('mmap',
+ * default), the default file system implementation ('fs') or is held in
+ * memory only ('ram').
+ *
+ * Each document is stored with its JSON source. All values are indexed in the
+ * default field '_all' and in a field named like the according Dublin Core
+ * element, e.g. 'dc:title', so that the query syntax is the same as for
+ * elasticsearch query strings. Suggestions are stored lowercased in the field
+ * 'suggest' for case-insensitive prefix queries and as provided in the field
+ * 'suggest_text'.
+ *
+ * @author mf6319
+ */
+public final class LuceneBackend implements SearchBackend {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(LuceneBackend.class);
+
+    public final static String PATH_ID = "elasticsearch.lucene.path";
+    public final static String DIRECTORY_ID = "elasticsearch.lucene.directory";
+
+    private final static String ID_FIELD = "_id";
+    private final static String SOURCE_FIELD = "_source";
+    private final static String ALL_FIELD = "_all";
+    private final static String SUGGEST_TEXT_FIELD = "suggest_text";
+    /**
+     * Lucene version of the elasticsearch 1.7 release used by KIT Data
+     * Manager. It has to match the version of lucene-core in the pom.xml.
+     */
+    private final static Version LUCENE_VERSION = Version.LUCENE_4_10_4;
+
+    private final Directory directory;
+    private final Analyzer analyzer;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    /**
+     * Default constructor opening or creating the configured index.
+     *
+     * @throws IOException if the index cannot be opened.
+     */
+    public LuceneBackend() throws IOException {
+        String type = DataManagerSettings.getSingleton().getStringProperty(DIRECTORY_ID, "mmap");
+        File path = new File(DataManagerSettings.getSingleton().getStringProperty(PATH_ID, new File(System.getProperty("java.io.tmpdir"), "BaReDemo-index").getAbsolutePath()));
+        switch (type) {
+            case "ram":
+                directory = new RAMDirectory();
+                break;
+            case "fs":
+                directory = FSDirectory.open(path);
+                break;
+            default:
+                directory = new MMapDirectory(path);
+                break;
+        }
+        analyzer = new StandardAnalyzer(LUCENE_VERSION);
+        IndexWriterConfig config = new IndexWriterConfig(LUCENE_VERSION, analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, true, null);
+        LOGGER.info("Opened embedded Lucene index using directory {}.", directory);
+    }
+
+    @Override
+    public Set<String> executeBulk(Map<String, String> pOperations, boolean pRefresh) {
+        long start = System.currentTimeMillis();
+        Set<String> failed = new HashSet<>();
+        for (Map.Entry<String, String> operation : pOperations.entrySet()) {
+            try {
+                if (operation.getValue() != null) {
+                    writer.updateDocument(new Term(ID_FIELD, operation.getKey()), toDocument(operation.getKey(), operation.getValue()));
+                } else {
+                    writer.deleteDocuments(new Term(ID_FIELD, operation.getKey()));
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.warn("Failed to " + ((operation.getValue() != null) ? "index" : "delete") + " document " + operation.getKey() + ".", ex);
+                failed.add(operation.getKey());
+            }
+        }
+        try {
+            writer.commit();
+            if (pRefresh) {
+                searcherManager.maybeRefreshBlocking();
+            }
+        } catch (IOException ex) {
+            LOGGER.error("Failed to commit changes to embedded index.", ex);
+            return new HashSet<>(pOperations.keySet());
+        }
+        LOGGER.debug("Bulk request with {} operation(s) finished in {} ms. {} operation(s) failed.", pOperations.size(), System.currentTimeMillis() - start, failed.size());
+        return failed;
+    }
+
+    @Override
+    public void refresh() {
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to refresh embedded index.", ex);
+        }
+    }
+
+    @Override
+    public SearchResultPage search(String pQuery, int pFrom, int pSize) {
+        long start = System.currentTimeMillis();
+        Query query;
+        try {
+            QueryParser parser = new QueryParser(LUCENE_VERSION, ALL_FIELD, analyzer);
+            parser.setAllowLeadingWildcard(true);
+            query = parser.parse(pQuery);
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("Failed to parse query '" + pQuery + "'.", ex);
+        }
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query, Math.max(1, pFrom + pSize));
+            List<DigitalObjectSummary> summaries = new ArrayList<>();
+            for (int i = pFrom; i < topDocs.scoreDocs.length; i++) {
+                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                Document document = searcher.doc(scoreDoc.doc);
+                Map<String, Object> source = XContentHelper.convertToMap(document.getBinaryValue(SOURCE_FIELD).bytes, false).v2();
+                summaries.add(DigitalObjectSummary.fromSource(ElasticsearchHelper.documentIdToObjectId(document.get(ID_FIELD)), source));
+            }
+            LOGGER.debug("Query '{}' returned {} of {} result(s) in {} ms.", pQuery, summaries.size(), topDocs.totalHits, System.currentTimeMillis() - start);
+            return new SearchResultPage(summaries, topDocs.totalHits, pFrom);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to search embedded index.", ex);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException ex) {
+                    LOGGER.warn("Failed to release index searcher.", ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<String> suggest(String pPrefix, int pMaxSuggestions) {
+        String prefix = pPrefix.toLowerCase(Locale.ENGLISH);
+        List<String> suggestions = new ArrayList<>();
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(new PrefixQuery(new Term(DublinCoreJsonSerializer.SUGGEST_FIELD, prefix)), pMaxSuggestions);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                for (String text : searcher.doc(scoreDoc.doc).getValues(SUGGEST_TEXT_FIELD)) {
+                    if (text.toLowerCase(Locale.ENGLISH).startsWith(prefix) && !suggestions.contains(text) && suggestions.size() < pMaxSuggestions) {
+                        suggestions.add(text);
+                    }
+                }
+            }
+            return suggestions;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to obtain suggestions from embedded index.", ex);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException ex) {
+                    LOGGER.warn("Failed to release index searcher.", ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+            LOGGER.info("Embedded Lucene index closed.");
+        } catch (IOException ex) {
+            LOGGER.error("Failed to close embedded Lucene index.", ex);
+        }
+    }
+
+    /**
+     * Create the Lucene document for the provided JSON source.
+     *
+     * @param pDocumentId The document id.
+     * @param pSource The JSON source.
+     *
+     * @return The document.
+     */
+    private Document toDocument(String pDocumentId, String pSource) {
+        byte[] sourceBytes = pSource.getBytes(StandardCharsets.UTF_8);
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, pDocumentId, Field.Store.YES));
+        document.add(new StoredField(SOURCE_FIELD, sourceBytes));
+        Map<String, Object> source = XContentHelper.convertToMap(sourceBytes, false).v2();
+        Object suggest = source.remove(DublinCoreJsonSerializer.SUGGEST_FIELD);
+        if (suggest instanceof Map && ((Map<?, ?>) suggest).get("input") instanceof List) {
+            for (Object input : (List<?>) ((Map<?, ?>) suggest).get("input")) {
+                document.add(new StringField(DublinCoreJsonSerializer.SUGGEST_FIELD, input.toString().toLowerCase(Locale.ENGLISH), Field.Store.NO));
+                document.add(new StoredField(SUGGEST_TEXT_FIELD, input.toString()));
+            }
+        }
+        addFields(document, source);
+        return document;
+    }
+
+    /**
+     * Recursively add all values of the provided map as text fields. Namespace
+     * and schema declarations are skipped.
+     *
+     * @param pDocument The document.
+     * @param pValues The values.
+     */
+    private void addFields(Document pDocument, Map<?, ?> pValues) {
+        for (Map.Entry<?, ?> entry : pValues.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            if (key.startsWith("xmlns") || key.startsWith("xsi:")) {
+                continue;
+            }
+            addValue(pDocument, key, entry.getValue());
+        }
+    }
+
+    /**
+     * Add a single value, which might be a nested map or a list.
+     *
+     * @param pDocument The document.
+     * @param pKey The field name.
+     * @param pValue The value.
+     */
+    private void addValue(Document pDocument, String pKey, Object pValue) {
+        if (pValue instanceof Map) {
+            addFields(pDocument, (Map<?, ?>) pValue);
+        } else if (pValue instanceof List) {
+            for (Object value : (List<?>) pValue) {
+                addValue(pDocument, pKey, value);
+            }
+        } else if (pValue != null) {
+            String value = pValue.toString();
+            pDocument.add(new TextField(pKey, value, Field.Store.NO));
+            pDocument.add(new TextField(ALL_FIELD, value, Field.Store.NO));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application-wide executor for speculative background work of the UI
+ * sessions, e.g. loading the next result page before the user navigates to
+ * it. The executor uses 'repository.prefetch.threads' daemon threads
+ * (default: 2) and a bounded queue. As prefetching is only an optimization,
+ * tasks are rejected instead of queued if the executor is saturated.
+ * Prefetching can be disabled by setting 'repository.prefetch.enabled' to
+ * false.
+ *
+ * @author mf6319
+ */
+public final class PrefetchExecutor {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(PrefetchExecutor.class);
+
+    public final static String ENABLED_ID = "repository.prefetch.enabled";
+    public final static String THREADS_ID = "repository.prefetch.threads";
+
+    private final static int QUEUE_CAPACITY = 100;
+
+    private static PrefetchExecutor SINGLETON = null;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Prefetch task that is notified if it is dropped without being executed,
+     * e.g. on shutdown, so waiting callers can recover.
+     */
+    public interface Task extends Runnable {
+
+        /**
+         * Called instead of {@link #run()} if the task is dropped.
+         */
+        void discard();
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private PrefetchExecutor() {
+        int threads = Math.max(1, DataManagerSettings.getSingleton().getIntProperty(THREADS_ID, 2));
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PrefetchExecutor-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized PrefetchExecutor getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new PrefetchExecutor();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Check whether prefetching is enabled in the DataManagerSettings
+     * (default: true).
+     *
+     * @return TRUE if prefetching is enabled.
+     */
+    public static boolean isEnabled() {
+        return DataManagerSettings.getSingleton().getBooleanProperty(ENABLED_ID, true);
+    }
+
+    /**
+     * Submit a prefetch task.
+     *
+     * @param pTask The task.
+     *
+     * @return TRUE if the task was accepted, FALSE if the executor is
+     * saturated or shut down.
+     */
+    public boolean submit(Task pTask) {
+        try {
+            executor.execute(pTask);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            LOGGER.debug("Prefetch task rejected. Queue size: {}", executor.getQueue().size());
+            return false;
+        }
+    }
+
+    /**
+     * Shutdown the executor. Queued tasks are dropped and notified via
+     * {@link Task#discard()}, running tasks are interrupted.
+     */
+    public static synchronized void shutdown() {
+        if (SINGLETON == null) {
+            return;
+        }
+        for (Runnable dropped : SINGLETON.executor.shutdownNow()) {
+            try {
+                ((Task) dropped).discard();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Failed to discard prefetch task.", ex);
+            }
+        }
+        SINGLETON = null;
+        LOGGER.info("Prefetch executor stopped.");
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.authorization.entities.impl.AuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.core.IMetaDataManager;
+import edu.kit.dama.mdm.core.MetaDataManagement;
+import edu.kit.dama.util.DataManagerSettings;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Job rebuilding the Dublin Core index from the database. The job pages
+ * through all digital objects ordered by their base id in chunks of
+ * 'elasticsearch.reindex.chunkSize' (default: 500) objects. Each chunk is
+ * split into slices which are converted and written via bulk requests by a
+ * pool of 'elasticsearch.reindex.threads' (default: 4) workers. Visible
+ * objects are indexed, invisible objects are removed from the index.
+ *
+ * The index is refreshed once when the job finishes, pauses or fails instead
+ * of after each bulk request.
+ *
+ * After each chunk the base id of the last processed object and the base ids
+ * of all objects that could not be indexed are written to a checkpoint file
+ * ('elasticsearch.reindex.checkpoint', default:
+ * ${java.io.tmpdir}/BaReDemo-reindex.properties). A paused or interrupted job
+ * continues at this position when it is started again. Failed objects are
+ * retried once after the last chunk. Objects failing again remain in the
+ * checkpoint of the finished run.
+ *
+ * @author mf6319
+ */
+public final class ReindexJob implements Runnable {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ReindexJob.class);
+
+    public final static String CHUNK_SIZE_ID = "elasticsearch.reindex.chunkSize";
+    public final static String THREADS_ID = "elasticsearch.reindex.threads";
+    public final static String CHECKPOINT_ID = "elasticsearch.reindex.checkpoint";
+
+    private final static String LAST_BASE_ID_KEY = "lastBaseId";
+    private final static String PROCESSED_KEY = "processed";
+    private final static String FINISHED_KEY = "finished";
+    private final static String FAILED_KEY = "failedBaseIds";
+
+    /**
+     * Job states.
+     */
+    public enum State {
+
+        IDLE, RUNNING, PAUSING, PAUSED, FINISHED, FAILED
+    }
+
+    private static ReindexJob SINGLETON = null;
+
+    private final int chunkSize;
+    private final int threads;
+    private final CheckpointFile checkpointFile;
+    private volatile State state = State.IDLE;
+    private volatile long lastBaseId = 0;
+    private volatile long processed = 0;
+    private volatile long total = -1;
+    private volatile long processedInRun = 0;
+    private volatile long runStarted = 0;
+    private final TreeSet<Long> failedBaseIds = new TreeSet<>();
+    private Thread thread = null;
+    private volatile ExecutorService workers = null;
+
+    /**
+     * Hidden constructor.
+     */
+    private ReindexJob() {
+        chunkSize = Math.max(1, DataManagerSettings.getSingleton().getIntProperty(CHUNK_SIZE_ID, 500));
+        threads = Math.max(1, DataManagerSettings.getSingleton().getIntProperty(THREADS_ID, 4));
+        checkpointFile = new CheckpointFile(CHECKPOINT_ID, "BaReDemo-reindex.properties");
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized ReindexJob getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new ReindexJob();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Start the job in a new thread. If there is an unfinished checkpoint, the
+     * job continues at the checkpoint. Otherwise, a new run is started.
+     *
+     * @return TRUE if the job was started, FALSE if it is already running.
+     */
+    public synchronized boolean start() {
+        if (State.RUNNING.equals(state) || State.PAUSING.equals(state)) {
+            LOGGER.info("Reindex job is already running.");
+            return false;
+        }
+        loadCheckpoint();
+        state = State.RUNNING;
+        thread = new Thread(this, "ReindexJob");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Remove the checkpoint and start a new run from the beginning.
+     *
+     * @return TRUE if the job was started, FALSE if it is already running.
+     */
+    public synchronized boolean restart() {
+        if (State.RUNNING.equals(state) || State.PAUSING.equals(state)) {
+            LOGGER.info("Reindex job is already running.");
+            return false;
+        }
+        checkpointFile.delete();
+        return start();
+    }
+
+    /**
+     * Request the job to pause. The current chunk is finished and the
+     * checkpoint is written before the job stops.
+     */
+    public synchronized void pause() {
+        if (State.RUNNING.equals(state)) {
+            LOGGER.info("Pausing reindex job after the current chunk.");
+            state = State.PAUSING;
+        }
+    }
+
+    /**
+     * Request the job to pause and wait until the job thread has stopped and
+     * the worker pool has terminated. If the job does not stop within the
+     * provided timeout, the job thread and the workers are interrupted. In
+     * this case, the job can be resumed from the last checkpoint.
+     *
+     * @param pTimeout The max. time to wait in milliseconds.
+     *
+     * @return TRUE if the job and its workers have stopped.
+     *
+     * @throws InterruptedException If the current thread was interrupted
+     * while waiting.
+     */
+    public boolean pauseAndAwait(long pTimeout) throws InterruptedException {
+        Thread jobThread;
+        synchronized (this) {
+            pause();
+            jobThread = thread;
+        }
+        long deadline = System.currentTimeMillis() + pTimeout;
+        if (jobThread != null) {
+            jobThread.join(Math.max(1, pTimeout));
+            if (jobThread.isAlive()) {
+                LOGGER.warn("Reindex job did not pause within {} ms. Interrupting job.", pTimeout);
+                jobThread.interrupt();
+            }
+        }
+        ExecutorService pool = workers;
+        if (pool != null) {
+            pool.shutdownNow();
+            if (!pool.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Reindex workers did not terminate in time.");
+                return false;
+            }
+        }
+        if (jobThread != null) {
+            jobThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            return !jobThread.isAlive();
+        }
+        return true;
+    }
+
+    /**
+     * Check whether there is a checkpoint of a run that has not finished yet.
+     *
+     * @return TRUE if an unfinished run can be resumed.
+     */
+    public boolean hasUnfinishedRun() {
+        Properties checkpoint = checkpointFile.read();
+        return checkpoint != null && !Boolean.parseBoolean(checkpoint.getProperty(FINISHED_KEY, "false"));
+    }
+
+    @Override
+    public void run() {
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger cnt = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ReindexJob-Worker-" + cnt.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        runStarted = System.currentTimeMillis();
+        processedInRun = 0;
+        try {
+            total = countObjects();
+            LOGGER.info("Starting reindex of {} digital object(s) at base id {} using {} worker(s).", total, lastBaseId, threads);
+            List<DigitalObject> chunk = loadChunk(lastBaseId);
+            while (!chunk.isEmpty() && State.RUNNING.equals(state)) {
+                processChunk(chunk);
+                lastBaseId = chunk.get(chunk.size() - 1).getBaseId();
+                processed += chunk.size();
+                processedInRun += chunk.size();
+                writeCheckpoint(false);
+                LOGGER.info("Reindexed {}/{} digital object(s), {} failed, {} docs/sec.", processed, total, getFailed(), String.format("%.1f", getDocsPerSecond()));
+                chunk = (State.RUNNING.equals(state)) ? loadChunk(lastBaseId) : new LinkedList<DigitalObject>();
+            }
+            if (State.RUNNING.equals(state)) {
+                retryFailed();
+            }
+            synchronized (this) {
+                if (State.PAUSING.equals(state)) {
+                    state = State.PAUSED;
+                    LOGGER.info("Reindex job paused at base id {}.", lastBaseId);
+                } else {
+                    state = State.FINISHED;
+                    writeCheckpoint(true);
+                    LOGGER.info("Reindex job finished. {} digital object(s) processed, {} failed, {} docs/sec.", processed, getFailed(), String.format("%.1f", getDocsPerSecond()));
+                }
+            }
+        } catch (RuntimeException | UnauthorizedAccessAttemptException | InterruptedException | ExecutionException ex) {
+            LOGGER.error("Reindex job failed at base id " + lastBaseId + ". The job can be resumed from this position.", ex);
+            state = State.FAILED;
+        } finally {
+            workers.shutdownNow();
+            workers = null;
+            try {
+                ElasticsearchHelper.refresh();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Failed to refresh the index after reindexing.", ex);
+            }
+        }
+    }
+
+    /**
+     * Retry all objects that failed so far in chunks of chunkSize objects.
+     * Objects which were deleted in the meantime are dropped.
+     */
+    private void retryFailed() throws UnauthorizedAccessAttemptException, InterruptedException, ExecutionException {
+        List<Long> baseIds;
+        synchronized (failedBaseIds) {
+            baseIds = new ArrayList<>(failedBaseIds);
+        }
+        if (baseIds.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Retrying {} failed digital object(s).", baseIds.size());
+        for (int i = 0; i < baseIds.size() && State.RUNNING.equals(state); i += chunkSize) {
+            List<Long> slice = baseIds.subList(i, Math.min(i + chunkSize, baseIds.size()));
+            List<DigitalObject> objects = loadObjects(slice);
+            synchronized (failedBaseIds) {
+                failedBaseIds.removeAll(slice);
+            }
+            processChunk(objects);
+            writeCheckpoint(false);
+        }
+    }
+
+    /**
+     * Convert and index one chunk of objects. The chunk is split into one
+     * slice per worker, each slice is written with its own bulk request. The
+     * base ids of all objects that could not be indexed are added to the
+     * failed base ids.
+     *
+     * @param pChunk The chunk.
+     */
+    private void processChunk(List<DigitalObject> pChunk) throws InterruptedException, ExecutionException {
+        int sliceSize = (int) Math.ceil((double) pChunk.size() / (double) threads);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < pChunk.size(); i += sliceSize) {
+            final List<DigitalObject> slice = pChunk.subList(i, Math.min(i + sliceSize, pChunk.size()));
+            results.add(workers.submit(new Callable<List<Long>>() {
+
+                @Override
+                public List<Long> call() throws Exception {
+                    Map<String, String> operations = new LinkedHashMap<>();
+                    Map<String, Long> baseIds = new HashMap<>();
+                    List<Long> failedInSlice = new ArrayList<>();
+                    for (DigitalObject object : slice) {
+                        try {
+                            String documentId = ElasticsearchHelper.getDocumentId(object);
+                            operations.put(documentId, (object.isVisible()) ? ElasticsearchHelper.entryToJson(object) : null);
+                            baseIds.put(documentId, object.getBaseId());
+                        } catch (IOException ex) {
+                            LOGGER.warn("Failed to convert digital object " + object.getDigitalObjectIdentifier() + " to JSON. Skipping object.", ex);
+                            failedInSlice.add(object.getBaseId());
+                        }
+                    }
+                    for (String documentId : ElasticsearchHelper.executeBulk(operations, false)) {
+                        failedInSlice.add(baseIds.get(documentId));
+                    }
+                    return failedInSlice;
+                }
+            }));
+        }
+        for (Future<List<Long>> result : results) {
+            List<Long> failedInSlice = result.get();
+            synchronized (failedBaseIds) {
+                failedBaseIds.addAll(failedInSlice);
+            }
+        }
+    }
+
+    /**
+     * Count all digital objects.
+     *
+     * @return The number of objects.
+     */
+    private long countObjects() throws UnauthorizedAccessAttemptException {
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+        try {
+            Number count = mdm.findSingleResult("SELECT COUNT(o) FROM DigitalObject o", Number.class);
+            return (count == null) ? 0 : count.longValue();
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Load the next chunk of objects with a base id larger than the provided
+     * one.
+     *
+     * @param pLastBaseId The last base id that was processed.
+     *
+     * @return The next chunk, which is empty if all objects were processed.
+     */
+    private List<DigitalObject> loadChunk(long pLastBaseId) throws UnauthorizedAccessAttemptException {
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+        try {
+            return mdm.findResultList("SELECT o FROM DigitalObject o WHERE o.baseId>?1 ORDER BY o.baseId ASC", new Object[]{pLastBaseId}, DigitalObject.class, 0, chunkSize);
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Load the objects with the provided base ids.
+     *
+     * @param pBaseIds The base ids.
+     *
+     * @return All objects which still exist.
+     */
+    private List<DigitalObject> loadObjects(List<Long> pBaseIds) throws UnauthorizedAccessAttemptException {
+        IMetaDataManager mdm = MetaDataManagement.getMetaDataManagement().getMetaDataManager();
+        mdm.setAuthorizationContext(AuthorizationContext.factorySystemContext());
+        try {
+            return mdm.findResultList("SELECT o FROM DigitalObject o WHERE o.baseId IN ?1", new Object[]{new ArrayList<>(pBaseIds)}, DigitalObject.class);
+        } finally {
+            mdm.close();
+        }
+    }
+
+    /**
+     * Initialize the job state from the checkpoint. If there is no checkpoint
+     * or if the last run has finished, the job starts from the beginning.
+     */
+    private void loadCheckpoint() {
+        lastBaseId = 0;
+        processed = 0;
+        synchronized (failedBaseIds) {
+            failedBaseIds.clear();
+            Properties checkpoint = checkpointFile.read();
+            if (checkpoint != null && !Boolean.parseBoolean(checkpoint.getProperty(FINISHED_KEY, "false"))) {
+                try {
+                    lastBaseId = Long.parseLong(checkpoint.getProperty(LAST_BASE_ID_KEY, "0"));
+                    processed = Long.parseLong(checkpoint.getProperty(PROCESSED_KEY, "0"));
+                    for (String baseId : checkpoint.getProperty(FAILED_KEY, "").split(",")) {
+                        if (!baseId.trim().isEmpty()) {
+                            failedBaseIds.add(Long.parseLong(baseId.trim()));
+                        }
+                    }
+                    LOGGER.info("Resuming reindex job at base id {} with {} failed digital object(s).", lastBaseId, failedBaseIds.size());
+                } catch (NumberFormatException ex) {
+                    LOGGER.warn("Invalid reindex checkpoint. Starting from the beginning.", ex);
+                    lastBaseId = 0;
+                    processed = 0;
+                    failedBaseIds.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the current position to the checkpoint file.
+     *
+     * @param pFinished TRUE if the run has finished.
+     */
+    private void writeCheckpoint(boolean pFinished) {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(LAST_BASE_ID_KEY, Long.toString(lastBaseId));
+        checkpoint.setProperty(PROCESSED_KEY, Long.toString(processed));
+        checkpoint.setProperty(FINISHED_KEY, Boolean.toString(pFinished));
+        StringBuilder failed = new StringBuilder();
+        synchronized (failedBaseIds) {
+            for (Long baseId : failedBaseIds) {
+                failed.append((failed.length() > 0) ? "," : "").append(baseId);
+            }
+        }
+        checkpoint.setProperty(FAILED_KEY, failed.toString());
+        checkpointFile.write(checkpoint);
+    }
+
+    /**
+     * Get the current state.
+     *
+     * @return The state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of objects processed so far, including objects processed
+     * before the job was resumed.
+     *
+     * @return The number of processed objects.
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Get the total number of objects at the beginning of the current run.
+     *
+     * @return The total number of objects or -1 if unknown.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the number of objects that could not be indexed.
+     *
+     * @return The number of failed objects.
+     */
+    public int getFailed() {
+        synchronized (failedBaseIds) {
+            return failedBaseIds.size();
+        }
+    }
+
+    /**
+     * Get the indexing throughput of the current run.
+     *
+     * @return The throughput in documents per second.
+     */
+    public double getDocsPerSecond() {
+        long duration = System.currentTimeMillis() - runStarted;
+        return (duration <= 0) ? 0 : (double) processedInRun * 1000d / (double) duration;
+    }
+}
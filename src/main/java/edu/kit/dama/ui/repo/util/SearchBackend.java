@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search back end storing the Dublin Core documents created by the
+ * {@link DublinCoreJsonSerializer}. The back end used by the repository is
+ * selected via the setting 'elasticsearch.backend' and is accessed only
+ * through {@link ElasticsearchHelper}.
+ *
+ * @author mf6319
+ */
+public interface SearchBackend {
+
+    /**
+     * Apply the provided operations to the index. Each key of the provided
+     * map is a document id. The associated value is the JSON source that
+     * should be indexed or null if the document should be deleted. If
+     * pRefresh is TRUE, all changes must be visible to searches when this
+     * method returns, as the {@link SearchResultCache} is invalidated
+     * afterwards. Otherwise, changes may become visible later, e.g. after
+     * {@link #refresh()} was called.
+     *
+     * @param pOperations The operations to apply.
+     * @param pRefresh TRUE to make the changes visible immediately.
+     *
+     * @return The ids of all documents whose operation failed.
+     */
+    Set<String> executeBulk(Map<String, String> pOperations, boolean pRefresh);
+
+    /**
+     * Make all changes applied so far visible to searches.
+     */
+    void refresh();
+
+    /**
+     * Perform a fulltext search and return the hits from pFrom to pFrom +
+     * pSize in the order of their score.
+     *
+     * @param pQuery The query string.
+     * @param pFrom The offset of the first hit to return.
+     * @param pSize The max. number of hits to return.
+     *
+     * @return The requested result page.
+     */
+    SearchResultPage search(String pQuery, int pFrom, int pSize);
+
+    /**
+     * Get titles and creator names starting with the provided prefix. The
+     * prefix is matched case-insensitively.
+     *
+     * @param pPrefix The prefix.
+     * @param pMaxSuggestions The max. number of suggestions.
+     *
+     * @return A list of suggestions.
+     */
+    List<String> suggest(String pPrefix, int pMaxSuggestions);
+
+    /**
+     * Release all resources held by this back end.
+     */
+    void close();
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.util.DataManagerSettings;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application-wide cache for search results shared by all UI sessions. The
+ * cache is keyed by the normalized query and the requested page, holds at most
+ * 'elasticsearch.cache.maxEntries' results (default: 100) which are evicted
+ * in least-recently-used order and expire after
+ * 'elasticsearch.cache.ttl' milliseconds (default: 60000). Setting maxEntries
+ * to 0 disables the cache. As soon as the index is modified, the entire cache
+ * is invalidated. Besides result pages, search suggestions are cached per
+ * prefix.
+ *
+ * @author mf6319
+ */
+public final class SearchResultCache {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SearchResultCache.class);
+
+    public final static String MAX_ENTRIES_ID = "elasticsearch.cache.maxEntries";
+    public final static String TTL_ID = "elasticsearch.cache.ttl";
+
+    private static SearchResultCache SINGLETON = null;
+
+    private final int maxEntries;
+    private final long ttl;
+    private final Map<String, CacheEntry> entries;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong invalidations = new AtomicLong(0);
+    /**
+     * Generation counter incremented on each invalidation. Results of
+     * searches started before an invalidation are not cached.
+     */
+    private long generation = 0;
+
+    /**
+     * Cached result page or suggestion list together with its creation time.
+     */
+    private static final class CacheEntry {
+
+        private final Object result;
+        private final long created;
+
+        CacheEntry(Object pResult) {
+            result = pResult;
+            created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private SearchResultCache() {
+        maxEntries = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(MAX_ENTRIES_ID, 100));
+        ttl = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(TTL_ID, 60000));
+        entries = new LinkedHashMap<String, CacheEntry>(16, .75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized SearchResultCache getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new SearchResultCache();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Normalize the provided query by removing leading and trailing
+     * whitespaces and by collapsing multiple whitespaces. The case is kept as
+     * operators like AND/OR are case sensitive.
+     *
+     * @param pQuery The query.
+     *
+     * @return The normalized query.
+     */
+    public static String normalize(String pQuery) {
+        return (pQuery == null) ? "" : pQuery.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Build the cache key for the provided query and page.
+     *
+     * @param pQuery The query.
+     * @param pFrom The offset of the first hit.
+     * @param pSize The page size.
+     *
+     * @return The cache key.
+     */
+    private static String toKey(String pQuery, int pFrom, int pSize) {
+        return normalize(pQuery) + "#" + pFrom + "#" + pSize;
+    }
+
+    /**
+     * Build the cache key for suggestions of the provided prefix.
+     *
+     * @param pPrefix The prefix.
+     * @param pMaxSuggestions The max. number of suggestions.
+     *
+     * @return The cache key.
+     */
+    private static String toSuggestionKey(String pPrefix, int pMaxSuggestions) {
+        return "suggest#" + pMaxSuggestions + "#" + normalize(pPrefix).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Get the cached result page for the provided query.
+     *
+     * @param pQuery The query.
+     * @param pFrom The offset of the first hit.
+     * @param pSize The page size.
+     *
+     * @return The cached result or null if there is no valid cached result.
+     */
+    public SearchResultPage get(String pQuery, int pFrom, int pSize) {
+        return (SearchResultPage) getEntry(toKey(pQuery, pFrom, pSize));
+    }
+
+    /**
+     * Get the cached suggestions for the provided prefix.
+     *
+     * @param pPrefix The prefix.
+     * @param pMaxSuggestions The max. number of suggestions.
+     *
+     * @return The cached suggestions or null if there are no valid cached
+     * suggestions.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getSuggestions(String pPrefix, int pMaxSuggestions) {
+        return (List<String>) getEntry(toSuggestionKey(pPrefix, pMaxSuggestions));
+    }
+
+    /**
+     * Get the cached value for the provided key.
+     *
+     * @param pKey The key.
+     *
+     * @return The cached value or null.
+     */
+    private Object getEntry(String pKey) {
+        if (maxEntries == 0) {
+            return null;
+        }
+        synchronized (entries) {
+            CacheEntry entry = entries.get(pKey);
+            if (entry != null && System.currentTimeMillis() - entry.created > ttl) {
+                entries.remove(pKey);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.result;
+        }
+    }
+
+    /**
+     * Get the current generation. The generation has to be obtained before
+     * a search is performed and has to be provided to
+     * {@link #put(java.lang.String, int, int, edu.kit.dama.ui.repo.util.SearchResultPage, long)}
+     * afterwards.
+     *
+     * @return The current generation.
+     */
+    public long getGeneration() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Add a search result page to the cache. If the cache was invalidated
+     * since pGeneration was obtained, the result is not cached as it may be
+     * stale.
+     *
+     * @param pQuery The query.
+     * @param pFrom The offset of the first hit.
+     * @param pSize The page size.
+     * @param pResult The result page.
+     * @param pGeneration The generation obtained before the search.
+     */
+    public void put(String pQuery, int pFrom, int pSize, SearchResultPage pResult, long pGeneration) {
+        putEntry(toKey(pQuery, pFrom, pSize), pResult, pGeneration);
+    }
+
+    /**
+     * Add suggestions for the provided prefix to the cache. If the cache was
+     * invalidated since pGeneration was obtained, the suggestions are not
+     * cached.
+     *
+     * @param pPrefix The prefix.
+     * @param pMaxSuggestions The max. number of suggestions.
+     * @param pSuggestions The suggestions.
+     * @param pGeneration The generation obtained before the suggestions were
+     * requested.
+     */
+    public void putSuggestions(String pPrefix, int pMaxSuggestions, List<String> pSuggestions, long pGeneration) {
+        putEntry(toSuggestionKey(pPrefix, pMaxSuggestions), Collections.unmodifiableList(pSuggestions), pGeneration);
+    }
+
+    /**
+     * Add a value to the cache if the cache was not invalidated since
+     * pGeneration was obtained.
+     *
+     * @param pKey The key.
+     * @param pValue The value.
+     * @param pGeneration The generation.
+     */
+    private void putEntry(String pKey, Object pValue, long pGeneration) {
+        if (maxEntries == 0) {
+            return;
+        }
+        synchronized (entries) {
+            if (pGeneration == generation) {
+                entries.put(pKey, new CacheEntry(pValue));
+            }
+        }
+    }
+
+    /**
+     * Remove all cached results. This method is called whenever the index is
+     * modified.
+     */
+    public void invalidate() {
+        synchronized (entries) {
+            generation++;
+            if (!entries.isEmpty()) {
+                LOGGER.debug("Invalidating {} cached search result(s).", entries.size());
+                entries.clear();
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Get the number of cache hits.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of cache misses.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of invalidations.
+     *
+     * @return The number of invalidations.
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Get the hit rate.
+     *
+     * @return The hit rate between 0 and 1.
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return (total == 0) ? 0 : (double) hits.get() / (double) total;
+    }
+
+    /**
+     * Get the number of currently cached results.
+     *
+     * @return The number of cached results.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
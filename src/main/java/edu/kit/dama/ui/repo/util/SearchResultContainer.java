@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.AbstractContainer;
+import com.vaadin.data.util.ObjectProperty;
+import com.vaadin.data.util.PropertysetItem;
+import java.text.SimpleDateFormat;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only, lazily loaded container of search results. The item ids are the
+ * indices of the hits. Hits are obtained from the provided {@link PageLoader}
+ * in blocks of BLOCK_SIZE hits as soon as one of them is requested, e.g.
+ * because it becomes visible in a table. At most MAX_BLOCKS blocks are kept,
+ * so that memory consumption does not grow with the number of hits.
+ *
+ * @author mf6319
+ */
+public class SearchResultContainer extends AbstractContainer implements Container.Indexed {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SearchResultContainer.class);
+
+    public final static String TITLE_PROPERTY = "title";
+    public final static String CREATOR_PROPERTY = "creator";
+    public final static String DATE_PROPERTY = "date";
+    public final static String IDENTIFIER_PROPERTY = "identifier";
+
+    private final static List<String> PROPERTY_IDS = Collections.unmodifiableList(Arrays.asList(TITLE_PROPERTY, CREATOR_PROPERTY, DATE_PROPERTY, IDENTIFIER_PROPERTY));
+    private final static int BLOCK_SIZE = 50;
+    private final static int MAX_BLOCKS = 6;
+
+    /**
+     * Loader used to obtain one page of results.
+     */
+    public interface PageLoader {
+
+        /**
+         * Load the hits from pFrom to pFrom + pSize.
+         *
+         * @param pFrom The offset of the first hit.
+         * @param pSize The max. number of hits.
+         *
+         * @return The result page.
+         */
+        SearchResultPage loadPage(int pFrom, int pSize);
+    }
+
+    private final PageLoader loader;
+    private final Map<Integer, List<DigitalObjectSummary>> blocks = new LinkedHashMap<Integer, List<DigitalObjectSummary>>(16, .75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<DigitalObjectSummary>> eldest) {
+            return size() > MAX_BLOCKS;
+        }
+    };
+    private final int size;
+
+    /**
+     * Default constructor. The first block is loaded immediately in order to
+     * determine the number of hits.
+     *
+     * @param pLoader The loader used to obtain the results.
+     */
+    public SearchResultContainer(PageLoader pLoader) {
+        loader = pLoader;
+        SearchResultPage first = loader.loadPage(0, BLOCK_SIZE);
+        blocks.put(0, first.getSummaries());
+        size = (int) Math.min(Integer.MAX_VALUE, first.getTotal());
+    }
+
+    /**
+     * Get the summary of the hit with the provided index.
+     *
+     * @param pIndex The index.
+     *
+     * @return The summary or null if the index is out of range or if the hit
+     * is not available any longer.
+     */
+    public DigitalObjectSummary getSummary(Object pIndex) {
+        if (!containsId(pIndex)) {
+            return null;
+        }
+        int index = (Integer) pIndex;
+        List<DigitalObjectSummary> block = getBlock(index / BLOCK_SIZE);
+        int offset = index % BLOCK_SIZE;
+        return (offset < block.size()) ? block.get(offset) : null;
+    }
+
+    /**
+     * Get the block with the provided number. If the block is not loaded, yet,
+     * it is obtained from the loader.
+     *
+     * @param pBlock The block number.
+     *
+     * @return The block.
+     */
+    private List<DigitalObjectSummary> getBlock(int pBlock) {
+        List<DigitalObjectSummary> block = blocks.get(pBlock);
+        if (block == null) {
+            LOGGER.debug("Loading block {} of search results.", pBlock);
+            try {
+                block = loader.loadPage(pBlock * BLOCK_SIZE, BLOCK_SIZE).getSummaries();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Failed to load block " + pBlock + " of search results.", ex);
+                //don't cache the failure, loading is retried on next access
+                return Collections.emptyList();
+            }
+            blocks.put(pBlock, block);
+        }
+        return block;
+    }
+
+    @Override
+    public Item getItem(Object itemId) {
+        if (!containsId(itemId)) {
+            return null;
+        }
+        DigitalObjectSummary summary = getSummary(itemId);
+        PropertysetItem item = new PropertysetItem();
+        item.addItemProperty(TITLE_PROPERTY, new ObjectProperty<>((summary != null) ? summary.getTitle() : null, String.class, true));
+        item.addItemProperty(CREATOR_PROPERTY, new ObjectProperty<>((summary != null) ? summary.getCreator() : null, String.class, true));
+        item.addItemProperty(DATE_PROPERTY, new ObjectProperty<>((summary != null && summary.getDate() != null) ? new SimpleDateFormat().format(summary.getDate()) : null, String.class, true));
+        item.addItemProperty(IDENTIFIER_PROPERTY, new ObjectProperty<>((summary != null) ? summary.getDigitalObjectIdentifier() : null, String.class, true));
+        return item;
+    }
+
+    @Override
+    public Collection<?> getContainerPropertyIds() {
+        return PROPERTY_IDS;
+    }
+
+    @Override
+    public List<?> getItemIds() {
+        //virtual list, the indices are not materialized
+        return new AbstractList<Integer>() {
+
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public List<?> getItemIds(int startIndex, int numberOfItems) {
+        int end = Math.min(size, startIndex + numberOfItems);
+        return getItemIds().subList(Math.max(0, Math.min(startIndex, end)), end);
+    }
+
+    @Override
+    public Property getContainerProperty(Object itemId, Object propertyId) {
+        Item item = getItem(itemId);
+        return (item != null) ? item.getItemProperty(propertyId) : null;
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        return PROPERTY_IDS.contains(propertyId) ? String.class : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsId(Object itemId) {
+        return (itemId instanceof Integer) && (Integer) itemId >= 0 && (Integer) itemId < size;
+    }
+
+    @Override
+    public int indexOfId(Object itemId) {
+        return containsId(itemId) ? (Integer) itemId : -1;
+    }
+
+    @Override
+    public Object getIdByIndex(int index) {
+        return index;
+    }
+
+    @Override
+    public Object nextItemId(Object itemId) {
+        return (containsId(itemId) && (Integer) itemId + 1 < size) ? (Integer) itemId + 1 : null;
+    }
+
+    @Override
+    public Object prevItemId(Object itemId) {
+        return (containsId(itemId) && (Integer) itemId > 0) ? (Integer) itemId - 1 : null;
+    }
+
+    @Override
+    public Object firstItemId() {
+        return (size > 0) ? 0 : null;
+    }
+
+    @Override
+    public Object lastItemId() {
+        return (size > 0) ? size - 1 : null;
+    }
+
+    @Override
+    public boolean isFirstId(Object itemId) {
+        return size > 0 && Integer.valueOf(0).equals(itemId);
+    }
+
+    @Override
+    public boolean isLastId(Object itemId) {
+        return size > 0 && Integer.valueOf(size - 1).equals(itemId);
+    }
+
+    @Override
+    public Object addItemAt(int index) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public Item addItemAt(int index, Object newItemId) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public Object addItemAfter(Object previousItemId) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public Item addItemAfter(Object previousItemId, Object newItemId) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public Item addItem(Object itemId) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public Object addItem() {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public boolean removeItem(Object itemId) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type, Object defaultValue) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public boolean removeContainerProperty(Object propertyId) {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+
+    @Override
+    public boolean removeAllItems() {
+        throw new UnsupportedOperationException("SearchResultContainer is read-only.");
+    }
+}
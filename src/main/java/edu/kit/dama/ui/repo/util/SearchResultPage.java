@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.commons.types.DigitalObjectId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a search result. The page contains the summaries of the digital
+ * objects on the page in the order of their score and the total number of
+ * hits of the query, which is needed to build the page navigation.
+ *
+ * @author mf6319
+ */
+public final class SearchResultPage {
+
+    private final List<DigitalObjectSummary> summaries;
+    private final List<DigitalObjectId> ids;
+    private final long total;
+    private final int from;
+
+    /**
+     * Default constructor.
+     *
+     * @param pSummaries The summaries of all objects on this page.
+     * @param pTotal The total number of hits.
+     * @param pFrom The offset of the first hit on this page.
+     */
+    public SearchResultPage(List<DigitalObjectSummary> pSummaries, long pTotal, int pFrom) {
+        summaries = Collections.unmodifiableList(pSummaries);
+        List<DigitalObjectId> objectIds = new ArrayList<>(pSummaries.size());
+        for (DigitalObjectSummary summary : pSummaries) {
+            objectIds.add(summary.getDigitalObjectId());
+        }
+        ids = Collections.unmodifiableList(objectIds);
+        total = pTotal;
+        from = pFrom;
+    }
+
+    /**
+     * Get the summaries of all objects on this page.
+     *
+     * @return The list of summaries.
+     */
+    public List<DigitalObjectSummary> getSummaries() {
+        return summaries;
+    }
+
+    /**
+     * Get the ids of all objects on this page.
+     *
+     * @return The list of ids.
+     */
+    public List<DigitalObjectId> getIds() {
+        return ids;
+    }
+
+    /**
+     * Get the total number of hits of the query.
+     *
+     * @return The total number of hits.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the offset of the first hit on this page.
+     *
+     * @return The offset.
+     */
+    public int getFrom() {
+        return from;
+    }
+}
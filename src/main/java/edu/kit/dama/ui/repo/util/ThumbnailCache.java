@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.authorization.entities.IAuthorizationContext;
+import edu.kit.dama.authorization.exceptions.UnauthorizedAccessAttemptException;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.util.DataManagerSettings;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application-wide cache of the preview thumbnails created by
+ * {@link edu.kit.dama.ui.repo.staging.ThumbnailCreator}. In contrast to the
+ * {@link DataZipInfoCache}, the content of the thumbnail is cached, as
+ * thumbnails are small and are shown for each rendered entry. The cache holds
+ * at most 'repository.thumbnail.cache.maxEntries' entries (default: 1000),
+ * which are evicted in least-recently-used order. Objects without thumbnail
+ * are cached for 'repository.thumbnail.cache.ttl' milliseconds (default:
+ * 600000). Most misses are caused by objects without suitable files, which
+ * never get a thumbnail, so misses are kept longer than by the
+ * {@link DataZipInfoCache}. The thumbnail of an object whose ingest is still
+ * running may therefore appear with a delay of up to ttl milliseconds.
+ * Thumbnails larger than MAX_THUMBNAIL_SIZE bytes are ignored. As for the
+ * {@link DataZipInfoCache}, access to the object itself has to be checked by
+ * the caller.
+ *
+ * @author mf6319
+ */
+public final class ThumbnailCache {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    public final static String MAX_ENTRIES_ID = "repository.thumbnail.cache.maxEntries";
+    public final static String TTL_ID = "repository.thumbnail.cache.ttl";
+
+    /**
+     * Max. size of a thumbnail file in bytes.
+     */
+    private final static long MAX_THUMBNAIL_SIZE = 256 * 1024;
+
+    private static ThumbnailCache SINGLETON = null;
+
+    private final int maxEntries;
+    private final long ttl;
+    private final Map<String, CacheEntry> entries;
+
+    /**
+     * Cached thumbnail together with its creation time. The content is null if
+     * the object has no thumbnail.
+     */
+    private static final class CacheEntry {
+
+        private final byte[] content;
+        private final long created;
+
+        CacheEntry(byte[] pContent) {
+            content = pContent;
+            created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private ThumbnailCache() {
+        maxEntries = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(MAX_ENTRIES_ID, 1000));
+        ttl = Math.max(0, DataManagerSettings.getSingleton().getIntProperty(TTL_ID, 600000));
+        entries = new LinkedHashMap<String, CacheEntry>(16, .75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized ThumbnailCache getSingleton() {
+        if (SINGLETON == null) {
+            SINGLETON = new ThumbnailCache();
+        }
+        return SINGLETON;
+    }
+
+    /**
+     * Get the thumbnail of the provided object. If the thumbnail is not
+     * cached, it is obtained via
+     * {@link DigitalObjectPersistenceHelper#getThumbnailInfo(edu.kit.dama.mdm.base.DigitalObject, edu.kit.dama.authorization.entities.IAuthorizationContext)}
+     * and is read from the archive.
+     *
+     * @param pObject The object.
+     * @param pContext The context used to access the data organization.
+     *
+     * @return The PNG encoded thumbnail or null if no thumbnail is available.
+     * The returned array must not be modified.
+     *
+     * @throws UnauthorizedAccessAttemptException If pContext is not authorized
+     * to access the data.
+     */
+    public byte[] getThumbnail(DigitalObject pObject, IAuthorizationContext pContext) throws UnauthorizedAccessAttemptException {
+        String key = pObject.getDigitalObjectIdentifier();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && (entry.content != null || System.currentTimeMillis() - entry.created <= ttl)) {
+                return entry.content;
+            }
+        }
+        byte[] content = readThumbnail(DigitalObjectPersistenceHelper.getThumbnailInfo(pObject, pContext));
+        if (maxEntries > 0) {
+            synchronized (entries) {
+                entries.put(key, new CacheEntry(content));
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Read the thumbnail described by the provided info.
+     *
+     * @param pInfo The thumbnail info.
+     *
+     * @return The thumbnail content or null if the thumbnail cannot be read.
+     */
+    private byte[] readThumbnail(DataZipInfo pInfo) {
+        if (pInfo == null) {
+            return null;
+        }
+        try {
+            File file = pInfo.getFile();
+            if (!file.isFile() || file.length() > MAX_THUMBNAIL_SIZE) {
+                LOGGER.warn("Thumbnail {} does not exist or is too large.", file);
+                return null;
+            }
+            return Files.readAllBytes(file.toPath());
+        } catch (MalformedURLException | URISyntaxException | IllegalArgumentException | IOException ex) {
+            LOGGER.error("Failed to read thumbnail from URL " + pInfo.getUrl() + ".", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Remove the cached thumbnail of the object with the provided identifier,
+     * e.g. if the thumbnail has been changed.
+     *
+     * @param pIdentifier The digital object identifier.
+     */
+    public void invalidate(String pIdentifier) {
+        synchronized (entries) {
+            entries.remove(pIdentifier);
+        }
+    }
+}
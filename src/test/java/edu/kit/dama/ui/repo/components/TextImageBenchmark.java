@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.components;
+
+import static org.junit.Assert.assertTrue;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throughput comparison of rendering a {@link TextImage} as PNG and creating
+ * it as SVG document. The benchmark is skipped by default and is executed via
+ *
+ * mvn test -Dtest=TextImageBenchmark -Dbenchmark=true
+ *
+ * Both formats are warmed up before the images per second of each format are
+ * logged. The PNG image is rendered directly in order to bypass the
+ * {@link TextImageCache}.
+ *
+ * @author mf6319
+ */
+public class TextImageBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextImageBenchmark.class);
+
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int ITERATIONS = 10000;
+
+    /**
+     * Image creation to benchmark.
+     */
+    private interface Creation {
+
+        byte[] create(TextImage pImage) throws Exception;
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        TextImage image = TextImage.from("Repository").withSize(TextImageCache.ENTRY_IMAGE_SIZE);
+        Creation png = new Creation() {
+
+            @Override
+            public byte[] create(TextImage pImage) throws Exception {
+                return pImage.render();
+            }
+        };
+        Creation svg = new Creation() {
+
+            @Override
+            public byte[] create(TextImage pImage) throws Exception {
+                return pImage.getBytes(TextImage.Format.SVG);
+            }
+        };
+        run(png, image, WARMUP_ITERATIONS);
+        run(svg, image, WARMUP_ITERATIONS);
+        double pngRate = measure("PNG", png, image);
+        double svgRate = measure("SVG", svg, image);
+        LOGGER.info(String.format("Speedup: %.2fx", svgRate / pngRate));
+        assertTrue(svgRate > 0);
+    }
+
+    /**
+     * Measure the throughput of the provided image creation.
+     *
+     * @param pName The name logged with the result.
+     * @param pCreation The image creation.
+     * @param pImage The image to create.
+     *
+     * @return The images per second.
+     */
+    private double measure(String pName, Creation pCreation, TextImage pImage) throws Exception {
+        long start = System.nanoTime();
+        long length = run(pCreation, pImage, ITERATIONS);
+        double rate = ITERATIONS / ((System.nanoTime() - start) / 1e9);
+        LOGGER.info(String.format("%-4s %10.0f images/s (%d bytes)", pName, rate, length / ITERATIONS));
+        return rate;
+    }
+
+    /**
+     * Create the provided image pIterations times.
+     *
+     * @param pCreation The image creation.
+     * @param pImage The image to create.
+     * @param pIterations The number of creations.
+     *
+     * @return The total size of all images, which prevents the creations from
+     * being optimized away.
+     */
+    private long run(Creation pCreation, TextImage pImage, int pIterations) throws Exception {
+        long length = 0;
+        for (int i = 0; i < pIterations; i++) {
+            length += pCreation.create(pImage).length;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.components;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Tests for the SVG output of {@link TextImage}.
+ *
+ * @author mf6319
+ */
+public class TextImageTest {
+
+    @Test
+    public void testSvgIsWellFormed() throws Exception {
+        Document doc = parse(TextImage.from("Repository").withSize(40));
+        Element root = doc.getDocumentElement();
+        assertEquals("svg", root.getLocalName());
+        assertEquals("http://www.w3.org/2000/svg", root.getNamespaceURI());
+        assertEquals("40", root.getAttribute("width"));
+        assertEquals("40", root.getAttribute("height"));
+        assertEquals("R", getText(doc));
+    }
+
+    @Test
+    public void testSvgEscapesLetter() throws Exception {
+        TextImage image = TextImage.from("<script>");
+        assertTrue(image.getSvg().contains(">&lt;</text>"));
+        assertEquals("<", getText(parse(image)));
+
+        image = TextImage.from("&amp;");
+        assertTrue(image.getSvg().contains(">&amp;</text>"));
+        assertEquals("&", getText(parse(image)));
+
+        image = TextImage.from("\"quoted\"");
+        assertEquals("\"", getText(parse(image)));
+    }
+
+    @Test
+    public void testSvgColor() throws Exception {
+        Document doc = parse(TextImage.from("a").withColor(0xe57373));
+        Element rect = (Element) doc.getElementsByTagNameNS("http://www.w3.org/2000/svg", "rect").item(0);
+        assertEquals("#e57373", rect.getAttribute("fill"));
+    }
+
+    @Test
+    public void testSvgBytesAreUtf8() throws Exception {
+        TextImage image = TextImage.from("über");
+        byte[] bytes = image.getBytes(TextImage.Format.SVG);
+        assertEquals(image.getSvg(), new String(bytes, StandardCharsets.UTF_8));
+        assertEquals("Ü", getText(parse(image)));
+    }
+
+    /**
+     * Parse the SVG document of the provided image. Parsing fails if the
+     * document is not well-formed.
+     *
+     * @param pImage The image.
+     *
+     * @return The parsed document.
+     */
+    private static Document parse(TextImage pImage) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(pImage.getBytes(TextImage.Format.SVG)));
+    }
+
+    /**
+     * Get the content of the text element of the provided SVG document.
+     *
+     * @param pDocument The document.
+     *
+     * @return The text content.
+     */
+    private static String getText(Document pDocument) {
+        return pDocument.getElementsByTagNameNS("http://www.w3.org/2000/svg", "text").item(0).getTextContent();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.staging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assume;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of the {@link ParallelZipWriter}. The archives are read back using
+ * {@link ZipFile} and checksum and content of each entry are compared with
+ * the source files.
+ *
+ * @author mf6319
+ */
+public class ParallelZipWriterTest {
+
+    private File folder;
+    private File source;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("ParallelZipWriterTest").toFile();
+        source = new File(folder, "data");
+        assertTrue(source.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testFileSpanningMultipleChunks() throws IOException {
+        //half random, half compressible data, 2.5 chunks
+        byte[] data = new byte[(int) (2.5 * 1024 * 1024)];
+        new Random(42).nextBytes(data);
+        Arrays.fill(data, data.length / 2, data.length, (byte) 'a');
+        File file = writeFile("large.bin", data);
+
+        ZipFile zip = zip(4);
+        try {
+            assertEquals(1, zip.size());
+            assertEntry(zip, "large.bin", file);
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        File file = writeFile("empty.txt", new byte[0]);
+
+        ZipFile zip = zip(4);
+        try {
+            assertEquals(1, zip.size());
+            assertEntry(zip, "empty.txt", file);
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testEmptyDirectory() throws IOException {
+        assertTrue(new File(source, "sub/empty").mkdirs());
+        File file = writeFile("sub/file.txt", "content".getBytes(StandardCharsets.UTF_8));
+
+        ZipFile zip = zip(4);
+        try {
+            assertEquals(2, zip.size());
+            ZipEntry directory = zip.getEntry("sub/empty/");
+            assertNotNull(directory);
+            assertTrue(directory.isDirectory());
+            assertEquals(0, directory.getSize());
+            assertEntry(zip, "sub/file.txt", file);
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testUtf8Names() throws IOException {
+        File file = writeFile("Größe/Übersicht äöü €.txt", "UTF-8".getBytes(StandardCharsets.UTF_8));
+        //file names are mapped to '?' if the platform encoding cannot represent them
+        Assume.assumeTrue("Platform does not support UTF-8 file names.", Arrays.asList(source.list()).contains("Größe"));
+
+        ZipFile zip = zip(4);
+        try {
+            assertEquals(1, zip.size());
+            assertEntry(zip, "Größe/Übersicht äöü €.txt", file);
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testOutputIndependentOfThreads() throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(data);
+        writeFile("a/random.bin", data);
+        writeFile("b/text.txt", new String(new char[100000]).replace('\0', 'x').getBytes(StandardCharsets.UTF_8));
+        writeFile("c/empty.txt", new byte[0]);
+        File target1 = new File(folder, "single.zip");
+        File targetN = new File(folder, "multi.zip");
+
+        new ParallelZipWriter(1).zip(source, target1);
+        new ParallelZipWriter(8).zip(source, targetN);
+
+        assertArrayEquals(FileUtils.readFileToByteArray(target1), FileUtils.readFileToByteArray(targetN));
+    }
+
+    /**
+     * Write a file with the provided content to the source folder.
+     *
+     * @param pName The relative path of the file.
+     * @param pData The content.
+     *
+     * @return The file.
+     */
+    private File writeFile(String pName, byte[] pData) throws IOException {
+        File file = new File(source, pName);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(pData);
+        }
+        return file;
+    }
+
+    /**
+     * Zip the source folder using the provided number of threads.
+     *
+     * @param pThreads The number of threads.
+     *
+     * @return The archive opened for reading.
+     */
+    private ZipFile zip(int pThreads) throws IOException {
+        File target = new File(folder, "out.zip");
+        long bytes = new ParallelZipWriter(pThreads).zip(source, target);
+        ZipFile zip = new ZipFile(target, StandardCharsets.UTF_8);
+        long size = 0;
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            size += entries.nextElement().getSize();
+        }
+        assertEquals(bytes, size);
+        return zip;
+    }
+
+    /**
+     * Check name, size, checksum and content of an archive entry.
+     *
+     * @param pZip The archive.
+     * @param pName The entry name.
+     * @param pFile The source file.
+     */
+    private void assertEntry(ZipFile pZip, String pName, File pFile) throws IOException {
+        ZipEntry entry = pZip.getEntry(pName);
+        assertNotNull("Entry " + pName + " not found.", entry);
+        byte[] expected = FileUtils.readFileToByteArray(pFile);
+        CRC32 crc = new CRC32();
+        crc.update(expected);
+        assertEquals(expected.length, entry.getSize());
+        assertEquals(crc.getValue(), entry.getCrc());
+        try (InputStream in = pZip.getInputStream(entry)) {
+            //ZipFile verifies the checksum of the inflated data at the end of the stream
+            assertArrayEquals(expected, IOUtils.toByteArray(in));
+        }
+    }
+}
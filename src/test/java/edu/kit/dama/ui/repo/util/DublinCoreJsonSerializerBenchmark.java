@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import java.util.Date;
+import static org.junit.Assert.assertTrue;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throughput comparison of the {@link DublinCoreJsonSerializer} and the
+ * former conversion via OAI-DC XML and <i>org.json</i> implemented by
+ * {@link LegacyDublinCoreConverter}. The benchmark is skipped by default and
+ * is executed via
+ *
+ * mvn test -Dtest=DublinCoreJsonSerializerBenchmark -Dbenchmark=true
+ *
+ * Both conversions are warmed up before the documents per second of each
+ * conversion are logged.
+ *
+ * @author mf6319
+ */
+public class DublinCoreJsonSerializerBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DublinCoreJsonSerializerBenchmark.class);
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 200000;
+
+    /**
+     * Conversion to benchmark.
+     */
+    private interface Conversion {
+
+        String convert(DigitalObject pObject) throws Exception;
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        DigitalObject object = DublinCoreJsonSerializerTest.createFullObject();
+        object.setStartDate(new Date());
+        Conversion legacy = new Conversion() {
+
+            @Override
+            public String convert(DigitalObject pObject) throws Exception {
+                return LegacyDublinCoreConverter.toJson(pObject);
+            }
+        };
+        Conversion serializer = new Conversion() {
+
+            @Override
+            public String convert(DigitalObject pObject) throws Exception {
+                return DublinCoreJsonSerializer.toJson(pObject);
+            }
+        };
+        run(legacy, object, WARMUP_ITERATIONS);
+        run(serializer, object, WARMUP_ITERATIONS);
+        double legacyRate = measure("XML + org.json", legacy, object);
+        double serializerRate = measure("DublinCoreJsonSerializer", serializer, object);
+        LOGGER.info(String.format("Speedup: %.2fx", serializerRate / legacyRate));
+        assertTrue(serializerRate > 0);
+    }
+
+    /**
+     * Measure the throughput of the provided conversion.
+     *
+     * @param pName The name logged with the result.
+     * @param pConversion The conversion.
+     * @param pObject The object to convert.
+     *
+     * @return The documents per second.
+     */
+    private double measure(String pName, Conversion pConversion, DigitalObject pObject) throws Exception {
+        long start = System.nanoTime();
+        long length = run(pConversion, pObject, ITERATIONS);
+        double rate = ITERATIONS / ((System.nanoTime() - start) / 1e9);
+        LOGGER.info(String.format("%-26s %10.0f documents/s (%d characters)", pName, rate, length));
+        return rate;
+    }
+
+    /**
+     * Convert the provided object pIterations times.
+     *
+     * @param pConversion The conversion.
+     * @param pObject The object to convert.
+     * @param pIterations The number of conversions.
+     *
+     * @return The total length of all documents, which prevents the
+     * conversions from being optimized away.
+     */
+    private long run(Conversion pConversion, DigitalObject pObject, int pIterations) throws Exception {
+        long length = 0;
+        for (int i = 0; i < pIterations; i++) {
+            length += pConversion.convert(pObject).length();
+        }
+        return length;
+    }
+}
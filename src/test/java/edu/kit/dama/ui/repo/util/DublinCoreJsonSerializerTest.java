@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.commons.types.DigitalObjectId;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.Investigation;
+import edu.kit.dama.mdm.base.Study;
+import edu.kit.dama.mdm.base.UserData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.IOUtils;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Equivalence test of the {@link DublinCoreJsonSerializer} and the former
+ * conversion via OAI-DC XML and <i>org.json</i>. The output of the former
+ * conversion is pinned in the golden files located in
+ * src/test/resources/dublincore. Documents are compared as parsed maps, as
+ * org.json did not preserve the order of keys, and arrays are compared
+ * regardless of their order, as the experimenters of an object are a set.
+ *
+ * The only intended difference is covered by dc-numeric.json: org.json
+ * converted texts looking like numbers or booleans into JSON numbers or
+ * booleans, whereas the serializer always writes strings.
+ *
+ * @author mf6319
+ */
+public class DublinCoreJsonSerializerTest {
+
+    @Test
+    public void testFullObjectMatchesGoldenFile() throws IOException {
+        assertEquals(normalize(getDublinCore(readGoldenFile("dc-full.json"))), normalize(getDublinCore(DublinCoreJsonSerializer.toJson(createFullObject()))));
+    }
+
+    @Test
+    public void testMinimalObjectMatchesGoldenFile() throws IOException {
+        assertEquals(normalize(getDublinCore(readGoldenFile("dc-minimal.json"))), normalize(getDublinCore(DublinCoreJsonSerializer.toJson(createMinimalObject()))));
+    }
+
+    @Test
+    public void testNumericValuesAreWrittenAsStrings() throws IOException {
+        Map<String, Object> legacy = getDublinCore(readGoldenFile("dc-numeric.json"));
+        Map<String, Object> current = getDublinCore(DublinCoreJsonSerializer.toJson(createNumericObject()));
+        //org.json converted these values, which may have caused numeric or boolean dynamic mappings
+        assertEquals(2015, ((Number) legacy.get("dc:title")).intValue());
+        assertEquals(Boolean.TRUE, legacy.get("dc:subject"));
+        assertEquals(3.5, ((Number) legacy.get("dc:description")).doubleValue(), 0.0);
+        //the serializer keeps the original text
+        assertEquals("2015", current.get("dc:title"));
+        assertEquals("true", current.get("dc:subject"));
+        assertEquals("3.5", current.get("dc:description"));
+        //apart from the value types, the documents are equal
+        assertEquals(toStrings(normalize(legacy)), toStrings(normalize(current)));
+    }
+
+    @Test
+    public void testLegacyConversionMatchesGoldenFiles() throws IOException {
+        assertEquals(normalize(getDublinCore(readGoldenFile("dc-full.json"))), normalize(getDublinCore(LegacyDublinCoreConverter.toJson(createFullObject()))));
+        assertEquals(normalize(getDublinCore(readGoldenFile("dc-minimal.json"))), normalize(getDublinCore(LegacyDublinCoreConverter.toJson(createMinimalObject()))));
+        assertEquals(normalize(getDublinCore(readGoldenFile("dc-numeric.json"))), normalize(getDublinCore(LegacyDublinCoreConverter.toJson(createNumericObject()))));
+    }
+
+    @Test
+    public void testDateIsFormattedLikeLegacyConversion() throws IOException {
+        //the date depends on the default time zone, so it is compared with the legacy conversion instead of a golden file
+        DigitalObject object = createFullObject();
+        object.setStartDate(new Date(1425211200000L));
+        Object legacyDate = getDublinCore(LegacyDublinCoreConverter.toJson(object)).get("dc:date");
+        assertNotNull(legacyDate);
+        assertEquals(legacyDate, getDublinCore(DublinCoreJsonSerializer.toJson(object)).get("dc:date"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSuggestInputContainsTitleAndCreator() throws IOException {
+        Map<String, Object> document = parse(DublinCoreJsonSerializer.toJson(createFullObject()));
+        Map<String, Object> suggest = (Map<String, Object>) document.get(DublinCoreJsonSerializer.SUGGEST_FIELD);
+        assertNotNull(suggest);
+        assertEquals(Arrays.asList("Tomography of sample 7", "John Doe"), suggest.get("input"));
+        assertTrue(parse(DublinCoreJsonSerializer.toJson(createNumericObject())).containsKey(DublinCoreJsonSerializer.SUGGEST_FIELD));
+    }
+
+    /**
+     * Create an object with all Dublin Core elements except of the date and
+     * with multiple contributors.
+     *
+     * @return The object.
+     */
+    static DigitalObject createFullObject() {
+        DigitalObject object = createObject("a1b2c3d4-full", "  Tomography of sample 7 \n");
+        UserData uploader = createUser("jdoe", "John", "Doe");
+        object.setUploader(uploader);
+        object.addExperimenter(uploader);
+        object.addExperimenter(createUser("jroe", "Jane", "Roe"));
+        object.addExperimenter(createUser("mmustermann", "Max", "Mustermann"));
+        Study study = new Study();
+        study.setLegalNote("CC-BY 4.0");
+        Investigation investigation = new Investigation();
+        investigation.setTopic("Materials research");
+        investigation.setDescription("Scans of the second measurement campaign.");
+        investigation.setStudy(study);
+        object.setInvestigation(investigation);
+        return object;
+    }
+
+    /**
+     * Create an object without title, uploader and investigation and with a
+     * single contributor.
+     *
+     * @return The object.
+     */
+    static DigitalObject createMinimalObject() {
+        DigitalObject object = createObject("a1b2c3d4-minimal", null);
+        object.addExperimenter(createUser("jroe", "Jane", "Roe"));
+        return object;
+    }
+
+    /**
+     * Create an object whose title, subject and description look like a
+     * number, a boolean and a decimal number.
+     *
+     * @return The object.
+     */
+    static DigitalObject createNumericObject() {
+        DigitalObject object = createObject("a1b2c3d4-numeric", "2015");
+        Investigation investigation = new Investigation();
+        investigation.setTopic("true");
+        investigation.setDescription("3.5");
+        object.setInvestigation(investigation);
+        return object;
+    }
+
+    /**
+     * Create an object with the provided identifier and label.
+     *
+     * @param pIdentifier The identifier.
+     * @param pLabel The label.
+     *
+     * @return The object.
+     */
+    private static DigitalObject createObject(String pIdentifier, String pLabel) {
+        DigitalObject object = new DigitalObject();
+        object.setDigitalObjectId(new DigitalObjectId(pIdentifier));
+        object.setLabel(pLabel);
+        return object;
+    }
+
+    /**
+     * Create a user.
+     *
+     * @param pId The distinguished name.
+     * @param pFirstName The first name.
+     * @param pLastName The last name.
+     *
+     * @return The user.
+     */
+    private static UserData createUser(String pId, String pFirstName, String pLastName) {
+        UserData user = new UserData();
+        user.setDistinguishedName(pId);
+        user.setFirstName(pFirstName);
+        user.setLastName(pLastName);
+        return user;
+    }
+
+    /**
+     * Read the golden file with the provided name.
+     *
+     * @param pName The file name.
+     *
+     * @return The file content.
+     */
+    private static String readGoldenFile(String pName) throws IOException {
+        try (InputStream in = DublinCoreJsonSerializerTest.class.getResourceAsStream("/dublincore/" + pName)) {
+            assertNotNull("Golden file " + pName + " not found.", in);
+            return IOUtils.toString(in, StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * Parse the provided JSON document.
+     *
+     * @param pJson The document.
+     *
+     * @return The parsed document.
+     */
+    private static Map<String, Object> parse(String pJson) {
+        return XContentHelper.convertToMap(pJson.getBytes(StandardCharsets.UTF_8), false).v2();
+    }
+
+    /**
+     * Parse the provided JSON document and return the Dublin Core element.
+     *
+     * @param pJson The document.
+     *
+     * @return The Dublin Core element.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getDublinCore(String pJson) {
+        Map<String, Object> dc = (Map<String, Object>) parse(pJson).get(DublinCoreJsonSerializer.ROOT_ELEMENT);
+        assertNotNull(dc);
+        return dc;
+    }
+
+    /**
+     * Sort all keys and all arrays of the provided value.
+     *
+     * @param pValue The value.
+     *
+     * @return The normalized value.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object normalize(Object pValue) {
+        if (pValue instanceof Map) {
+            Map<String, Object> result = new TreeMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) pValue).entrySet()) {
+                result.put(entry.getKey(), normalize(entry.getValue()));
+            }
+            return result;
+        }
+        if (pValue instanceof List) {
+            List<String> result = new ArrayList<>();
+            for (Object element : (List<Object>) pValue) {
+                result.add(String.valueOf(normalize(element)));
+            }
+            Collections.sort(result);
+            return result;
+        }
+        return pValue;
+    }
+
+    /**
+     * Convert all scalar values of the provided normalized value to strings.
+     *
+     * @param pValue The value.
+     *
+     * @return The converted value.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object toStrings(Object pValue) {
+        if (pValue instanceof Map) {
+            Map<String, Object> result = new TreeMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) pValue).entrySet()) {
+                result.put(entry.getKey(), toStrings(entry.getValue()));
+            }
+            return result;
+        }
+        return (pValue == null || pValue instanceof List) ? pValue : pValue.toString();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.ui.repo.util;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.UserData;
+import static edu.kit.dama.mdm.content.impl.DublinCoreMetadataExtractor.ISO_8601_DATE_FORMAT;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONException;
+import org.json.XML;
+
+/**
+ * Former conversion of digital objects to Dublin Core JSON documents, which
+ * builds an OAI-DC XML document and converts it via <i>org.json.XML</i>. It
+ * is kept unchanged as reference for {@link DublinCoreJsonSerializerTest}
+ * and {@link DublinCoreJsonSerializerBenchmark}.
+ *
+ * The golden files used by {@link DublinCoreJsonSerializerTest} are the
+ * unmodified output of this conversion and are regenerated via
+ * {@link #main(java.lang.String[])}.
+ *
+ * @author mf6319
+ */
+final class LegacyDublinCoreConverter {
+
+    /**
+     * Hidden constructor.
+     */
+    private LegacyDublinCoreConverter() {
+    }
+
+    /**
+     * Regenerate the golden files by converting the test objects of
+     * {@link DublinCoreJsonSerializerTest}. The files are written to the
+     * directory provided as first argument (default:
+     * src/test/resources/dublincore).
+     *
+     * @param args The command line arguments.
+     *
+     * @throws IOException if writing a golden file fails.
+     * @throws JSONException if a conversion fails.
+     */
+    public static void main(String[] args) throws IOException, JSONException {
+        File directory = new File((args.length > 0) ? args[0] : "src/test/resources/dublincore");
+        writeGoldenFile(directory, "dc-full.json", DublinCoreJsonSerializerTest.createFullObject());
+        writeGoldenFile(directory, "dc-minimal.json", DublinCoreJsonSerializerTest.createMinimalObject());
+        writeGoldenFile(directory, "dc-numeric.json", DublinCoreJsonSerializerTest.createNumericObject());
+    }
+
+    /**
+     * Convert the provided entry and write the result to the golden file with
+     * the provided name.
+     *
+     * @param pDirectory The output directory.
+     * @param pName The file name.
+     * @param pEntry The entry to convert.
+     *
+     * @throws IOException if writing the file fails.
+     * @throws JSONException if the conversion fails.
+     */
+    private static void writeGoldenFile(File pDirectory, String pName, DigitalObject pEntry) throws IOException, JSONException {
+        FileUtils.writeStringToFile(new File(pDirectory, pName), toJson(pEntry), StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Generate a DublinCore Json representation of the provided entry.
+     *
+     * @param pEntry The entry to convert.
+     *
+     * @return The DublinCore Json string.
+     */
+    static String toJson(DigitalObject pEntry) throws JSONException {
+        StringBuilder xmlBuilder = new StringBuilder();
+        xmlBuilder.append("<oai_dc:dc \n"
+                + "     xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\" \n"
+                + "     xmlns:dc=\"http://purl.org/dc/elements/1.1/\" \n"
+                + "     xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" \n"
+                + "     xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/oai_dc/ \n"
+                + "     http://www.openarchives.org/OAI/2.0/oai_dc.xsd\">");
+        xmlBuilder.append("<dc:title>").append(pEntry.getLabel()).append("</dc:title>");
+        UserData uploader = pEntry.getUploader();
+        if (uploader != null) {
+            xmlBuilder.append("<dc:creator>").append(uploader.getFullname()).append("</dc:creator>");
+            xmlBuilder.append("<dc:publisher>").append(uploader.getFullname()).append("</dc:publisher>");
+        }
+
+        for (UserData experimenter : pEntry.getExperimenters()) {
+            //don't list uploader a second time here
+            if (uploader == null || !experimenter.equals(uploader)) {
+                xmlBuilder.append("<dc:contributor>").append(experimenter.getFullname()).append("</dc:contributor>");
+            }
+        }
+
+        if (pEntry.getInvestigation() != null) {
+            xmlBuilder.append("<dc:subject>").append(pEntry.getInvestigation().getTopic()).append("</dc:subject>");
+            String description = pEntry.getInvestigation().getDescription();
+            if (description != null) {
+                xmlBuilder.append("<dc:description>").append(description).append("</dc:description>");
+            }
+            if (pEntry.getInvestigation().getStudy() != null) {
+                String legalNotes = pEntry.getInvestigation().getStudy().getLegalNote();
+                if (legalNotes != null) {
+                    xmlBuilder.append("<dc:rights>").append(legalNotes).append("</dc:rights>");
+                }
+            }
+        }
+        if (pEntry.getStartDate() != null) {
+            xmlBuilder.append("<dc:date>").append(new SimpleDateFormat(ISO_8601_DATE_FORMAT).format(pEntry.getStartDate())).append("</dc:date>");
+        }
+        //not possible in our case - use binary type 'application/octet-stream'
+        xmlBuilder.append("<dc:format>").append("application/octet-stream").append("</dc:format>");
+
+        //see http://dublincore.org/documents/2012/06/14/dcmi-terms/?v=dcmitype
+        xmlBuilder.append("<dc:type>").append("Dataset").append("</dc:type>");
+        xmlBuilder.append("<dc:identifier>").append(pEntry.getDigitalObjectId().getStringRepresentation()).append("</dc:identifier>");
+        xmlBuilder.append("</oai_dc:dc>");
+
+        return XML.toJSONObject(xmlBuilder.toString()).toString();
+    }
+}